@@ -0,0 +1,177 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+/**
+ * Limits the number of requests in flight, adjusting the limit to how the
+ * API responds. The limit grows by about one for each limit's worth of
+ * requests that complete without errors while latency stays close to its
+ * usual value. When a request fails, or takes more than latencyTolerance
+ * times the usual latency, the limit is multiplied by backoffRatio.
+ * Requests that were already in flight when the limit was cut do not cut it
+ * again, so one burst of errors only cuts the limit once.
+ *
+ * The usual latency is a slow moving average of the latency of successful
+ * requests. The current limit, the number of requests in flight and the
+ * number of requests waiting for a slot can be read at any time, for
+ * example to export them as metrics.
+ *
+ * Every method may be called from many threads at once.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  static final double DEFAULT_BACKOFF_RATIO = 0.75;
+  static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+  // How much each successful request moves the usual latency.
+  private static final double LATENCY_SMOOTHING = 0.05;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+
+  private double limit;
+  private double usualLatencyNanos;
+  private long lastDecreaseNanos = Long.MIN_VALUE;
+  private int inFlight;
+  private int queueDepth;
+
+  /**
+   * Constructor.
+   * Uses the default backoff ratio and latency tolerance.
+   * @param initialLimit The limit to start with.
+   * @param minLimit The lowest the limit may go.
+   * @param maxLimit The highest the limit may go.
+   */
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+    this(initialLimit, minLimit, maxLimit, DEFAULT_BACKOFF_RATIO, DEFAULT_LATENCY_TOLERANCE);
+  }
+
+  /**
+   * Constructor.
+   * @param initialLimit The limit to start with.
+   * @param minLimit The lowest the limit may go.
+   * @param maxLimit The highest the limit may go.
+   * @param backoffRatio What the limit is multiplied by when it is cut.
+   *     Between 0 and 1.
+   * @param latencyTolerance How many times the usual latency a request may
+   *     take before the limit is cut. Greater than 1.
+   */
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+      double backoffRatio, double latencyTolerance) {
+    if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit
+        || initialLimit > maxLimit) {
+      throw new IllegalArgumentException(
+          "Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1 || latencyTolerance <= 1) {
+      throw new IllegalArgumentException("Invalid backoffRatio or latencyTolerance");
+    }
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.latencyTolerance = latencyTolerance;
+  }
+
+  /**
+   * Waits until fewer requests than the limit are in flight, then takes a
+   * slot. Every call must be followed by a call to release.
+   * @return The start time of the request, to pass to release.
+   * @throws InterruptedException If the thread is interrupted while waiting.
+   */
+  public synchronized long acquire() throws InterruptedException {
+    queueDepth++;
+    try {
+      while (inFlight >= getLimit()) {
+        wait();
+      }
+    } finally {
+      queueDepth--;
+    }
+    inFlight++;
+    return nanoTime();
+  }
+
+  /**
+   * Frees the slot of a finished request and adjusts the limit.
+   * @param startNanos The value returned by acquire.
+   * @param failed True if the request failed.
+   */
+  public synchronized void release(long startNanos, boolean failed) {
+    inFlight--;
+    long now = nanoTime();
+    long latencyNanos = now - startNanos;
+
+    boolean tooSlow = !failed && usualLatencyNanos > 0
+        && latencyNanos > usualLatencyNanos * latencyTolerance;
+    if (failed || tooSlow) {
+      if (startNanos >= lastDecreaseNanos) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseNanos = now;
+      }
+    } else {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+    if (!failed) {
+      usualLatencyNanos = usualLatencyNanos == 0 ? latencyNanos
+          : usualLatencyNanos + (latencyNanos - usualLatencyNanos) * LATENCY_SMOOTHING;
+    }
+    notifyAll();
+  }
+
+  /**
+   * @return The current number of requests allowed in flight.
+   */
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * @return The highest the limit may go.
+   */
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  /**
+   * @return The number of requests in flight.
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return The number of requests waiting for a slot.
+   */
+  public synchronized int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * @return The usual latency of a successful request in nanoseconds, or
+   *     0 before any request has completed.
+   */
+  public synchronized long getUsualLatencyNanos() {
+    return (long) usualLatencyNanos;
+  }
+
+  /**
+   * @return The current value of a monotonic clock. Tests may override this.
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+}
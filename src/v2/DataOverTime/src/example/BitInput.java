@@ -0,0 +1,74 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads values written by BitOutput from an InputStream.
+ */
+public class BitInput {
+
+  private final InputStream input;
+  private long bits;
+  private int numBits;
+
+  /**
+   * Constructor.
+   * @param input The stream to read from. It should be buffered.
+   */
+  public BitInput(InputStream input) {
+    this.input = input;
+  }
+
+  /**
+   * Reads a value.
+   * @param length The number of bits to read, from 0 to 64.
+   * @return The value in the lowest bits.
+   * @throws IOException If the stream can not be read or ends.
+   */
+  public long read(int length) throws IOException {
+    if (length > 32) {
+      long high = read(length - 32);
+      return (high << 32) | read(32);
+    }
+    while (numBits < length) {
+      int next = input.read();
+      if (next < 0) {
+        throw new EOFException();
+      }
+      bits = (bits << 8) | next;
+      numBits += 8;
+    }
+    numBits -= length;
+    return (bits >>> numBits) & ((1L << length) - 1);
+  }
+
+  /**
+   * @return The next bit.
+   * @throws IOException If the stream can not be read or ends.
+   */
+  public boolean readBit() throws IOException {
+    return read(1) != 0;
+  }
+
+  /**
+   * Skips the bits left in the current byte.
+   */
+  public void align() {
+    numBits -= numBits % 8;
+  }
+}
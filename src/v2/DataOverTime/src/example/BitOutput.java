@@ -0,0 +1,78 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes values of any number of bits to an OutputStream, most significant
+ * bit first.
+ */
+public class BitOutput {
+
+  private final OutputStream output;
+  private long bits;
+  private int numBits;
+
+  /**
+   * Constructor.
+   * @param output The stream to write to. It should be buffered.
+   */
+  public BitOutput(OutputStream output) {
+    this.output = output;
+  }
+
+  /**
+   * Writes the lowest bits of a value.
+   * @param value The value to write.
+   * @param length The number of bits to write, from 0 to 64.
+   * @throws IOException If the stream can not be written.
+   */
+  public void write(long value, int length) throws IOException {
+    if (length > 32) {
+      write(value >>> 32, length - 32);
+      length = 32;
+    }
+    if (length == 0) {
+      return;
+    }
+    bits = (bits << length) | (value & ((1L << length) - 1));
+    numBits += length;
+    while (numBits >= 8) {
+      numBits -= 8;
+      output.write((int) (bits >>> numBits));
+    }
+  }
+
+  /**
+   * Writes one bit.
+   * @param bit The bit to write.
+   * @throws IOException If the stream can not be written.
+   */
+  public void writeBit(boolean bit) throws IOException {
+    write(bit ? 1 : 0, 1);
+  }
+
+  /**
+   * Pads the last byte with 0 bits and writes it, so the next bit starts a
+   * new byte.
+   * @throws IOException If the stream can not be written.
+   */
+  public void align() throws IOException {
+    if (numBits > 0) {
+      write(0, 8 - numBits);
+    }
+  }
+}
@@ -15,7 +15,9 @@
 
 package example;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -26,6 +28,11 @@ import java.util.List;
  * if a given filter can be added to the bucket. To be used with an algorithm
  * to fit the most filters in each bucket.
  *
+ * A bucket either holds a list of Filter objects, or the rows of a
+ * FilterTable. Buckets built from a FilterTable only store an int array of
+ * rows, which is much smaller than a list of Filter objects when there are
+ * many dimension values.
+ *
  * @author api.nickm@google.com (Nick Mihailovski)
  */
 public class Bucket {
@@ -36,6 +43,10 @@ public class Bucket {
   private List<Filter> filterList;
   private int charLength;
 
+  private final FilterTable filterTable;
+  private int[] rows;
+  private int numRows;
+
   /**
    * Constructor.
    * @param filterMaxCharLength The maximum number of characters allowed in a bucket.
@@ -44,6 +55,24 @@ public class Bucket {
   public Bucket(int filterMaxCharLength, int filterMaxListSize) {
     filterList = new ArrayList<Filter>();
     charLength = 0;
+    filterTable = null;
+    this.filterMaxCharLength = filterMaxCharLength;
+    this.filterMaxListSize = filterMaxListSize;
+  }
+
+  /**
+   * Constructor.
+   * Creates a bucket that holds rows of a FilterTable. Rows are added with
+   * add(int) and filters can not be added with add(Filter).
+   * @param filterTable The table holding the filters of this bucket.
+   * @param filterMaxCharLength The maximum number of characters allowed in a bucket.
+   * @param filterMaxListSize The maximum number of filters allowed in a bucket.
+   */
+  public Bucket(FilterTable filterTable, int filterMaxCharLength, int filterMaxListSize) {
+    this.filterTable = filterTable;
+    rows = new int[Math.max(Math.min(filterMaxListSize, 16), 1)];
+    numRows = 0;
+    charLength = 0;
     this.filterMaxCharLength = filterMaxCharLength;
     this.filterMaxListSize = filterMaxListSize;
   }
@@ -72,16 +101,43 @@ public class Bucket {
    * @return Whether the filter can be added to this bucket.
    */
   public Boolean canAdd(Filter filter) {
+    return canAdd(filter.getEncodedSize());
+  }
+
+  /**
+   * Returns whether a filter of the given encoded size may be added to the
+   * current bucket. See canAdd(Filter).
+   * @param encodedSize The encoded size of the filter.
+   * @return Whether the filter can be added to this bucket.
+   */
+  private boolean canAdd(int encodedSize) {
     // Size assumes an extra filter will be added to the end of the current filters.
-    int currentSize = charLength + filterList.size() * Filter.getOperatorSize();
+    int numFilters = getNumFilters();
+    int currentSize = charLength + numFilters * Filter.getOperatorSize();
 
-    if (filterList.size() < filterMaxListSize &&
-        currentSize + filter.getEncodedSize() <= filterMaxCharLength) {
+    if (numFilters < filterMaxListSize &&
+        currentSize + encodedSize <= filterMaxCharLength) {
       return true;
     }
     return false;
   }
 
+  /**
+   * Returns the largest encoded filter size that can still be added to this
+   * bucket, after accounting for the OR operator before it. A filter can be
+   * added if and only if its encoded size is not greater than this value.
+   * Returns Integer.MIN_VALUE if the bucket already holds filterMaxListSize
+   * filters.
+   * @return The remaining capacity of this bucket in characters.
+   */
+  public int getRemainingCapacity() {
+    int numFilters = getNumFilters();
+    if (numFilters >= filterMaxListSize) {
+      return Integer.MIN_VALUE;
+    }
+    return filterMaxCharLength - charLength - numFilters * Filter.getOperatorSize();
+  }
+
   /**
    * Returns whether a filter has been added to this bucket. This first checks
    * to see if a filter can be added to this bucket. If it can, it adds a
@@ -92,6 +148,9 @@ public class Bucket {
    * @return Whether the filter was added to the bucket.
    */
   public Boolean add(Filter filter) {
+    if (filterTable != null) {
+      throw new IllegalStateException("Filters of a FilterTable bucket are added by row");
+    }
     if (canAdd(filter)) {
       filterList.add(filter);
       charLength += filter.getEncodedSize();
@@ -100,6 +159,28 @@ public class Bucket {
     return false;
   };
 
+  /**
+   * Returns whether a row of the FilterTable has been added to this bucket.
+   * This works the same as add(Filter), but only stores the row number.
+   * @param row The row of the FilterTable to add.
+   * @return Whether the row was added to the bucket.
+   */
+  public boolean add(int row) {
+    if (filterTable == null) {
+      throw new IllegalStateException("Bucket was not created with a FilterTable");
+    }
+    int encodedSize = filterTable.getEncodedSize(row);
+    if (canAdd(encodedSize)) {
+      if (numRows == rows.length) {
+        rows = Arrays.copyOf(rows, Math.min(rows.length * 2, filterMaxListSize));
+      }
+      rows[numRows++] = row;
+      charLength += encodedSize;
+      return true;
+    }
+    return false;
+  }
+
   /**
    * Returns a comma separated list of filters.
    * @return The string representation of this object.
@@ -108,6 +189,16 @@ public class Bucket {
   public String toString() {
     StringBuilder output = new StringBuilder();
 
+    if (filterTable != null) {
+      for (int i = 0; i < numRows; i++) {
+        if (i > 0) {
+          output.append(",");
+        }
+        filterTable.appendFilterExpression(output, rows[i]);
+      }
+      return output.toString();
+    }
+
     Iterator<Filter> filterIter = filterList.iterator();
     if (filterIter.hasNext()) {
       output.append(filterIter.next().toString());
@@ -119,13 +210,56 @@ public class Bucket {
   }
 
   /**
-   * Returns the filter list.
+   * Returns the filter list. For a bucket built from a FilterTable this is
+   * a read only view that creates a new Filter object for each get.
    * @return the filter list.
    */
   public List<Filter> getFilterList() {
+    if (filterTable != null) {
+      return new AbstractList<Filter>() {
+        @Override
+        public Filter get(int index) {
+          if (index >= numRows) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+          }
+          return filterTable.getFilter(rows[index]);
+        }
+
+        @Override
+        public int size() {
+          return numRows;
+        }
+      };
+    }
     return filterList;
   }
 
+  /**
+   * @return The number of filters in this bucket.
+   */
+  public int getNumFilters() {
+    return filterTable != null ? numRows : filterList.size();
+  }
+
+  /**
+   * @return The FilterTable this bucket holds rows of, or null if this
+   *     bucket holds Filter objects.
+   */
+  public FilterTable getFilterTable() {
+    return filterTable;
+  }
+
+  /**
+   * @param index An index from 0 to getNumFilters() - 1.
+   * @return The FilterTable row at index.
+   */
+  public int getRow(int index) {
+    if (index >= numRows) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    return rows[index];
+  }
+
   /**
    * Returns the length of characters of the encoded filters in the list.
    * This does not include the required operators between each filter.
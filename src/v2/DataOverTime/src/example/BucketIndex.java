@@ -0,0 +1,74 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.Arrays;
+
+/**
+ * Provides a segment tree over a list of buckets. Each leaf holds the
+ * remaining capacity of one bucket and each parent holds the largest
+ * capacity of its children. This finds the first bucket that can hold a
+ * filter in O(log n) time.
+ */
+public class BucketIndex {
+
+  private static final int NO_CAPACITY = Integer.MIN_VALUE;
+
+  private final int numLeaves;
+  private final int[] tree;
+
+  /**
+   * Constructor.
+   * @param maxBuckets The maximum number of buckets that will be indexed.
+   */
+  public BucketIndex(int maxBuckets) {
+    int leaves = 1;
+    while (leaves < maxBuckets) {
+      leaves <<= 1;
+    }
+    numLeaves = leaves;
+    tree = new int[2 * leaves];
+    Arrays.fill(tree, NO_CAPACITY);
+  }
+
+  /**
+   * Sets the remaining capacity of a bucket.
+   * @param bucketIndex The index of the bucket.
+   * @param capacity The remaining capacity of the bucket.
+   */
+  public void set(int bucketIndex, int capacity) {
+    int node = numLeaves + bucketIndex;
+    tree[node] = capacity;
+    for (node >>= 1; node > 0; node >>= 1) {
+      tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+    }
+  }
+
+  /**
+   * Returns the index of the first bucket whose remaining capacity is at
+   * least size, or -1 if no bucket has enough room.
+   * @param size The encoded size of the filter to add.
+   * @return The index of the first bucket with enough room.
+   */
+  public int findFirst(int size) {
+    if (tree[1] < size) {
+      return -1;
+    }
+    int node = 1;
+    while (node < numLeaves) {
+      node = tree[2 * node] >= size ? 2 * node : 2 * node + 1;
+    }
+    return node - numLeaves;
+  }
+}
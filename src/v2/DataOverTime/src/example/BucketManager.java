@@ -16,20 +16,40 @@
 package example;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Provides the logic to add filters to buckets to result in the most number
  * of filters in each bucket. This yield optimal quota usage.
  *
+ * The methods that take the bucket limits as parameters do not use any
+ * member state, so one instance can be shared across threads. The init
+ * method and the methods that rely on it are kept for single threaded use.
+ *
  * @author api.nickm@google.com (Nick Mihailovski)
  */
 public class BucketManager {
 
+  private final BucketStrategy strategy;
   private int filterMaxCharLength;
   private int filterMaxListSize;
 
+  /**
+   * Constructor.
+   * Packs filters with the FirstFitDecreasingStrategy.
+   */
+  public BucketManager() {
+    this(new FirstFitDecreasingStrategy());
+  }
+
+  /**
+   * Constructor.
+   * @param strategy The strategy used to pack filters into buckets.
+   */
+  public BucketManager(BucketStrategy strategy) {
+    this.strategy = strategy;
+  }
+
   /**
    * Initializes the bucket manager by setting the query, calculating the
    * maximum results per bucket and maximum character length.
@@ -57,61 +77,102 @@ public class BucketManager {
    */
   public List<Filter> getFiltersOrderedBySize(String dimensionName,
       List<String> dimensionValues) {
+    return getFiltersOrderedBySize(dimensionName, dimensionValues, filterMaxCharLength);
+  }
 
-    if (dimensionValues == null) {
-      return new ArrayList<Filter>();
-    }
+  /**
+   * Returns a new list of Filter objects sorted from the largest encoded
+   * filter size to the smallest size. Filters whose encoded size is greater
+   * than filterMaxCharLength are silently dropped.
+   * @param dimensionName The dimension name for each of the filters.
+   * @param dimensionValues A list of dimension values for each filter.
+   * @param filterMaxCharLength The maximum number of characters allowed in
+   *     a bucket.
+   * @return A list of Filter objects sorted by encoded filter length.
+   */
+  public List<Filter> getFiltersOrderedBySize(String dimensionName,
+      List<String> dimensionValues, int filterMaxCharLength) {
 
-    List<Filter> filters = new ArrayList<Filter>(dimensionValues.size());
-    for (String dimensionValue : dimensionValues) {
-      Filter filter = new Filter();
-      filter.setEqualityFilterExpression(dimensionName, dimensionValue);
-      if (filter.getEncodedSize() <= filterMaxCharLength) {
-        filters.add(filter);
-      }
+    FilterTable filterTable =
+        getFilterTable(dimensionName, dimensionValues, filterMaxCharLength);
+    List<Filter> filters = new ArrayList<Filter>(filterTable.size());
+    for (int row = 0; row < filterTable.size(); row++) {
+      filters.add(filterTable.getFilter(row));
     }
-    Collections.sort(filters);
     return filters;
   }
 
+  /**
+   * Returns a FilterTable sorted from the largest encoded filter size to the
+   * smallest size. This has the same filters, in the same order, as
+   * getFiltersOrderedBySize but does not create a Filter object for each
+   * dimension value.
+   * @param dimensionName The dimension name for each of the filters.
+   * @param dimensionValues A list of dimension values for each filter.
+   * @param filterMaxCharLength The maximum number of characters allowed in
+   *     a bucket.
+   * @return A FilterTable sorted by encoded filter length.
+   */
+  public FilterTable getFilterTable(String dimensionName, List<String> dimensionValues,
+      int filterMaxCharLength) {
+    return new FilterTable(dimensionName, dimensionValues, filterMaxCharLength);
+  }
+
   /**
    * Returns a list of Bucket objects that contain filters such that the size
    * of the returned list is as small as possible. This method gets an ordered
-   * list of filters based on the dimension name and list of values. The first
-   * filter from this list is added into a new bucket. The following filters
-   * try to get added to the next available bucket. If they can't be added to
-   * an existing bucket they are added to a new bucket.
+   * list of filters based on the dimension name and list of values, then
+   * packs them into buckets with the BucketStrategy of this BucketManager.
    * @param dimensionName The dimension name for each of the filters.
    * @param dimensionValues A list of dimension values for each filter.
    * @return A list of Bucket objects.
    */
   public List<Bucket> getBucketsOfFilters(String dimensionName, List<String> dimensionValues) {
-    List<Filter> filterList = getFiltersOrderedBySize(dimensionName, dimensionValues);
-    List<Bucket> buckets = new ArrayList<Bucket>();
+    return getBucketsOfFilters(dimensionName, dimensionValues, filterMaxCharLength,
+        filterMaxListSize);
+  }
 
-    if (filterList == null || filterList.size() < 1) {
-      return buckets;
-    }
+  /**
+   * Returns a list of Bucket objects that contain filters such that the size
+   * of the returned list is as small as possible. This is the same as
+   * getBucketsOfFilters(String, List) except the bucket limits are passed
+   * in instead of being set by init. The filters are packed by the
+   * BucketStrategy of this BucketManager.
+   * @param dimensionName The dimension name for each of the filters.
+   * @param dimensionValues A list of dimension values for each filter.
+   * @param filterMaxCharLength The maximum number of characters allowed in
+   *     a bucket.
+   * @param filterMaxListSize The maximum number of filters allowed in a bucket.
+   * @return A list of Bucket objects.
+   */
+  public List<Bucket> getBucketsOfFilters(String dimensionName, List<String> dimensionValues,
+      int filterMaxCharLength, int filterMaxListSize) {
 
-    // Always add the first filter to a new bucket.
-    buckets.add(new Bucket(filterMaxCharLength, filterMaxListSize, filterList.get(0)));
-
-    // Check if remaining filters can be added to existing buckets.
-    Boolean added;
-    for (int i = 1; i < filterList.size(); i++) {
-      added = false;
-      Filter filter = filterList.get(i);
-      for (Bucket existingBucket : buckets) {
-        added = existingBucket.add(filter);
-        if (added) {
-          break;
-        }
-      }
-      // If a filter will not fit in an existing bucket, add to a new bucket.
-      if (!added) {
-        buckets.add(new Bucket(filterMaxCharLength, filterMaxListSize, filter));
-      }
-    }
-    return buckets;
+    FilterTable filterTable =
+        getFilterTable(dimensionName, dimensionValues, filterMaxCharLength);
+    return strategy.getBuckets(filterTable, filterMaxCharLength, filterMaxListSize);
+  }
+
+  /**
+   * @return The strategy used to pack filters into buckets.
+   */
+  public BucketStrategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return The maximum number of characters allowed in a bucket, as set
+   *     by init.
+   */
+  public int getFilterMaxCharLength() {
+    return filterMaxCharLength;
+  }
+
+  /**
+   * @return The maximum number of filters allowed in a bucket, as set by
+   *     init.
+   */
+  public int getFilterMaxListSize() {
+    return filterMaxListSize;
   }
 }
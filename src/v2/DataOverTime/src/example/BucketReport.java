@@ -0,0 +1,162 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import java.util.List;
+
+/**
+ * Provides a summary of how well a list of buckets is filled. Each bucket
+ * becomes one request to the API, so fewer and fuller buckets use less
+ * quota. The report has the fill ratio of both bucket limits and a lower
+ * bound on the number of buckets any strategy could use.
+ */
+public class BucketReport {
+
+  private final String strategyName;
+  private final int numBuckets;
+  private final int numFilters;
+  private final int lowerBound;
+  private final double averageCharFill;
+  private final double minCharFill;
+  private final double averageListFill;
+  private final double minListFill;
+
+  /**
+   * Constructor.
+   * Computes the fill ratios of every bucket.
+   * @param strategyName The name of the strategy that created the buckets.
+   * @param buckets The buckets to report on.
+   * @param filterMaxCharLength The maximum number of characters allowed in
+   *     a bucket.
+   * @param filterMaxListSize The maximum number of filters allowed in a bucket.
+   * @throws IllegalArgumentException If filterMaxListSize is less than 1,
+   *     which happens when a date range has more days than the API returns
+   *     results for one query.
+   */
+  public BucketReport(String strategyName, List<Bucket> buckets, int filterMaxCharLength,
+      int filterMaxListSize) {
+
+    if (filterMaxListSize < 1) {
+      throw new IllegalArgumentException(
+          "filterMaxListSize must be greater than 0: " + filterMaxListSize);
+    }
+    this.strategyName = strategyName;
+    numBuckets = buckets.size();
+
+    int operatorSize = Filter.getOperatorSize();
+    long totalChars = 0;
+    int filters = 0;
+    double charFillSum = 0;
+    double listFillSum = 0;
+    double charFillMin = numBuckets > 0 ? 1.0 : 0.0;
+    double listFillMin = numBuckets > 0 ? 1.0 : 0.0;
+
+    for (Bucket bucket : buckets) {
+      int size = bucket.getNumFilters();
+      int usedChars = bucket.getCharLength() + Math.max(size - 1, 0) * operatorSize;
+      double charFill = (double) usedChars / filterMaxCharLength;
+      double listFill = (double) size / filterMaxListSize;
+
+      charFillSum += charFill;
+      listFillSum += listFill;
+      charFillMin = Math.min(charFillMin, charFill);
+      listFillMin = Math.min(listFillMin, listFill);
+      totalChars += bucket.getCharLength();
+      filters += size;
+    }
+
+    numFilters = filters;
+    averageCharFill = numBuckets > 0 ? charFillSum / numBuckets : 0.0;
+    averageListFill = numBuckets > 0 ? listFillSum / numBuckets : 0.0;
+    minCharFill = charFillMin;
+    minListFill = listFillMin;
+
+    // A bucket with k filters fits if its sizes plus k operators is at most
+    // filterMaxCharLength plus one operator.
+    long charBound = ceilDiv(totalChars + (long) filters * operatorSize,
+        filterMaxCharLength + operatorSize);
+    long listBound = ceilDiv(filters, filterMaxListSize);
+    lowerBound = (int) Math.max(charBound, listBound);
+  }
+
+  private static long ceilDiv(long numerator, long denominator) {
+    return (numerator + denominator - 1) / denominator;
+  }
+
+  /**
+   * @return The name of the strategy that created the buckets.
+   */
+  public String getStrategyName() {
+    return strategyName;
+  }
+
+  /**
+   * @return The number of buckets, which is the number of API requests.
+   */
+  public int getNumBuckets() {
+    return numBuckets;
+  }
+
+  /**
+   * @return The number of filters in all the buckets.
+   */
+  public int getNumFilters() {
+    return numFilters;
+  }
+
+  /**
+   * @return The smallest number of buckets any strategy could use.
+   */
+  public int getLowerBound() {
+    return lowerBound;
+  }
+
+  /**
+   * @return The average fraction of each bucket's character budget used.
+   */
+  public double getAverageCharFill() {
+    return averageCharFill;
+  }
+
+  /**
+   * @return The smallest fraction of a bucket's character budget used.
+   */
+  public double getMinCharFill() {
+    return minCharFill;
+  }
+
+  /**
+   * @return The average fraction of each bucket's filter list size used.
+   */
+  public double getAverageListFill() {
+    return averageListFill;
+  }
+
+  /**
+   * @return The smallest fraction of a bucket's filter list size used.
+   */
+  public double getMinListFill() {
+    return minListFill;
+  }
+
+  /**
+   * @return A one line summary of the report.
+   */
+  @Override
+  public String toString() {
+    return String.format("%s: %d filters in %d buckets (lower bound %d), "
+        + "char fill avg %.3f min %.3f, list fill avg %.3f min %.3f",
+        strategyName, numFilters, numBuckets, lowerBound, averageCharFill, minCharFill,
+        averageListFill, minListFill);
+  }
+}
@@ -0,0 +1,40 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import java.util.List;
+
+/**
+ * Interface for algorithms that pack filters into buckets. Each bucket
+ * becomes one request to the API, so a strategy should return as few
+ * buckets as possible. Buckets are limited both by the number of characters
+ * in the encoded filter expression and by the number of filters.
+ * Implementations must not keep any state between calls.
+ *
+ * Filters are read from a FilterTable and buckets hold rows of that table,
+ * so no Filter objects are created while packing.
+ */
+public interface BucketStrategy {
+
+  /**
+   * Returns a list of buckets holding every row of filterTable.
+   * @param filterTable The filters to pack, sorted from the largest encoded
+   *     size to the smallest. None is larger than filterMaxCharLength.
+   * @param filterMaxCharLength The maximum number of characters allowed in
+   *     a bucket.
+   * @param filterMaxListSize The maximum number of filters allowed in a bucket.
+   * @return A list of Bucket objects.
+   */
+  public List<Bucket> getBuckets(FilterTable filterTable, int filterMaxCharLength,
+      int filterMaxListSize);
+}
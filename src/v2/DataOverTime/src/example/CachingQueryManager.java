@@ -0,0 +1,156 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provides an implementation of the QueryManager interface that caches the
+ * QueryPlan objects returned by another QueryManager. Plans are cached by a
+ * signature of the original query and its dimension values, so a repeated
+ * report skips bucketing. The least recently used plan is removed once the
+ * cache is full.
+ */
+public class CachingQueryManager implements QueryManager {
+
+  static final int DEFAULT_MAX_PLANS = 100;
+
+  private final QueryManager queryManager;
+  private final Map<String, QueryPlan> plans;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   * Caches up to DEFAULT_MAX_PLANS plans.
+   * @param queryManager The QueryManager used to create plans.
+   */
+  public CachingQueryManager(QueryManager queryManager) {
+    this(queryManager, DEFAULT_MAX_PLANS);
+  }
+
+  /**
+   * Constructor.
+   * @param queryManager The QueryManager used to create plans.
+   * @param maxPlans The maximum number of plans to cache.
+   */
+  public CachingQueryManager(QueryManager queryManager, final int maxPlans) {
+    this.queryManager = queryManager;
+    plans = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+        return size() > maxPlans;
+      }
+    };
+  }
+
+  /**
+   * Returns the FilteredQueries object from the wrapped QueryManager.
+   * FilteredQueries objects are not cached since they are not immutable.
+   */
+  @Override
+  public FilteredQueries getFilteredQueries(DataQuery dataQuery, List<String> dimensionValues) {
+    return queryManager.getFilteredQueries(dataQuery, dimensionValues);
+  }
+
+  /**
+   * Returns a cached QueryPlan for the query and dimension values. If no plan
+   * has been cached, a new plan is created by the wrapped QueryManager and
+   * added to the cache.
+   */
+  @Override
+  public QueryPlan getQueryPlan(DataQuery dataQuery, List<String> dimensionValues) {
+    String signature = getSignature(dataQuery, dimensionValues);
+
+    QueryPlan plan;
+    synchronized (plans) {
+      plan = plans.get(signature);
+    }
+    if (plan != null) {
+      hitCount.incrementAndGet();
+      return plan;
+    }
+
+    missCount.incrementAndGet();
+    plan = queryManager.getQueryPlan(dataQuery, dimensionValues);
+    synchronized (plans) {
+      plans.put(signature, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Returns a signature of the query and its dimension values. Two calls
+   * return the same signature only if the query URLs are the same and the
+   * dimension values are the same and in the same order.
+   * @param dataQuery The original query.
+   * @param dimensionValues The dimension values returned from the query.
+   * @return A hex encoded SHA-256 digest.
+   */
+  public static String getSignature(DataQuery dataQuery, List<String> dimensionValues) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(dataQuery.getUrl().toString().getBytes("UTF-8"));
+      if (dimensionValues != null) {
+        for (String dimensionValue : dimensionValues) {
+          // Separate each value so ["ab", "c"] and ["a", "bc"] differ.
+          digest.update((byte) 0);
+          digest.update(dimensionValue.getBytes("UTF-8"));
+        }
+      }
+
+      StringBuilder output = new StringBuilder();
+      for (byte b : digest.digest()) {
+        output.append(String.format("%02x", b));
+      }
+      return output.toString();
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Removes all cached plans.
+   */
+  public void clear() {
+    synchronized (plans) {
+      plans.clear();
+    }
+  }
+
+  /**
+   * @return The number of plans returned from the cache.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return The number of plans that had to be created.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+}
@@ -0,0 +1,67 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+/**
+ * Stores the metric values of a Results table as primitive doubles. Every
+ * row has the same number of columns, one for each day. Rows are only ever
+ * appended, but any value can be changed after it is added.
+ */
+public interface CellMatrix {
+
+  /**
+   * @return The number of rows.
+   */
+  public int getNumRows();
+
+  /**
+   * @return The number of columns in every row.
+   */
+  public int getNumCols();
+
+  /**
+   * Appends a row. The values are copied, so the array can be reused.
+   * @param values The first getNumCols values are added.
+   * @return The index of the new row.
+   */
+  public int addRow(double[] values);
+
+  /**
+   * @param row The row index.
+   * @param col The column index.
+   * @return The value of the cell.
+   */
+  public double get(int row, int col);
+
+  /**
+   * Copies the values of a row.
+   * @param row The row index.
+   * @param values The array to copy the getNumCols values of the row to.
+   */
+  public void getRow(int row, double[] values);
+
+  /**
+   * Sets the value of a cell.
+   * @param row The row index.
+   * @param col The column index.
+   * @param value The new value.
+   */
+  public void set(int row, int col, double value);
+
+  /**
+   * @return Whether every value is a whole number, which is true for
+   *     metrics like ga:visits.
+   */
+  public boolean isIntegral();
+}
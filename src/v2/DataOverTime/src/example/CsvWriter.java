@@ -0,0 +1,256 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * Writes a Results table as CSV. Numbers are encoded straight into a
+ * reused byte buffer, which is written to a channel each time it fills up.
+ * If every value of the table is a whole number, values and totals are
+ * printed without a decimal part, otherwise they are printed like
+ * Double.toString. Text is encoded as UTF-8.
+ *
+ * A CsvWriter reuses its buffer, so it must only be used by one thread at
+ * a time.
+ */
+public class CsvWriter {
+
+  static final int DEFAULT_BUFFER_BYTES = 1024 * 1024;
+  static final String SAMPLED_MESSAGE = "These results are based on sampled data";
+
+  // Whole numbers smaller than this are exact as a long.
+  private static final double MAX_LONG_VALUE = 1e18;
+  private static final int MAX_NUMBER_BYTES = 32;
+
+  private ByteBuffer buffer;
+  private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final byte[] digits = new byte[20];
+  private WritableByteChannel channel;
+
+  /**
+   * Constructor.
+   * Uses a buffer of DEFAULT_BUFFER_BYTES.
+   */
+  public CsvWriter() {
+    this(DEFAULT_BUFFER_BYTES);
+  }
+
+  /**
+   * Constructor.
+   * @param bufferBytes The size of the buffer. Must be at least 64 bytes.
+   */
+  public CsvWriter(int bufferBytes) {
+    if (bufferBytes < 64) {
+      throw new IllegalArgumentException("bufferBytes must be at least 64: " + bufferBytes);
+    }
+    buffer = ByteBuffer.allocate(bufferBytes);
+  }
+
+  /**
+   * Writes the table to a file through its FileChannel.
+   * @param results The table to write.
+   * @param file The file to write. It is overwritten.
+   * @throws IOException If the file can not be written.
+   */
+  public void write(Results results, File file) throws IOException {
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      write(results, output.getChannel());
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Writes the table to a channel. Prints if any sampling occurred, the
+   * name of the dimension along with all the column names, and each row
+   * including the row name, the data and the total of the row.
+   * @param results The table to write.
+   * @param channel The channel to write to. It is not closed.
+   * @throws IOException If the channel can not be written.
+   */
+  public void write(Results results, WritableByteChannel channel) throws IOException {
+    this.channel = channel;
+    buffer.clear();
+    try {
+      putHeader(results);
+      CellMatrix cells = results.getCellMatrix();
+      if (cells != null) {
+        putRows(results, 0, cells.getNumRows());
+      }
+      flush();
+    } finally {
+      this.channel = null;
+    }
+  }
+
+  /**
+   * Formats the header of a table in memory. Used by ParallelCsvWriter.
+   * @param results The table to format.
+   * @return This writer's buffer, ready to be read. It is only valid until
+   *     the writer is used again.
+   */
+  ByteBuffer formatHeader(Results results) {
+    buffer.clear();
+    try {
+      putHeader(results);
+    } catch (IOException e) {
+      // Nothing is written to a channel.
+      throw new IllegalStateException(e);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Formats a range of rows of a table in memory. The buffer grows to hold
+   * every row. Used by ParallelCsvWriter.
+   * @param results The table to format.
+   * @param fromRow The first row to format.
+   * @param toRow The row after the last row to format.
+   * @return This writer's buffer, ready to be read. It is only valid until
+   *     the writer is used again.
+   */
+  ByteBuffer formatRows(Results results, int fromRow, int toRow) {
+    buffer.clear();
+    try {
+      putRows(results, fromRow, toRow);
+    } catch (IOException e) {
+      // Nothing is written to a channel.
+      throw new IllegalStateException(e);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Puts if any sampling occurred, the name of the dimension and all the
+   * column names.
+   */
+  private void putHeader(Results results) throws IOException {
+    if (results.getIsSampled()) {
+      putString(SAMPLED_MESSAGE);
+      putByte('\n');
+    }
+
+    putString(results.getDimensionName());
+    for (String colName : results.getColNames()) {
+      putByte(',');
+      putString(colName);
+    }
+    putString(",Total\n");
+  }
+
+  /**
+   * Puts each row from fromRow to toRow, including the row name, the data
+   * and the total of the row.
+   */
+  private void putRows(Results results, int fromRow, int toRow) throws IOException {
+    CellMatrix cells = results.getCellMatrix();
+    boolean isIntegral = cells.isIntegral();
+    List<String> rowNames = results.getRowNames();
+    double[] row = new double[cells.getNumCols()];
+    for (int i = fromRow; i < toRow; i++) {
+      putString(rowNames.get(i));
+      cells.getRow(i, row);
+      double total = 0.0;
+      for (double value : row) {
+        total += value;
+        putByte(',');
+        putNumber(value, isIntegral);
+      }
+      putByte(',');
+      putNumber(total, isIntegral);
+      putByte('\n');
+    }
+  }
+
+  private void putByte(char c) throws IOException {
+    if (!buffer.hasRemaining()) {
+      flush();
+    }
+    buffer.put((byte) c);
+  }
+
+  private void putNumber(double value, boolean isIntegral) throws IOException {
+    if (buffer.remaining() < MAX_NUMBER_BYTES) {
+      flush();
+    }
+    if (!isIntegral || Math.abs(value) >= MAX_LONG_VALUE) {
+      String text = Double.toString(value);
+      for (int i = 0; i < text.length(); i++) {
+        buffer.put((byte) text.charAt(i));
+      }
+      return;
+    }
+
+    long number = (long) value;
+    if (number < 0) {
+      buffer.put((byte) '-');
+      number = -number;
+    }
+    int start = digits.length;
+    do {
+      digits[--start] = (byte) ('0' + number % 10);
+      number /= 10;
+    } while (number != 0);
+    buffer.put(digits, start, digits.length - start);
+  }
+
+  private void putString(String value) throws IOException {
+    CharBuffer chars = CharBuffer.wrap(value);
+    encoder.reset();
+    while (true) {
+      CoderResult result = encoder.encode(chars, buffer, true);
+      if (result.isOverflow()) {
+        flush();
+      } else {
+        break;
+      }
+    }
+    while (encoder.flush(buffer).isOverflow()) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes the buffer to the channel and clears it. When formatting in
+   * memory there is no channel, so the buffer is replaced by one twice as
+   * large instead.
+   */
+  private void flush() throws IOException {
+    buffer.flip();
+    if (channel == null) {
+      buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+      return;
+    }
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
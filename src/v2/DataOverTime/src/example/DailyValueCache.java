@@ -0,0 +1,468 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Provides a cache of the daily metric value of each dimension value. Values
+ * are stored by series, which is the table id, dimension, metric, filters
+ * and segment of the original query, then by dimension value and day.
+ * Unlike caching feeds by URL, reports with overlapping date ranges, like the
+ * last 30 days run every day, can reuse all the days they have in common.
+ *
+ * Data for recent days can still change, so only days older than the
+ * freshness horizon are stored. Those days are treated as final and are
+ * never requested again. The horizon is counted in days of the profile's
+ * time zone, since that is the time zone of the ga:date dimension. For each
+ * dimension value, one run of consecutive days is kept.
+ *
+ * If a directory is set, each series is stored in a gzip compressed file so
+ * the cache can be used across runs. All methods may be called from many
+ * threads at once.
+ */
+public class DailyValueCache {
+
+  private static final int FORMAT_VERSION = 1;
+  private static final String FILE_SUFFIX = ".days.gz";
+
+  private final File directory;
+  private final int freshnessHorizonDays;
+  private final TimeZone profileTimeZone;
+  private final Map<String, Series> seriesMap = new HashMap<String, Series>();
+
+  private final AtomicLong cachedDayCount = new AtomicLong();
+  private final AtomicLong missingDayCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   * Values are only kept in memory.
+   * @param freshnessHorizonDays The number of most recent days, including
+   *     today, that are always requested from the API.
+   * @param profileTimeZone The time zone of the profile, which sets when
+   *     each day ends.
+   */
+  public DailyValueCache(int freshnessHorizonDays, TimeZone profileTimeZone) {
+    this(null, freshnessHorizonDays, profileTimeZone);
+  }
+
+  /**
+   * Constructor.
+   * @param directory The directory to store values in, or null to only keep
+   *     values in memory. It is created if it does not exist.
+   * @param freshnessHorizonDays The number of most recent days, including
+   *     today, that are always requested from the API.
+   * @param profileTimeZone The time zone of the profile, which sets when
+   *     each day ends.
+   */
+  public DailyValueCache(File directory, int freshnessHorizonDays, TimeZone profileTimeZone) {
+    if (freshnessHorizonDays < 1) {
+      throw new IllegalArgumentException("freshnessHorizonDays must be greater than 0");
+    }
+    if (profileTimeZone == null) {
+      throw new IllegalArgumentException("profileTimeZone is null");
+    }
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Can not create cache directory " + directory);
+    }
+    this.directory = directory;
+    this.freshnessHorizonDays = freshnessHorizonDays;
+    this.profileTimeZone = profileTimeZone;
+  }
+
+  /**
+   * Returns the series key of a query. Two queries have the same key if
+   * they have the same table id, dimensions, metrics, filters and segment.
+   * The dates, sort order and paging parameters are not part of the key.
+   * @param dataQuery The original query used to get a list of dimensions.
+   * @return The series key.
+   */
+  public static String getSeriesKey(DataQuery dataQuery) {
+    return new StringBuilder()
+        .append(dataQuery.getIds()).append('\n')
+        .append(dataQuery.getDimensions()).append('\n')
+        .append(dataQuery.getMetrics()).append('\n')
+        .append(dataQuery.getFilters()).append('\n')
+        .append(dataQuery.getSegment()).toString();
+  }
+
+  /**
+   * @return The most recent epoch day, in the profile's time zone, that is
+   *     treated as final.
+   */
+  public int getLastFinalDay() {
+    return getToday() - freshnessHorizonDays;
+  }
+
+  /**
+   * @return The current epoch day in the profile's time zone. Tests may
+   *     override this.
+   */
+  protected int getToday() {
+    return EpochDay.today(profileTimeZone);
+  }
+
+  /**
+   * @return The time zone of the profile.
+   */
+  public TimeZone getProfileTimeZone() {
+    return profileTimeZone;
+  }
+
+  /**
+   * Returns the smallest range of days between startDay and endDay that
+   * holds every day not in the cache.
+   * @param seriesKey The series key of the original query.
+   * @param dimensionValue The dimension value.
+   * @param startDay The first epoch day of the date range.
+   * @param endDay The last epoch day of the date range. Inclusive.
+   * @return An array of the first and last missing epoch days, or null if
+   *     every day is in the cache.
+   */
+  public int[] getMissingRange(String seriesKey, String dimensionValue, int startDay,
+      int endDay) {
+
+    int knownStart = 0;
+    int knownEnd = -1;
+    Series series = getSeries(seriesKey);
+    synchronized (series) {
+      DayRun run = series.runs.get(dimensionValue);
+      if (run != null) {
+        knownStart = Math.max(run.firstDay, startDay);
+        knownEnd = Math.min(run.firstDay + run.length - 1, endDay);
+      }
+    }
+
+    int[] missing;
+    if (knownStart > knownEnd) {
+      missing = new int[] {startDay, endDay};
+    } else if (knownStart == startDay && knownEnd == endDay) {
+      missing = null;
+    } else if (knownStart == startDay) {
+      missing = new int[] {knownEnd + 1, endDay};
+    } else if (knownEnd == endDay) {
+      missing = new int[] {startDay, knownStart - 1};
+    } else {
+      // The known days are in the middle of the range.
+      missing = new int[] {startDay, endDay};
+    }
+
+    int numMissing = missing == null ? 0 : missing[1] - missing[0] + 1;
+    cachedDayCount.addAndGet(endDay - startDay + 1 - numMissing);
+    missingDayCount.addAndGet(numMissing);
+    return missing;
+  }
+
+  /**
+   * Copies every cached value between startDay and startDay + row.size() - 1
+   * into the row.
+   * @param seriesKey The series key of the original query.
+   * @param dimensionValue The dimension value.
+   * @param startDay The epoch day of the first element of row.
+   * @param row The row to copy the values into.
+   * @return The number of values copied.
+   */
+  public int copyValues(String seriesKey, String dimensionValue, int startDay,
+      List<Double> row) {
+
+    Series series = getSeries(seriesKey);
+    synchronized (series) {
+      DayRun run = series.runs.get(dimensionValue);
+      if (run == null) {
+        return 0;
+      }
+      int from = Math.max(run.firstDay, startDay);
+      int to = Math.min(run.firstDay + run.length, startDay + row.size());
+      for (int day = from; day < to; day++) {
+        row.set(day - startDay, run.values[day - run.firstDay]);
+      }
+      return Math.max(to - from, 0);
+    }
+  }
+
+  /**
+   * Stores the values of a row. Only the days up to getLastFinalDay are
+   * stored. If the days overlap or are next to the days already stored for
+   * the dimension value they are merged, otherwise they replace them.
+   * @param seriesKey The series key of the original query.
+   * @param dimensionValue The dimension value.
+   * @param startDay The epoch day of the first element of row.
+   * @param row The values for consecutive days.
+   */
+  public void putValues(String seriesKey, String dimensionValue, int startDay,
+      List<Double> row) {
+
+    int length = Math.min(row.size(), getLastFinalDay() - startDay + 1);
+    if (length <= 0) {
+      return;
+    }
+    double[] values = new double[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = row.get(i);
+    }
+
+    Series series = getSeries(seriesKey);
+    synchronized (series) {
+      DayRun run = series.runs.get(dimensionValue);
+      DayRun newRun = new DayRun(startDay, values, length);
+      if (run != null && run.firstDay <= startDay + length
+          && startDay <= run.firstDay + run.length) {
+        newRun = run.merge(newRun);
+      }
+      series.runs.put(dimensionValue, newRun);
+      series.dirty = true;
+    }
+  }
+
+  /**
+   * Fills a job's Results with cached values and stores the job's values
+   * in the cache. Rows that were requested for only part of the date range
+   * get the rest of their days from the cache, and dimension values whose
+   * days were all cached are added as new rows. If the job is not sampled,
+   * every dimension value's days are then stored and the cache is saved.
+   * @param dataQuery The original query of the job.
+   * @param dimensionValues The dimension values of the job.
+   * @param results The job's Results, filled with the requested data.
+   */
+  public void update(DataQuery dataQuery, List<String> dimensionValues, Results results) {
+    String seriesKey = getSeriesKey(dataQuery);
+    int startDay = EpochDay.parse(dataQuery.getStartDate());
+    int numCols = results.getNumCols();
+
+    Map<String, List<Double>> rows = new HashMap<String, List<Double>>();
+    for (int i = 0; i < results.getRowNames().size(); i++) {
+      List<Double> row = results.getTable().get(i);
+      copyValues(seriesKey, results.getRowNames().get(i), startDay, row);
+      rows.put(results.getRowNames().get(i), row);
+    }
+
+    for (String dimensionValue : dimensionValues) {
+      if (rows.containsKey(dimensionValue)) {
+        continue;
+      }
+      List<Double> row = new ArrayList<Double>(numCols);
+      for (int i = 0; i < numCols; i++) {
+        row.add(0.0);
+      }
+      rows.put(dimensionValue, row);
+      if (copyValues(seriesKey, dimensionValue, startDay, row) > 0 && hasData(row)) {
+        results.addRow(dimensionValue, row);
+      }
+    }
+
+    if (!results.getIsSampled()) {
+      for (Map.Entry<String, List<Double>> entry : rows.entrySet()) {
+        putValues(seriesKey, entry.getKey(), startDay, entry.getValue());
+      }
+      save();
+    }
+  }
+
+  private static boolean hasData(List<Double> row) {
+    for (Double value : row) {
+      if (value != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes every changed series to the cache directory. Problems writing
+   * are printed to the console. Does nothing if no directory is set.
+   */
+  public void save() {
+    if (directory == null) {
+      return;
+    }
+    List<Map.Entry<String, Series>> entries;
+    synchronized (seriesMap) {
+      entries = new ArrayList<Map.Entry<String, Series>>(seriesMap.entrySet());
+    }
+    for (Map.Entry<String, Series> entry : entries) {
+      Series series = entry.getValue();
+      synchronized (series) {
+        if (!series.dirty) {
+          continue;
+        }
+        File file = getFile(entry.getKey());
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        try {
+          writeSeries(tempFile, series);
+          if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+            throw new IOException("Can not rename " + tempFile + " to " + file);
+          }
+          series.dirty = false;
+        } catch (IOException e) {
+          System.err.println("Could not write daily values: " + e.getMessage());
+          tempFile.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the series for a key, loading it from disk the first time.
+   */
+  private Series getSeries(String seriesKey) {
+    synchronized (seriesMap) {
+      Series series = seriesMap.get(seriesKey);
+      if (series == null) {
+        series = new Series();
+        if (directory != null) {
+          File file = getFile(seriesKey);
+          if (file.isFile()) {
+            try {
+              readSeries(file, series);
+            } catch (IOException e) {
+              System.err.println("Could not read daily values: " + e.getMessage());
+              series.runs.clear();
+            }
+          }
+        }
+        seriesMap.put(seriesKey, series);
+      }
+      return series;
+    }
+  }
+
+  private File getFile(String seriesKey) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      StringBuilder name = new StringBuilder();
+      for (byte b : digest.digest(seriesKey.getBytes("UTF-8"))) {
+        name.append(String.format("%02x", b));
+      }
+      return new File(directory, name.append(FILE_SUFFIX).toString());
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void writeSeries(File file, Series series) throws IOException {
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(file))));
+    try {
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(series.runs.size());
+      for (Map.Entry<String, DayRun> entry : series.runs.entrySet()) {
+        DayRun run = entry.getValue();
+        output.writeUTF(entry.getKey());
+        output.writeInt(run.firstDay);
+        output.writeInt(run.length);
+        for (int i = 0; i < run.length; i++) {
+          output.writeDouble(run.values[i]);
+        }
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  private static void readSeries(File file, Series series) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(new FileInputStream(file))));
+    try {
+      if (input.readInt() != FORMAT_VERSION) {
+        throw new IOException("Unknown cache format in " + file);
+      }
+      int numRuns = input.readInt();
+      for (int i = 0; i < numRuns; i++) {
+        String dimensionValue = input.readUTF();
+        int firstDay = input.readInt();
+        int length = input.readInt();
+        double[] values = new double[length];
+        for (int j = 0; j < length; j++) {
+          values[j] = input.readDouble();
+        }
+        series.runs.put(dimensionValue, new DayRun(firstDay, values, length));
+      }
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * @return The number of days found in the cache while planning queries.
+   */
+  public long getCachedDayCount() {
+    return cachedDayCount.get();
+  }
+
+  /**
+   * @return The number of days that had to be requested from the API.
+   */
+  public long getMissingDayCount() {
+    return missingDayCount.get();
+  }
+
+  /**
+   * Holds the runs of days of every dimension value in one series.
+   */
+  private static class Series {
+    final Map<String, DayRun> runs = new HashMap<String, DayRun>();
+    boolean dirty;
+  }
+
+  /**
+   * Holds the values of consecutive days of one dimension value.
+   */
+  private static class DayRun {
+    final int firstDay;
+    final double[] values;
+    final int length;
+
+    DayRun(int firstDay, double[] values, int length) {
+      this.firstDay = firstDay;
+      this.values = values;
+      this.length = length;
+    }
+
+    /**
+     * Returns a run covering the days of both runs. Days in both runs take
+     * their value from newer.
+     */
+    DayRun merge(DayRun newer) {
+      int first = Math.min(firstDay, newer.firstDay);
+      int end = Math.max(firstDay + length, newer.firstDay + newer.length);
+      double[] merged = new double[end - first];
+      System.arraycopy(values, 0, merged, firstDay - first, length);
+      System.arraycopy(newer.values, 0, merged, newer.firstDay - first, newer.length);
+      return new DayRun(first, merged, merged.length);
+    }
+  }
+}
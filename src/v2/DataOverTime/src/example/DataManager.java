@@ -15,30 +15,83 @@
 
 package example;
 
+import com.google.gdata.client.Service;
 import com.google.gdata.client.analytics.AnalyticsService;
 import com.google.gdata.client.analytics.DataQuery;
 import com.google.gdata.data.analytics.DataEntry;
 import com.google.gdata.data.analytics.DataFeed;
 import com.google.gdata.util.ServiceException;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Provides a wrapper to access data from the Google Analytics API.
+ * If a FeedCache is set, feeds are first looked up in the cache and every
+ * feed returned from the API is added to it. Requests are sent through a
+ * RequestScheduler, which limits their rate and retries them if they fail
+ * with a retryable error. If a RequestHedger is set, a slow request may be
+ * sent twice and the first answer is used. Concurrent requests for the same
+ * normalized URL are only sent once and share the feed.
  * @author api.nickm@google.com (Nick Mihailovski)
  */
 public class DataManager {
 
   private AnalyticsService analyticsService;
+  private final FeedCache feedCache;
+  private final RequestScheduler requestScheduler;
+  private final RequestHedger requestHedger;
+  private final SingleFlight<DataFeed> inFlightFeeds = new SingleFlight<DataFeed>();
+  private final StreamingFeedParser feedParser = new StreamingFeedParser();
 
   /**
    * Constructor.
    * @param analyticsService An AnalyticsService object.
    */
   public DataManager(AnalyticsService analyticsService) {
+    this(analyticsService, null);
+  }
+
+  /**
+   * Constructor.
+   * @param analyticsService An AnalyticsService object.
+   * @param feedCache The cache of feeds, or null to always use the API.
+   */
+  public DataManager(AnalyticsService analyticsService, FeedCache feedCache) {
+    this(analyticsService, feedCache, new RequestScheduler());
+  }
+
+  /**
+   * Constructor.
+   * @param analyticsService An AnalyticsService object.
+   * @param feedCache The cache of feeds, or null to always use the API.
+   * @param requestScheduler Limits the rate of requests and retries them.
+   *     May be shared by many DataManagers using the same profiles.
+   */
+  public DataManager(AnalyticsService analyticsService, FeedCache feedCache,
+      RequestScheduler requestScheduler) {
+    this(analyticsService, feedCache, requestScheduler, null);
+  }
+
+  /**
+   * Constructor.
+   * @param analyticsService An AnalyticsService object.
+   * @param feedCache The cache of feeds, or null to always use the API.
+   * @param requestScheduler Limits the rate of requests and retries them.
+   *     May be shared by many DataManagers using the same profiles.
+   * @param requestHedger Sends a second copy of slow requests, or null to
+   *     never hedge requests.
+   */
+  public DataManager(AnalyticsService analyticsService, FeedCache feedCache,
+      RequestScheduler requestScheduler, RequestHedger requestHedger) {
     this.analyticsService = analyticsService;
+    this.feedCache = feedCache;
+    this.requestScheduler = requestScheduler;
+    this.requestHedger = requestHedger;
   }
 
   /**
@@ -57,24 +110,194 @@ public class DataManager {
   }
 
   /**
-   * Retrieves a data from the Google Analytics Data Export API. Any
-   * exceptions are printed to the console and the program terminates.
+   * Retrieves a data from the Google Analytics Data Export API, or from the
+   * FeedCache if it holds the feed. Requests that fail with a retryable
+   * error are sent again by the RequestScheduler. If the same URL is
+   * already being requested, this waits for that request instead.
    * @param dataQuery The query to send to the API.
    * @retun The DataFeed response object from the API.
+   * @throws IllegalStateException If the request fails and can not be
+   *     retried, or the daily quota of the profile is used up.
    */
   public DataFeed getFeed(DataQuery dataQuery) {
+    String url = dataQuery.getUrl().toString();
+    if (feedCache != null) {
+      DataFeed feed = feedCache.get(url);
+      if (feed != null) {
+        return feed;
+      }
+    }
+    return getFeedOnce(dataQuery, url, null);
+  }
+
+  /**
+   * Retrieves a feed like getFeed(DataQuery). If a RequestHedger is set and
+   * the feed is not cached, a second request is sent if the first is slow
+   * and the budget allows it.
+   * @param dataQuery The query to send to the API.
+   * @param hedgeBudget The budget of extra requests of the current job, or
+   *     null to not hedge the request.
+   * @return The DataFeed response object from the API.
+   */
+  public DataFeed getFeed(DataQuery dataQuery, RequestHedger.Budget hedgeBudget) {
+    if (requestHedger == null || hedgeBudget == null) {
+      return getFeed(dataQuery);
+    }
+    String url = dataQuery.getUrl().toString();
+    if (feedCache != null) {
+      DataFeed feed = feedCache.get(url);
+      if (feed != null) {
+        return feed;
+      }
+    }
+    return getFeedOnce(dataQuery, url, hedgeBudget);
+  }
+
+  /**
+   * Requests a feed from the API. Callers asking for the same normalized
+   * URL while it is being requested wait for that request and share its
+   * feed. Hedged copies of the request are not coalesced.
+   */
+  private DataFeed getFeedOnce(final DataQuery dataQuery, final String url,
+      final RequestHedger.Budget hedgeBudget) {
+    return inFlightFeeds.execute(FeedCache.normalizeUrl(url), new Callable<DataFeed>() {
+      @Override
+      public DataFeed call() throws Exception {
+        Callable<DataFeed> request = new Callable<DataFeed>() {
+          @Override
+          public DataFeed call() {
+            return requestFeed(dataQuery, url);
+          }
+        };
+        return hedgeBudget == null ? request.call()
+            : requestHedger.execute(request, hedgeBudget);
+      }
+    });
+  }
+
+  /**
+   * Sends a request to the API through the RequestScheduler and adds the
+   * feed to the FeedCache.
+   */
+  private DataFeed requestFeed(final DataQuery dataQuery, final String url) {
+    DataFeed feed = requestScheduler.execute(dataQuery.getIds(),
+        new RequestScheduler.Request<DataFeed>() {
+          @Override
+          public DataFeed send() throws IOException, ServiceException {
+            System.out.println(url);
+            return analyticsService.getFeed(dataQuery, DataFeed.class);
+          }
+        });
+    if (feedCache != null) {
+      feedCache.put(url, feed);
+    }
+    return feed;
+  }
+
+  /**
+   * Requests a feed from the API and pushes each entry into the sink while
+   * the response is read, without building a DataFeed. The FeedCache is not
+   * used. The request is sent through the RequestScheduler, but it is not
+   * retried once the response has started, since entries may already have
+   * been added to the sink.
+   *
+   * If this method throws, the sink is left with the entries read so far
+   * and its endFeed method is not called. A Results object filled by a
+   * ResultsRowSink can not be used after a failed stream.
+   * @param dataQuery The query to send to the API.
+   * @param dictionary Gives the id of each dimension value.
+   * @param sink Receives each entry of the feed.
+   * @return The number of entries in the feed.
+   * @throws IllegalStateException If the request fails, or the response
+   *     can not be read.
+   * @throws IllegalArgumentException If the response can not be parsed.
+   */
+  public int streamFeed(final DataQuery dataQuery, final DimensionDictionary dictionary,
+      final FeedRowSink sink) {
+    final String url = dataQuery.getUrl().toString();
+    return requestScheduler.execute(dataQuery.getIds(),
+        new RequestScheduler.Request<Integer>() {
+          @Override
+          public Integer send() throws IOException, ServiceException {
+            System.out.println(url);
+            InputStream input = openFeedStream(dataQuery);
+            try {
+              return feedParser.parse(input, dictionary, sink);
+            } catch (IOException e) {
+              // Thrown unchecked so the scheduler does not retry it.
+              throw new IllegalStateException("Error reading feed: " + e.getMessage(), e);
+            } finally {
+              input.close();
+            }
+          }
+        });
+  }
+
+  /**
+   * Sends the request for a feed and returns its response. Closing the
+   * stream ends the request.
+   * @param dataQuery The query to send to the API.
+   * @return The Atom XML of the feed.
+   * @throws IOException If the request fails.
+   * @throws ServiceException If the API returns an error.
+   */
+  protected InputStream openFeedStream(DataQuery dataQuery)
+      throws IOException, ServiceException {
+    final Service.GDataRequest request = analyticsService.createFeedRequest(dataQuery.getUrl());
+    boolean opened = false;
     try {
-      System.out.println(dataQuery.getUrl().toString());
-      return analyticsService.getFeed(dataQuery, DataFeed.class);
-
-    } catch (IOException e) {
-      System.err.println("IO Exception: " + e.getMessage());
-      System.exit(0);
-    } catch (ServiceException e) {
-      System.err.println("Service Exception: " + e.getMessage());
-      System.err.println(dataQuery.getUrl().toString());
-      System.exit(0);
+      request.execute();
+      InputStream input = new FilterInputStream(request.getResponseStream()) {
+        @Override
+        public void close() {
+          request.end();
+        }
+      };
+      opened = true;
+      return input;
+    } finally {
+      if (!opened) {
+        request.end();
+      }
     }
-    return null;
+  }
+
+  /**
+   * Returns the budget of extra requests for a job.
+   * @param numQueries The number of queries the job will send.
+   * @return A new budget, or null if requests are not hedged.
+   */
+  public RequestHedger.Budget newHedgeBudget(int numQueries) {
+    return requestHedger != null ? requestHedger.newBudget(numQueries) : null;
+  }
+
+  /**
+   * @return The cache of feeds, or null if feeds are not cached.
+   */
+  public FeedCache getFeedCache() {
+    return feedCache;
+  }
+
+  /**
+   * @return The RequestScheduler used to send requests.
+   */
+  public RequestScheduler getRequestScheduler() {
+    return requestScheduler;
+  }
+
+  /**
+   * @return The RequestHedger used to hedge requests, or null if requests
+   *     are not hedged.
+   */
+  public RequestHedger getRequestHedger() {
+    return requestHedger;
+  }
+
+  /**
+   * @return The number of requests for a feed which waited for the same
+   *     request already in flight instead of sending their own.
+   */
+  public long getCoalescedCount() {
+    return inFlightFeeds.getSharedCount();
   }
 }
@@ -18,16 +18,26 @@ package example;
 import com.google.gdata.client.analytics.DataQuery;
 import com.google.gdata.data.analytics.DataFeed;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Main class to retrieve the metrics for the values of one dimension over
- * time.
+ * time. All the state for each call to getData is kept in a DataOverTimeJob,
+ * so one instance can be shared by many threads at once.
  */
 public class DataOverTime {
-  DataManager dataManager;
-  QueryManager queryManager;
-  ResultManager resultManager;
+  final DataManager dataManager;
+  final QueryManager queryManager;
+  final ResultManager resultManager;
+  final ParallelQueryExecutor queryExecutor;
+  final DailyValueCache dailyValueCache;
 
   /**
    * Constructor.
@@ -38,35 +48,226 @@ public class DataOverTime {
   public DataOverTime(DataManager dataManager, QueryManager queryManager,
       ResultManager resultManager) {
 
+    this(dataManager, queryManager, resultManager, null);
+  }
+
+  /**
+   * Constructor.
+   * Queries are executed concurrently by the queryExecutor instead of one
+   * after another.
+   * @param dataManager An implementation of DataManager.
+   * @param queryManager An implementation of QueryManager.
+   * @param resultManager An implementation of ResultManager.
+   * @param queryExecutor Executes the filtered queries concurrently. May be
+   *     null to execute queries one after another.
+   */
+  public DataOverTime(DataManager dataManager, QueryManager queryManager,
+      ResultManager resultManager, ParallelQueryExecutor queryExecutor) {
+
+    this(dataManager, queryManager, resultManager, queryExecutor, null);
+  }
+
+  /**
+   * Constructor.
+   * After the queries of a job are executed, the job's Results are filled
+   * with the days that were not requested and the new days are stored in
+   * the dailyValueCache. The queryManager should use the same cache to plan
+   * its queries.
+   * @param dataManager An implementation of DataManager.
+   * @param queryManager An implementation of QueryManager.
+   * @param resultManager An implementation of ResultManager.
+   * @param queryExecutor Executes the filtered queries concurrently. May be
+   *     null to execute queries one after another.
+   * @param dailyValueCache The cache of daily values. May be null.
+   */
+  public DataOverTime(DataManager dataManager, QueryManager queryManager,
+      ResultManager resultManager, ParallelQueryExecutor queryExecutor,
+      DailyValueCache dailyValueCache) {
+
     this.dataManager = dataManager;
     this.queryManager = queryManager;
     this.resultManager = resultManager;
+    this.queryExecutor = queryExecutor;
+    this.dailyValueCache = dailyValueCache;
   }
 
   /**
    * Main method to retrieve all the data. This first makes a query to get
    * a list of dimensions, then programmatically constructs a list of queries
    * and executes them to get each dimension's metrics over time. Finally
-   * the data is returned as a new Results object.
+   * the data is returned as a new Results object. If a ParallelQueryExecutor
+   * was set, the queries are executed concurrently.
    * @param dataQuery The initial query to get data over time. This should
    *     have only one dimension and one metric.
    * @return A Results object with all the data.
    */
   public Results getData(DataQuery dataQuery) {
-    Results results = new Results();
+    DataOverTimeJob job = new DataOverTimeJob(dataQuery);
+    run(job);
+    return job.getResults();
+  }
+
+  /**
+   * Runs a job. The job's Results object is filled with the data.
+   * @param job The job to run.
+   */
+  public void run(DataOverTimeJob job) {
+    DataQuery jobQuery = job.getDataQuery();
+    job.setDimensionValues(dataManager.getDimensionValues(jobQuery));
+    job.setQueryPlan(queryManager.getQueryPlan(jobQuery, job.getDimensionValues()));
+    execute(job);
+    updateDailyValueCache(job);
+  }
+
+  /**
+   * Runs a job using the Results of an earlier run of the same query. Only
+   * the dates after the last column of the previous results are requested
+   * for the previous dimension values, and the whole date range is only
+   * requested for dimension values that are new. Columns before the job's
+   * start date are dropped. The previous rows keep their order and new rows
+   * are added after them.
+   *
+   * If the job starts before the previous results, or after their last
+   * date, every date is requested as in run.
+   * @param job The job to run.
+   * @param previous The Results of an earlier run of the same query.
+   */
+  public void runIncremental(DataOverTimeJob job, Results previous) {
+    DataQuery jobQuery = job.getDataQuery();
+    List<String> colNames = previous.getColNames();
+    int startDay = EpochDay.parse(jobQuery.getStartDate());
+    int endDay = EpochDay.parse(jobQuery.getEndDate());
+    if (colNames.isEmpty()) {
+      run(job);
+      return;
+    }
+    DateRange previousRange = previous.getDateRange();
+    int previousStartDay = previousRange.getStartDay();
+    int previousEndDay = previousRange.getEndDay();
+    if (startDay < previousStartDay || startDay > previousEndDay) {
+      run(job);
+      return;
+    }
+
+    Set<String> previousValues = new LinkedHashSet<String>(previous.getOriginalDimensionValues());
+    previousValues.addAll(previous.getRowNames());
+    List<String> newValues = new ArrayList<String>();
+    for (String dimensionValue : dataManager.getDimensionValues(jobQuery)) {
+      if (!previousValues.contains(dimensionValue)) {
+        newValues.add(dimensionValue);
+      }
+    }
+    List<String> dimensionValues = new ArrayList<String>(previousValues);
+    dimensionValues.addAll(newValues);
+    job.setDimensionValues(dimensionValues);
+
+    List<QueryPlan> parts = new ArrayList<QueryPlan>();
+    if (previousEndDay < endDay && !previousValues.isEmpty()) {
+      DataQuery newDatesQuery = DataQueryUtil.copyQuery(jobQuery);
+      newDatesQuery.setStartDate(EpochDay.toQueryDate(previousEndDay + 1));
+      parts.add(queryManager.getQueryPlan(newDatesQuery,
+          new ArrayList<String>(previousValues)));
+    }
+    if (!newValues.isEmpty()) {
+      parts.add(queryManager.getQueryPlan(jobQuery, newValues));
+    }
+    job.setQueryPlan(QueryPlan.combine(jobQuery, parts));
+    execute(job);
+
+    mergePrevious(job.getResults(), previous, startDay, Math.min(endDay, previousEndDay));
+    updateDailyValueCache(job);
+  }
+
+  /**
+   * Runs a job incrementally from a snapshot of the last run, then writes
+   * a snapshot of the new results. If there is no snapshot, or it was made
+   * by a different query, every date is requested.
+   * @param job The job to run.
+   * @param snapshotFile The file holding the snapshot of the last run.
+   * @throws IOException If the snapshot can not be read or written.
+   */
+  public void refresh(DataOverTimeJob job, File snapshotFile) throws IOException {
+    String seriesKey = DailyValueCache.getSeriesKey(job.getDataQuery());
+    ResultsSnapshot snapshot = snapshotFile.isFile() ? ResultsSnapshot.read(snapshotFile) : null;
+    if (snapshot != null && snapshot.getSeriesKey().equals(seriesKey)) {
+      runIncremental(job, snapshot.getResults());
+    } else {
+      run(job);
+    }
+    new ResultsSnapshot(seriesKey, job.getResults()).write(snapshotFile);
+  }
 
-    List<String> dimensionValues = dataManager.getDimensionValues(dataQuery);
-    results.initTable(dataQuery, dimensionValues);
-    resultManager.setResults(results);
+  /**
+   * Executes the job's query plan and adds every feed to its results.
+   */
+  private void execute(DataOverTimeJob job) {
+    QueryPlan plan = job.getQueryPlan();
+    Results results = job.getResults();
+    RequestHedger.Budget hedgeBudget = dataManager.newHedgeBudget(plan.size());
+    job.setHedgeBudget(hedgeBudget);
+    if (queryExecutor != null) {
+      queryExecutor.execute(plan.iterator(), dataManager, hedgeBudget, resultManager, results);
+    } else {
+      for (DataQuery query : plan) {
+        DataFeed feed = dataManager.getFeed(query, hedgeBudget);
+        resultManager.addRows(results, feed);
+      }
+    }
+  }
+
+  /**
+   * Stores the job's final results in the daily value cache. This must run
+   * after the previous results are merged, otherwise the days which were not
+   * requested would be cached as zero.
+   */
+  private void updateDailyValueCache(DataOverTimeJob job) {
+    if (dailyValueCache != null) {
+      dailyValueCache.update(job.getDataQuery(), job.getDimensionValues(), job.getResults());
+    }
+  }
 
-    FilteredQueries queries = queryManager.getFilteredQueries(dataQuery, dimensionValues);
+  /**
+   * Copies the days from startDay to endDay of every previous row into the
+   * results, then orders the rows so the previous rows come first.
+   */
+  private static void mergePrevious(Results results, Results previous, int startDay,
+      int endDay) {
 
-    while (queries.hasNext()) {
-      DataQuery query = queries.next();
-      DataFeed feed = dataManager.getFeed(query);
-      resultManager.addRows(feed);
+    Map<String, List<Double>> rows = new HashMap<String, List<Double>>();
+    for (int i = 0; i < results.getRowNames().size(); i++) {
+      rows.put(results.getRowNames().get(i), results.getTable().get(i));
     }
 
-    return results;
+    int numCols = results.getNumCols();
+    int previousStartDay = previous.getDateRange().getStartDay();
+    List<String> rowNames = new ArrayList<String>(rows.size());
+    List<List<Double>> table = new ArrayList<List<Double>>(rows.size());
+    for (int i = 0; i < previous.getRowNames().size(); i++) {
+      String rowName = previous.getRowNames().get(i);
+      List<Double> row = rows.remove(rowName);
+      if (row == null) {
+        row = new ArrayList<Double>(numCols);
+        for (int col = 0; col < numCols; col++) {
+          row.add(0.0);
+        }
+      }
+      List<Double> previousRow = previous.getTable().get(i);
+      for (int day = startDay; day <= endDay; day++) {
+        row.set(day - startDay, previousRow.get(day - previousStartDay));
+      }
+      rowNames.add(rowName);
+      table.add(row);
+    }
+
+    for (int i = 0; i < results.getRowNames().size(); i++) {
+      String rowName = results.getRowNames().get(i);
+      if (rows.containsKey(rowName)) {
+        rowNames.add(rowName);
+        table.add(results.getTable().get(i));
+      }
+    }
+    results.setRowNames(rowNames);
+    results.setTable(table);
+    results.setIsSampled(previous.getIsSampled());
   }
 }
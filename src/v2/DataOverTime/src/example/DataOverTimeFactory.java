@@ -17,9 +17,14 @@ package example;
 
 import com.google.gdata.client.analytics.AnalyticsService;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 /**
  * Factory class to separate instances that get data over time
- * by individual queries or grouped queries.
+ * by individual queries or grouped queries. The returned objects keep no
+ * per request state, so one instance can be created once and shared by
+ * any number of threads.
  *
  * @author api.nickm@google.com (Nick Mihailovski)
  */
@@ -48,13 +53,118 @@ public class DataOverTimeFactory {
   /**
    * Returns an object that automates retrieving data over time. The object is
    * configured to reduce the number of queries to the API by grouping queries.
+   * Query plans are cached so repeated reports skip bucketing.
    * @param analyticsService An authorized AnalyticsService object.
    * @return An object that implements the DataOverTime interface
    */
   public static DataOverTime getGroupQueries(AnalyticsService analyticsService) {
     return new DataOverTime(
         new DataManager(analyticsService),
-        new QueryManagerGroupImpl(new BucketManager()),
+        new CachingQueryManager(new QueryManagerGroupImpl(new BucketManager())),
+        new ResultManagerGroupImpl());
+  }
+
+  /**
+   * Returns an object that automates retrieving data over time. The object is
+   * configured to reduce the number of queries to the API by grouping queries.
+   * Feeds are looked up in feedCache before making a request to the API.
+   * @param analyticsService An authorized AnalyticsService object.
+   * @param feedCache The cache of feeds.
+   * @return An object that implements the DataOverTime interface
+   */
+  public static DataOverTime getGroupQueries(AnalyticsService analyticsService,
+      FeedCache feedCache) {
+    return new DataOverTime(
+        new DataManager(analyticsService, feedCache),
+        new CachingQueryManager(new QueryManagerGroupImpl(new BucketManager())),
+        new ResultManagerGroupImpl());
+  }
+
+  /**
+   * Returns an object that automates retrieving data over time. The object is
+   * configured to reduce the number of queries to the API by grouping queries.
+   * Only the days missing from dailyValueCache are requested. Query plans
+   * are not cached since they change as the cache fills.
+   * @param analyticsService An authorized AnalyticsService object.
+   * @param dailyValueCache The cache of daily values.
+   * @return An object that implements the DataOverTime interface
+   */
+  public static DataOverTime getGroupQueries(AnalyticsService analyticsService,
+      DailyValueCache dailyValueCache) {
+    return new DataOverTime(
+        new DataManager(analyticsService),
+        new QueryManagerGroupImpl(new BucketManager(), dailyValueCache),
+        new ResultManagerGroupImpl(),
+        null,
+        dailyValueCache);
+  }
+
+  /**
+   * Returns an object that automates retrieving data over time. The object is
+   * configured to reduce the number of queries to the API by grouping queries
+   * with the given strategy. Query plans are cached so repeated reports skip
+   * bucketing.
+   * @param analyticsService An authorized AnalyticsService object.
+   * @param bucketStrategy The strategy used to group queries.
+   * @return An object that implements the DataOverTime interface
+   */
+  public static DataOverTime getGroupQueries(AnalyticsService analyticsService,
+      BucketStrategy bucketStrategy) {
+    return new DataOverTime(
+        new DataManager(analyticsService),
+        new CachingQueryManager(new QueryManagerGroupImpl(new BucketManager(bucketStrategy))),
         new ResultManagerGroupImpl());
   }
+
+  /**
+   * Returns an object that automates retrieving data over time. The object is
+   * configured to group queries and to execute them concurrently. Query plans
+   * are cached so repeated reports skip bucketing.
+   * @param analyticsService An authorized AnalyticsService object.
+   * @param maxConcurrency The maximum number of requests to make at once.
+   * @return An object that implements the DataOverTime interface
+   */
+  public static DataOverTime getParallelGroupQueries(AnalyticsService analyticsService,
+      int maxConcurrency) {
+    return getParallelGroupQueries(analyticsService, maxConcurrency,
+        Executors.defaultThreadFactory());
+  }
+
+  /**
+   * Returns an object that automates retrieving data over time. The object is
+   * configured to group queries and to execute them concurrently on threads
+   * created by threadFactory. A virtual thread factory may be used here.
+   * @param analyticsService An authorized AnalyticsService object.
+   * @param maxConcurrency The maximum number of requests to make at once.
+   * @param threadFactory The factory used to create request threads.
+   * @return An object that implements the DataOverTime interface
+   */
+  public static DataOverTime getParallelGroupQueries(AnalyticsService analyticsService,
+      int maxConcurrency, ThreadFactory threadFactory) {
+    return new DataOverTime(
+        new DataManager(analyticsService),
+        new CachingQueryManager(new QueryManagerGroupImpl(new BucketManager())),
+        new ResultManagerGroupImpl(),
+        new ParallelQueryExecutor(maxConcurrency, maxConcurrency, threadFactory));
+  }
+
+  /**
+   * Returns an object that automates retrieving data over time. The object is
+   * configured to group queries and to execute them concurrently. The number
+   * of requests made at once is adjusted by the limiter from the latency and
+   * errors of earlier requests. The limiter may be shared to read its limit
+   * and queue depth.
+   * @param analyticsService An authorized AnalyticsService object.
+   * @param limiter Adjusts the number of requests made at once.
+   * @param threadFactory The factory used to create request threads.
+   * @return An object that implements the DataOverTime interface
+   */
+  public static DataOverTime getAdaptiveGroupQueries(AnalyticsService analyticsService,
+      AdaptiveConcurrencyLimiter limiter, ThreadFactory threadFactory) {
+    return new DataOverTime(
+        new DataManager(analyticsService),
+        new CachingQueryManager(new QueryManagerGroupImpl(new BucketManager())),
+        new ResultManagerGroupImpl(),
+        new ParallelQueryExecutor(limiter, limiter.getMaxLimit(), threadFactory));
+  }
 }
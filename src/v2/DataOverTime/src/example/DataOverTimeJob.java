@@ -0,0 +1,119 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.util.List;
+
+/**
+ * Holds all the state for one call to DataOverTime.getData. Each job has
+ * its own copy of the query, the list of dimension values, the query plan
+ * and the Results being filled in. Since nothing about a job is
+ * stored in the DataOverTime object or its managers, one DataOverTime object
+ * can run many jobs at once.
+ */
+public class DataOverTimeJob {
+
+  private final DataQuery dataQuery;
+  private final Results results;
+  private List<String> dimensionValues;
+  private QueryPlan queryPlan;
+  private RequestHedger.Budget hedgeBudget;
+
+  /**
+   * Constructor.
+   * The query is copied so the caller may keep changing it.
+   * @param dataQuery The initial query to get data over time.
+   */
+  public DataOverTimeJob(DataQuery dataQuery) {
+    this(dataQuery, new Results());
+  }
+
+  /**
+   * Constructor.
+   * The query is copied so the caller may keep changing it.
+   * @param dataQuery The initial query to get data over time.
+   * @param results The empty Results object to fill, for example a
+   *     MappedResults object for a table larger than the heap.
+   */
+  public DataOverTimeJob(DataQuery dataQuery, Results results) {
+    this.dataQuery = DataQueryUtil.copyQuery(dataQuery);
+    this.results = results;
+  }
+
+  /**
+   * @return This job's copy of the initial query.
+   */
+  public DataQuery getDataQuery() {
+    return dataQuery;
+  }
+
+  /**
+   * @return The Results object for this job.
+   */
+  public Results getResults() {
+    return results;
+  }
+
+  /**
+   * Sets the dimension values and initializes the results table with them.
+   * @param dimensionValues The dimension values returned from the initial
+   *     query.
+   */
+  public void setDimensionValues(List<String> dimensionValues) {
+    this.dimensionValues = dimensionValues;
+    results.initTable(dataQuery, dimensionValues);
+  }
+
+  /**
+   * @return The dimension values returned from the initial query.
+   */
+  public List<String> getDimensionValues() {
+    return dimensionValues;
+  }
+
+  /**
+   * Sets the query plan for this job. Plans are immutable and may be
+   * shared with other jobs.
+   * @param queryPlan The queries to get data over time.
+   */
+  public void setQueryPlan(QueryPlan queryPlan) {
+    this.queryPlan = queryPlan;
+  }
+
+  /**
+   * @return The queries to get data over time.
+   */
+  public QueryPlan getQueryPlan() {
+    return queryPlan;
+  }
+
+  /**
+   * Sets the budget of extra requests this job may send to hedge slow
+   * requests.
+   * @param hedgeBudget The budget, or null if requests are not hedged.
+   */
+  public void setHedgeBudget(RequestHedger.Budget hedgeBudget) {
+    this.hedgeBudget = hedgeBudget;
+  }
+
+  /**
+   * @return The budget of extra requests, which holds the number of
+   *     requests hedged by this job, or null if requests are not hedged.
+   */
+  public RequestHedger.Budget getHedgeBudget() {
+    return hedgeBudget;
+  }
+}
@@ -17,10 +17,6 @@ package example;
 
 import com.google.gdata.client.analytics.DataQuery;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 /**
@@ -30,11 +26,6 @@ import java.util.List;
  */
 public class DataQueryUtil {
 
-  private static final long millisInDay = 24 * 60 * 60 * 1000;
-
-  private static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-  private static Calendar calendar = Calendar.getInstance();
-
   /**
    * Returns the number of days in the date range of the dataQuery object.
    * This includes the final day.
@@ -43,49 +34,18 @@ public class DataQueryUtil {
    * @return The number of days in the date range. Inclusive.
    */
   public static int getNumberOfDays(DataQuery dataQuery) {
-    long startDay = 0;
-    long endDay = 0;
-
-    try {
-      calendar.setTime(dateFormat.parse(dataQuery.getStartDate()));
-      startDay = calendar.getTimeInMillis() / millisInDay;
-
-      calendar.setTime(dateFormat.parse(dataQuery.getEndDate()));
-      endDay = calendar.getTimeInMillis() / millisInDay;
-    } catch (ParseException e) {
-      System.err.println("Error parsing date: " + e.getMessage());
-      System.exit(0);
-    }
-
-    return (int) (endDay - startDay + 1);
+    return DateRange.of(dataQuery).getNumDays();
   }
 
   /**
    * Returns a list of strings that represent each date in the date range.
-   * Inclusive.
+   * Inclusive. The list is shared by every query with the same dates, so
+   * it can not be changed.
    * @param dataQuery The DataQuery object with start and end date set.
    * @return A list of strings representing dates in the date range.
    */
   public static List<String> getListOfDates(DataQuery dataQuery) {
-    Calendar cal = Calendar.getInstance();
-    int numDays = getNumberOfDays(dataQuery);
-    List<String> output = new ArrayList<String>(numDays);
-
-    output.add(dataQuery.getStartDate());
-
-    try {
-      cal.setTime(dateFormat.parse(dataQuery.getStartDate()));
-    } catch (ParseException e) {
-      System.err.println("Error parsing date: " + e.getMessage());
-      System.exit(0);
-    }
-
-    // Start from 1 since there is already a day in the list.
-    for (int i = 1; i < numDays; i++) {
-      cal.add(Calendar.DATE, 1);
-      output.add(dateFormat.format(cal.getTime()));
-    }
-    return output;
+    return DateRange.of(dataQuery).getColumnNames();
   }
 
   /**
@@ -98,4 +58,26 @@ public class DataQueryUtil {
   public static String getResultDateFormat(String queryDate) {
     return queryDate.replaceAll("-", "");
   }
+
+  /**
+   * Returns a new DataQuery object with the same feed URL and parameters
+   * as the original. Changes made to the copy do not affect the original
+   * query, so copies can safely be handed to other threads.
+   * @param dataQuery The DataQuery object to copy.
+   * @return A new DataQuery object with the same parameters.
+   */
+  public static DataQuery copyQuery(DataQuery dataQuery) {
+    DataQuery copy = new DataQuery(dataQuery.getFeedUrl());
+    copy.setIds(dataQuery.getIds());
+    copy.setStartDate(dataQuery.getStartDate());
+    copy.setEndDate(dataQuery.getEndDate());
+    copy.setDimensions(dataQuery.getDimensions());
+    copy.setMetrics(dataQuery.getMetrics());
+    copy.setSort(dataQuery.getSort());
+    copy.setFilters(dataQuery.getFilters());
+    copy.setSegment(dataQuery.getSegment());
+    copy.setMaxResults(dataQuery.getMaxResults());
+    copy.setStartIndex(dataQuery.getStartIndex());
+    return copy;
+  }
 }
@@ -0,0 +1,246 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides an immutable range of dates split into columns, stored as epoch
+ * days. Ranges are returned by the static of methods, which cache the most
+ * recently used ranges, so the list of column names of a date range is only
+ * built once however many jobs use it. Every method may be called from many
+ * threads at once.
+ *
+ * The column of a date is found with arithmetic, so mapping each date in an
+ * API response to its column takes constant time.
+ */
+public final class DateRange {
+
+  /**
+   * The length of each column of a date range. Only days are supported,
+   * since the ResultManagers set each cell to the value of one date instead
+   * of adding up the dates of a column.
+   */
+  public enum Granularity {
+    /** One column for each day. */
+    DAY(1);
+
+    private final int days;
+
+    private Granularity(int days) {
+      this.days = days;
+    }
+
+    /**
+     * @return The number of days in each column.
+     */
+    public int getDays() {
+      return days;
+    }
+  }
+
+  static final int MAX_CACHED_RANGES = 256;
+
+  private static final Map<DateRange, DateRange> cache =
+      new LinkedHashMap<DateRange, DateRange>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DateRange, DateRange> eldest) {
+          return size() > MAX_CACHED_RANGES;
+        }
+      };
+
+  private final int startDay;
+  private final int endDay;
+  private final Granularity granularity;
+
+  // Built on first use. Two threads may both build it, which is harmless
+  // since the lists are equal and never change.
+  private volatile List<String> columnNames;
+
+  /**
+   * Constructor.
+   * Use the static of methods to get cached ranges.
+   */
+  private DateRange(int startDay, int endDay, Granularity granularity) {
+    if (endDay < startDay) {
+      throw new IllegalArgumentException("End date " + EpochDay.toQueryDate(endDay)
+          + " is before start date " + EpochDay.toQueryDate(startDay));
+    }
+    if (granularity == null) {
+      throw new IllegalArgumentException("Granularity is null");
+    }
+    this.startDay = startDay;
+    this.endDay = endDay;
+    this.granularity = granularity;
+  }
+
+  /**
+   * Returns the daily date range of a query.
+   * @param dataQuery A DataQuery object which has start and end date
+   *     parameters set.
+   * @return A DateRange with one column for each day. Inclusive.
+   */
+  public static DateRange of(DataQuery dataQuery) {
+    return of(dataQuery.getStartDate(), dataQuery.getEndDate(), Granularity.DAY);
+  }
+
+  /**
+   * Returns a date range from startDate to endDate. Inclusive.
+   * @param startDate A date in the yyyy-MM-dd or yyyyMMdd format.
+   * @param endDate A date in the yyyy-MM-dd or yyyyMMdd format.
+   * @param granularity The length of each column.
+   * @return A DateRange, which may be shared with other callers.
+   * @throws IllegalArgumentException If a date can not be parsed or
+   *     endDate is before startDate.
+   */
+  public static DateRange of(String startDate, String endDate, Granularity granularity) {
+    return of(EpochDay.parse(startDate), EpochDay.parse(endDate), granularity);
+  }
+
+  /**
+   * Returns a date range from startDay to endDay. Inclusive.
+   * @param startDay The epoch day of the first day.
+   * @param endDay The epoch day of the last day.
+   * @param granularity The length of each column.
+   * @return A DateRange, which may be shared with other callers.
+   * @throws IllegalArgumentException If endDay is before startDay.
+   */
+  public static DateRange of(int startDay, int endDay, Granularity granularity) {
+    DateRange range = new DateRange(startDay, endDay, granularity);
+    synchronized (cache) {
+      DateRange cached = cache.get(range);
+      if (cached != null) {
+        return cached;
+      }
+      cache.put(range, range);
+    }
+    return range;
+  }
+
+  /**
+   * @return The epoch day of the first day in the range.
+   */
+  public int getStartDay() {
+    return startDay;
+  }
+
+  /**
+   * @return The epoch day of the last day in the range.
+   */
+  public int getEndDay() {
+    return endDay;
+  }
+
+  /**
+   * @return The length of each column.
+   */
+  public Granularity getGranularity() {
+    return granularity;
+  }
+
+  /**
+   * @return The number of days in the range. Inclusive.
+   */
+  public int getNumDays() {
+    return endDay - startDay + 1;
+  }
+
+  /**
+   * @return The number of columns in the range. The last column may have
+   *     fewer days than the others.
+   */
+  public int getNumColumns() {
+    return (getNumDays() + granularity.getDays() - 1) / granularity.getDays();
+  }
+
+  /**
+   * Returns the column of an epoch day.
+   * @param epochDay The number of days since 1970-01-01.
+   * @return The index of the column holding the day, or -1 if the day is
+   *     not in the range.
+   */
+  public int getColumn(int epochDay) {
+    if (epochDay < startDay || epochDay > endDay) {
+      return -1;
+    }
+    return (epochDay - startDay) / granularity.getDays();
+  }
+
+  /**
+   * Returns the column of a date returned by the API.
+   * @param date A date in the yyyyMMdd or yyyy-MM-dd format.
+   * @return The index of the column holding the date, or -1 if the date is
+   *     not in the range.
+   * @throws IllegalArgumentException If the date can not be parsed.
+   */
+  public int getColumn(CharSequence date) {
+    return getColumn(EpochDay.parse(date));
+  }
+
+  /**
+   * @param column The index of a column.
+   * @return The epoch day of the first day of the column.
+   */
+  public int getColumnStartDay(int column) {
+    if (column < 0 || column >= getNumColumns()) {
+      throw new IndexOutOfBoundsException("Column: " + column);
+    }
+    return startDay + column * granularity.getDays();
+  }
+
+  /**
+   * Returns the first day of each column in the yyyy-MM-dd format used in
+   * queries. The list is built once for each cached range.
+   * @return An unmodifiable list of dates.
+   */
+  public List<String> getColumnNames() {
+    List<String> names = columnNames;
+    if (names == null) {
+      List<String> output = new ArrayList<String>(getNumColumns());
+      for (int column = 0; column < getNumColumns(); column++) {
+        output.add(EpochDay.toQueryDate(getColumnStartDay(column)));
+      }
+      names = Collections.unmodifiableList(output);
+      columnNames = names;
+    }
+    return names;
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (!(object instanceof DateRange)) {
+      return false;
+    }
+    DateRange other = (DateRange) object;
+    return startDay == other.startDay && endDay == other.endDay
+        && granularity == other.granularity;
+  }
+
+  @Override
+  public int hashCode() {
+    return (startDay * 31 + endDay) * 31 + granularity.ordinal();
+  }
+
+  @Override
+  public String toString() {
+    return EpochDay.toQueryDate(startDay) + " to " + EpochDay.toQueryDate(endDay) + " by "
+        + granularity;
+  }
+}
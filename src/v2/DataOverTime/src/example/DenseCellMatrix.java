@@ -0,0 +1,108 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.Arrays;
+
+/**
+ * Provides a CellMatrix which stores every row in one growing double array,
+ * one row after another. Integral metrics are stored exactly since a double
+ * holds every whole number up to 2^53.
+ */
+public class DenseCellMatrix implements CellMatrix {
+
+  private static final int DEFAULT_ROWS = 16;
+
+  private final int numCols;
+  private double[] cells;
+  private int numRows;
+  private boolean isIntegral = true;
+
+  /**
+   * Constructor.
+   * @param numCols The number of columns in every row.
+   * @param expectedRows The number of rows to allocate space for. More rows
+   *     can be added.
+   */
+  public DenseCellMatrix(int numCols, int expectedRows) {
+    if (numCols < 0) {
+      throw new IllegalArgumentException("numCols must not be negative: " + numCols);
+    }
+    this.numCols = numCols;
+    cells = new double[numCols * Math.max(expectedRows, DEFAULT_ROWS)];
+  }
+
+  @Override
+  public int getNumRows() {
+    return numRows;
+  }
+
+  @Override
+  public int getNumCols() {
+    return numCols;
+  }
+
+  @Override
+  public int addRow(double[] values) {
+    int offset = numRows * numCols;
+    if (offset + numCols > cells.length) {
+      cells = Arrays.copyOf(cells, Math.max(cells.length + cells.length / 2, offset + numCols));
+    }
+    System.arraycopy(values, 0, cells, offset, numCols);
+    for (int i = 0; isIntegral && i < numCols; i++) {
+      isIntegral = isWhole(values[i]);
+    }
+    return numRows++;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    return cells[getOffset(row, col)];
+  }
+
+  @Override
+  public void getRow(int row, double[] values) {
+    if (numCols > 0) {
+      System.arraycopy(cells, getOffset(row, 0), values, 0, numCols);
+    }
+  }
+
+  @Override
+  public void set(int row, int col, double value) {
+    cells[getOffset(row, col)] = value;
+    if (isIntegral) {
+      isIntegral = isWhole(value);
+    }
+  }
+
+  @Override
+  public boolean isIntegral() {
+    return isIntegral;
+  }
+
+  private int getOffset(int row, int col) {
+    if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+      throw new IndexOutOfBoundsException("row: " + row + ", col: " + col);
+    }
+    return row * numCols + col;
+  }
+
+  /**
+   * @param value The value to check.
+   * @return Whether the value is a whole number.
+   */
+  static boolean isWhole(double value) {
+    return value == Math.rint(value) && !Double.isInfinite(value);
+  }
+}
@@ -0,0 +1,138 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps each dimension value of a job to an int id, in the order the values
+ * are first seen. The value of each id is stored once, so rows and filters
+ * can refer to a value by its id and share one String object for it.
+ *
+ * Ids are found in an open addressing table of ints, which uses far less
+ * memory than a HashMap. A dictionary is not thread safe.
+ */
+public class DimensionDictionary {
+
+  private final List<String> values;
+  private final List<String> unmodifiableValues;
+
+  // Each slot holds an id plus 1, or 0 if it is empty.
+  private int[] slots;
+
+  /**
+   * Constructor.
+   * @param initialValues The values to add first. A value in the list more
+   *     than once keeps the id of its first position.
+   */
+  public DimensionDictionary(List<String> initialValues) {
+    values = new ArrayList<String>(initialValues.size());
+    unmodifiableValues = Collections.unmodifiableList(values);
+    slots = new int[getCapacity(initialValues.size())];
+    for (String value : initialValues) {
+      getId(value);
+    }
+  }
+
+  /**
+   * Returns the id of a value, adding the value if it is new.
+   * @param value The dimension value.
+   * @return The id of the value.
+   */
+  public int getId(String value) {
+    int slot = findSlot(value);
+    if (slots[slot] != 0) {
+      return slots[slot] - 1;
+    }
+
+    int id = values.size();
+    values.add(value);
+    slots[slot] = id + 1;
+    if (values.size() * 2 > slots.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  /**
+   * @param value The dimension value.
+   * @return The id of the value, or -1 if the value has not been added.
+   */
+  public int findId(String value) {
+    return slots[findSlot(value)] - 1;
+  }
+
+  /**
+   * @param id An id returned by getId.
+   * @return The value of the id.
+   */
+  public String getValue(int id) {
+    return values.get(id);
+  }
+
+  /**
+   * @return The number of values.
+   */
+  public int size() {
+    return values.size();
+  }
+
+  /**
+   * @return An unmodifiable view of every value, in the order of their ids.
+   */
+  public List<String> getValues() {
+    return unmodifiableValues;
+  }
+
+  /**
+   * Returns the slot holding a value or, if the value has not been added,
+   * the empty slot it should go in.
+   */
+  private int findSlot(String value) {
+    int mask = slots.length - 1;
+    int hash = value.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (slots[slot] != 0 && !values.get(slots[slot] - 1).equals(value)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < values.size(); id++) {
+      int hash = values.get(id).hashCode();
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+  }
+
+  /**
+   * @return A power of 2 at least twice the number of values, so the table
+   *     is never more than half full.
+   */
+  private static int getCapacity(int numValues) {
+    int capacity = 16;
+    while (capacity < numValues * 2) {
+      capacity *= 2;
+    }
+    return capacity;
+  }
+}
@@ -0,0 +1,161 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.TimeZone;
+
+/**
+ * Provides methods to convert between dates and epoch days, the number of
+ * days since 1970-01-01. Dates in queries use the yyyy-MM-dd format and
+ * dates in API results use the yyyyMMdd format. Both formats are parsed with
+ * plain arithmetic, so no Calendar or SimpleDateFormat objects are needed
+ * and every method may be called from many threads at once.
+ */
+public final class EpochDay {
+
+  private static final long MILLIS_IN_DAY = 24 * 60 * 60 * 1000;
+
+  /**
+   * Constructor.
+   * Shouldn't be used.
+   */
+  private EpochDay() {}
+
+  /**
+   * Returns the epoch day of a date in the yyyy-MM-dd or yyyyMMdd format.
+   * @param date The date to parse.
+   * @return The number of days since 1970-01-01.
+   * @throws IllegalArgumentException If the date is not in either format.
+   */
+  public static int parse(CharSequence date) {
+    int year = 0;
+    int month = 0;
+    int day = 0;
+    int digits = 0;
+    for (int i = 0; i < date.length(); i++) {
+      char character = date.charAt(i);
+      if (character == '-' && (digits == 4 || digits == 6)) {
+        continue;
+      }
+      if (character < '0' || character > '9' || digits == 8) {
+        throw new IllegalArgumentException("Invalid date: " + date);
+      }
+      int digit = character - '0';
+      if (digits < 4) {
+        year = year * 10 + digit;
+      } else if (digits < 6) {
+        month = month * 10 + digit;
+      } else {
+        day = day * 10 + digit;
+      }
+      digits++;
+    }
+    if (digits != 8 || month < 1 || month > 12 || day < 1 || day > 31) {
+      throw new IllegalArgumentException("Invalid date: " + date);
+    }
+    return of(year, month, day);
+  }
+
+  /**
+   * Returns the epoch day of a year, month and day of month.
+   * @param year The year.
+   * @param month The month, from 1 to 12.
+   * @param day The day of the month, from 1 to 31.
+   * @return The number of days since 1970-01-01.
+   */
+  public static int of(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /**
+   * Returns an epoch day in the yyyy-MM-dd format used in queries.
+   * @param epochDay The number of days since 1970-01-01.
+   * @return The formatted date.
+   */
+  public static String toQueryDate(int epochDay) {
+    return format(epochDay, true);
+  }
+
+  /**
+   * Returns an epoch day in the yyyyMMdd format used in API results.
+   * @param epochDay The number of days since 1970-01-01.
+   * @return The formatted date.
+   */
+  public static String toResultDate(int epochDay) {
+    return format(epochDay, false);
+  }
+
+  /**
+   * @return The current epoch day in UTC.
+   */
+  public static int today() {
+    return (int) (System.currentTimeMillis() / MILLIS_IN_DAY);
+  }
+
+  /**
+   * @param zone The time zone, like the time zone of a profile.
+   * @return The current epoch day in the time zone.
+   */
+  public static int today(TimeZone zone) {
+    return ofMillis(System.currentTimeMillis(), zone);
+  }
+
+  /**
+   * Returns the epoch day of an instant in a time zone.
+   * @param millis The number of milliseconds since 1970-01-01 in UTC.
+   * @param zone The time zone.
+   * @return The number of days since 1970-01-01 in the time zone.
+   */
+  public static int ofMillis(long millis, TimeZone zone) {
+    long localMillis = millis + zone.getOffset(millis);
+    long day = localMillis / MILLIS_IN_DAY;
+    return (int) (localMillis % MILLIS_IN_DAY < 0 ? day - 1 : day);
+  }
+
+  private static String format(int epochDay, boolean dashes) {
+    int z = epochDay + 719468;
+    int era = (z >= 0 ? z : z - 146096) / 146097;
+    int dayOfEra = z - era * 146097;
+    int yearOfEra =
+        (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int monthIndex = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+    int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+    int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+    char[] output = new char[dashes ? 10 : 8];
+    int i = 0;
+    output[i++] = (char) ('0' + year / 1000 % 10);
+    output[i++] = (char) ('0' + year / 100 % 10);
+    output[i++] = (char) ('0' + year / 10 % 10);
+    output[i++] = (char) ('0' + year % 10);
+    if (dashes) {
+      output[i++] = '-';
+    }
+    output[i++] = (char) ('0' + month / 10);
+    output[i++] = (char) ('0' + month % 10);
+    if (dashes) {
+      output[i++] = '-';
+    }
+    output[i++] = (char) ('0' + day / 10);
+    output[i++] = (char) ('0' + day % 10);
+    return new String(output);
+  }
+}
@@ -0,0 +1,463 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.data.analytics.DataEntry;
+import com.google.gdata.data.analytics.DataFeed;
+import com.google.gdata.data.analytics.Dimension;
+import com.google.gdata.data.analytics.Metric;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Provides a two tier cache of DataFeed objects keyed by the normalized
+ * query URL. The memory tier holds the most recently used feeds. Every feed
+ * is also written to a gzip compressed file in the cache directory, so a
+ * report that is run again, even from a new process, does not need to make
+ * any requests to the API for data that has already been retrieved.
+ *
+ * Feeds older than the time to live are treated as missing. Once the files
+ * in the cache directory use more than the maximum number of bytes, the
+ * oldest files are removed.
+ *
+ * Only the parts of a feed this application reads are stored: for each
+ * entry, the name and value of every dimension, and the name, value, type
+ * and confidence interval of every metric.
+ *
+ * All methods may be called from many threads at once.
+ */
+public class FeedCache {
+
+  static final int DEFAULT_MAX_MEMORY_FEEDS = 100;
+  static final long DEFAULT_MAX_DISK_BYTES = 100L * 1024 * 1024;
+
+  private static final int FORMAT_VERSION = 1;
+  private static final String FILE_SUFFIX = ".feed.gz";
+
+  private final File directory;
+  private final long maxDiskBytes;
+  private final long ttlMillis;
+  private final Map<String, CachedFeed> memory;
+
+  private final AtomicLong diskBytes = new AtomicLong();
+  private final AtomicLong memoryHitCount = new AtomicLong();
+  private final AtomicLong diskHitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   * Holds up to DEFAULT_MAX_MEMORY_FEEDS feeds in memory and
+   * DEFAULT_MAX_DISK_BYTES bytes on disk.
+   * @param directory The directory to store feeds in. It is created if it
+   *     does not exist.
+   * @param ttlMillis How long a feed may be used for, in milliseconds.
+   */
+  public FeedCache(File directory, long ttlMillis) {
+    this(directory, DEFAULT_MAX_MEMORY_FEEDS, DEFAULT_MAX_DISK_BYTES, ttlMillis);
+  }
+
+  /**
+   * Constructor.
+   * @param directory The directory to store feeds in. It is created if it
+   *     does not exist.
+   * @param maxMemoryFeeds The maximum number of feeds to hold in memory.
+   * @param maxDiskBytes The maximum number of bytes of feed files to keep
+   *     on disk.
+   * @param ttlMillis How long a feed may be used for, in milliseconds.
+   */
+  public FeedCache(File directory, final int maxMemoryFeeds, long maxDiskBytes,
+      long ttlMillis) {
+
+    if (maxMemoryFeeds < 0 || maxDiskBytes < 0 || ttlMillis < 0) {
+      throw new IllegalArgumentException("Cache limits must not be negative");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Can not create cache directory " + directory);
+    }
+    this.directory = directory;
+    this.maxDiskBytes = maxDiskBytes;
+    this.ttlMillis = ttlMillis;
+
+    memory = new LinkedHashMap<String, CachedFeed>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedFeed> eldest) {
+        if (size() > maxMemoryFeeds) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+
+    long bytes = 0;
+    for (File file : listFeedFiles()) {
+      bytes += file.length();
+    }
+    diskBytes.set(bytes);
+  }
+
+  /**
+   * Returns the cached feed for a query URL. The memory tier is checked
+   * first, then the disk tier. A feed found on disk is added to the memory
+   * tier.
+   * @param url The query URL.
+   * @return The cached feed, or null if there is no feed for the URL or the
+   *     feed is older than the time to live.
+   */
+  public DataFeed get(String url) {
+    String key = getKey(url);
+    long now = System.currentTimeMillis();
+
+    CachedFeed cached;
+    synchronized (memory) {
+      cached = memory.get(key);
+      if (cached != null && isExpired(cached.createdMillis, now)) {
+        memory.remove(key);
+        cached = null;
+      }
+    }
+    if (cached != null) {
+      memoryHitCount.incrementAndGet();
+      return cached.feed;
+    }
+
+    File file = getFile(key);
+    if (file.isFile()) {
+      long createdMillis = file.lastModified();
+      if (isExpired(createdMillis, now)) {
+        delete(file);
+      } else {
+        try {
+          DataFeed feed = readFeed(file);
+          synchronized (memory) {
+            memory.put(key, new CachedFeed(feed, createdMillis));
+          }
+          diskHitCount.incrementAndGet();
+          return feed;
+        } catch (IOException e) {
+          // A partly written or corrupt file is treated as a miss.
+          delete(file);
+        }
+      }
+    }
+
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Adds a feed to both tiers of the cache. Problems writing to disk are
+   * printed to the console and the feed is only cached in memory.
+   * @param url The query URL.
+   * @param feed The feed returned for the URL.
+   */
+  public void put(String url, DataFeed feed) {
+    String key = getKey(url);
+    synchronized (memory) {
+      memory.put(key, new CachedFeed(feed, System.currentTimeMillis()));
+    }
+
+    File file = getFile(key);
+    File tempFile = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+    try {
+      writeFeed(tempFile, feed);
+      long oldLength = file.length();
+      if (!tempFile.renameTo(file)) {
+        delete(file);
+        if (!tempFile.renameTo(file)) {
+          throw new IOException("Can not rename " + tempFile + " to " + file);
+        }
+      }
+      diskBytes.addAndGet(file.length() - oldLength);
+    } catch (IOException e) {
+      System.err.println("Could not write feed to cache: " + e.getMessage());
+      tempFile.delete();
+    }
+
+    if (diskBytes.get() > maxDiskBytes) {
+      evictFiles();
+    }
+  }
+
+  /**
+   * Removes all feeds from both tiers of the cache.
+   */
+  public void clear() {
+    synchronized (memory) {
+      memory.clear();
+    }
+    for (File file : listFeedFiles()) {
+      delete(file);
+    }
+  }
+
+  /**
+   * Removes the oldest files until the disk tier is within its limit.
+   */
+  private synchronized void evictFiles() {
+    File[] files = listFeedFiles();
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File one, File two) {
+        long difference = one.lastModified() - two.lastModified();
+        return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+      }
+    });
+    for (int i = 0; i < files.length && diskBytes.get() > maxDiskBytes; i++) {
+      if (delete(files[i])) {
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Deletes a feed file and updates the number of bytes on disk.
+   * @return Whether the file was deleted.
+   */
+  private boolean delete(File file) {
+    long length = file.length();
+    if (file.delete()) {
+      diskBytes.addAndGet(-length);
+      return true;
+    }
+    return false;
+  }
+
+  private File[] listFeedFiles() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return new File[0];
+    }
+    List<File> feedFiles = new ArrayList<File>(files.length);
+    for (File file : files) {
+      if (file.getName().endsWith(FILE_SUFFIX)) {
+        feedFiles.add(file);
+      }
+    }
+    return feedFiles.toArray(new File[feedFiles.size()]);
+  }
+
+  private boolean isExpired(long createdMillis, long now) {
+    return now - createdMillis > ttlMillis;
+  }
+
+  private File getFile(String key) {
+    return new File(directory, key + FILE_SUFFIX);
+  }
+
+  /**
+   * Returns a URL where the query parameters are sorted by name, so two
+   * URLs for the same query map to the same cache entry no matter what order
+   * the parameters were set in.
+   * @param url The query URL.
+   * @return The normalized URL.
+   */
+  public static String normalizeUrl(String url) {
+    int queryStart = url.indexOf('?');
+    if (queryStart < 0) {
+      return url;
+    }
+    String[] parameters = url.substring(queryStart + 1).split("&");
+    Arrays.sort(parameters);
+
+    StringBuilder output = new StringBuilder(url.length());
+    output.append(url, 0, queryStart + 1);
+    for (int i = 0; i < parameters.length; i++) {
+      if (i > 0) {
+        output.append('&');
+      }
+      output.append(parameters[i]);
+    }
+    return output.toString();
+  }
+
+  /**
+   * Returns the key of a URL, which is also the name of its cache file.
+   * @param url The query URL.
+   * @return A hex encoded SHA-256 digest of the normalized URL.
+   */
+  static String getKey(String url) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(normalizeUrl(url).getBytes("UTF-8"));
+
+      StringBuilder output = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        output.append(String.format("%02x", b));
+      }
+      return output.toString();
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes the entries of a feed to a gzip compressed file.
+   * @param file The file to write.
+   * @param feed The feed to write.
+   * @throws IOException If the file can not be written.
+   */
+  static void writeFeed(File file, DataFeed feed) throws IOException {
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(file))));
+    try {
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(feed.getEntries().size());
+      for (DataEntry entry : feed.getEntries()) {
+        output.writeInt(entry.getDimensions().size());
+        for (Dimension dimension : entry.getDimensions()) {
+          writeString(output, dimension.getName());
+          writeString(output, dimension.getValue());
+        }
+        output.writeInt(entry.getMetrics().size());
+        for (Metric metric : entry.getMetrics()) {
+          writeString(output, metric.getName());
+          writeString(output, metric.getValue());
+          writeString(output, metric.getType());
+          Double confidenceInterval = metric.getConfidenceInterval();
+          output.writeDouble(confidenceInterval == null ? 0 : confidenceInterval);
+        }
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Reads a feed written by writeFeed.
+   * @param file The file to read.
+   * @return A new DataFeed object.
+   * @throws IOException If the file can not be read or has the wrong format.
+   */
+  static DataFeed readFeed(File file) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(new FileInputStream(file))));
+    try {
+      if (input.readInt() != FORMAT_VERSION) {
+        throw new IOException("Unknown cache format in " + file);
+      }
+      int numEntries = input.readInt();
+      List<DataEntry> entries = new ArrayList<DataEntry>(numEntries);
+      for (int i = 0; i < numEntries; i++) {
+        DataEntry entry = new DataEntry();
+        int numDimensions = input.readInt();
+        for (int j = 0; j < numDimensions; j++) {
+          Dimension dimension = new Dimension();
+          dimension.setName(readString(input));
+          dimension.setValue(readString(input));
+          entry.addDimension(dimension);
+        }
+        int numMetrics = input.readInt();
+        for (int j = 0; j < numMetrics; j++) {
+          Metric metric = new Metric();
+          metric.setName(readString(input));
+          metric.setValue(readString(input));
+          metric.setType(readString(input));
+          metric.setConfidenceInterval(input.readDouble());
+          entry.addMetric(metric);
+        }
+        entries.add(entry);
+      }
+
+      DataFeed feed = new DataFeed();
+      feed.setEntries(entries);
+      return feed;
+    } finally {
+      input.close();
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  /**
+   * @return The number of feeds found in the memory tier.
+   */
+  public long getMemoryHitCount() {
+    return memoryHitCount.get();
+  }
+
+  /**
+   * @return The number of feeds found in the disk tier.
+   */
+  public long getDiskHitCount() {
+    return diskHitCount.get();
+  }
+
+  /**
+   * @return The number of feeds that were not found in either tier.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return The number of feeds removed from memory or disk to stay within
+   *     the cache limits. Expired feeds are not counted.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return The number of bytes of feed files on disk.
+   */
+  public long getDiskBytes() {
+    return diskBytes.get();
+  }
+
+  /**
+   * Holds a feed in the memory tier along with when it was retrieved.
+   */
+  private static class CachedFeed {
+    final DataFeed feed;
+    final long createdMillis;
+
+    CachedFeed(DataFeed feed, long createdMillis) {
+      this.feed = feed;
+      this.createdMillis = createdMillis;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+/**
+ * Receives the entries of a feed one at a time, as primitive values, so a
+ * feed can be added to a table without building a DataFeed object for it.
+ */
+public interface FeedRowSink {
+
+  /**
+   * Adds one entry of a feed.
+   * @param valueId The id of the entry's dimension value in a
+   *     DimensionDictionary, or -1 if ga:date is its only dimension.
+   * @param epochDay The epoch day of the entry's ga:date value.
+   * @param metricValues The values of the entry's metrics. The array is
+   *     reused once this method returns.
+   * @param numMetrics The number of metric values.
+   * @param confidenceInterval The largest confidence interval of the
+   *     entry's metrics, which is not 0 if the data was sampled.
+   */
+  public void addEntry(int valueId, int epochDay, double[] metricValues, int numMetrics,
+      double confidenceInterval);
+
+  /**
+   * Called after the last entry of a feed.
+   */
+  public void endFeed();
+}
@@ -0,0 +1,129 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Provides a list of strings which are stored in a file instead of on the
+ * heap. Strings are appended to the file as UTF-8 bytes and only the offset
+ * of each string is kept on the heap. Strings are read back from the file
+ * when they are needed. Only add is supported to change the list.
+ */
+public class FileStringList extends AbstractList<String> implements RandomAccess, Closeable {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+  private long[] offsets = new long[17];
+  private int size;
+  private long flushedBytes;
+
+  /**
+   * Constructor.
+   * @param file The file to store the strings in. It is overwritten.
+   * @throws IOException If the file can not be opened.
+   */
+  public FileStringList(File file) throws IOException {
+    this.file = new RandomAccessFile(file, "rw");
+    this.file.setLength(0);
+    channel = this.file.getChannel();
+  }
+
+  @Override
+  public boolean add(String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    try {
+      if (bytes.length > pending.remaining()) {
+        flush();
+      }
+      if (bytes.length > pending.capacity()) {
+        write(ByteBuffer.wrap(bytes));
+      } else {
+        pending.put(bytes);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Can not write to " + file, e);
+    }
+
+    if (size + 1 == offsets.length) {
+      offsets = Arrays.copyOf(offsets, offsets.length * 2);
+    }
+    offsets[size + 1] = offsets[size] + bytes.length;
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public String get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    long start = offsets[index];
+    int length = (int) (offsets[index + 1] - start);
+    if (start >= flushedBytes) {
+      return new String(pending.array(), (int) (start - flushedBytes), length, UTF_8);
+    }
+
+    ByteBuffer bytes = ByteBuffer.allocate(length);
+    try {
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes, start + bytes.position()) < 0) {
+          throw new IllegalStateException("Unexpected end of " + file);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Can not read from " + file, e);
+    }
+    return new String(bytes.array(), 0, length, UTF_8);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Closes the file. The list can not be used after it is closed.
+   */
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  private void flush() throws IOException {
+    pending.flip();
+    write(pending);
+    pending.clear();
+  }
+
+  private void write(ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      flushedBytes += channel.write(bytes, flushedBytes);
+    }
+  }
+}
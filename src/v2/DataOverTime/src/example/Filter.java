@@ -18,15 +18,16 @@ package example;
 import com.google.gdata.client.analytics.DataQuery;
 import com.google.gdata.util.common.base.CharEscapers;
 
-import java.text.CharacterIterator;
-import java.text.MessageFormat;
-import java.text.StringCharacterIterator;
-
 /**
  * Provides a container to store filter expressions as well a filter's
  * encoded length. This class also implements Comparable so filters can
  * be sorted in a list.
  *
+ * The encoded length is computed in a single pass over the dimension name
+ * and value without building any strings. The filter expression itself is
+ * only built the first time it is needed, which is usually when a bucket
+ * of filters is turned into a query.
+ *
  * @author api.nickm@google.com (Nick Mihailovski)
  */
 public class Filter implements Comparable<Filter> {
@@ -34,7 +35,10 @@ public class Filter implements Comparable<Filter> {
   private static final String AND_OPERATOR = ";";
   private static final String OR_OPERATOR = ",";
 
+  private static final String EQUALITY_OPERATOR = "==";
+
   private static int operatorSize = CharEscapers.uriEscaper().escape(OR_OPERATOR).length();
+  private static int equalityOperatorSize = getEncodedLength(EQUALITY_OPERATOR);
 
   private String dimensionName;
   private String dimensionValue;
@@ -43,16 +47,17 @@ public class Filter implements Comparable<Filter> {
 
   /**
    * Sets an equality expression in the filter.
-   * The dimension name and value are stored in the filter, the
-   * expression and encoded length is also stored.
+   * The dimension name and value are stored in the filter along with the
+   * encoded length of the expression. The expression is built later, the
+   * first time it is needed.
    * @param dimensionName The dimension name for this filter.
    * @param dimensionValue The dimension value for this filter.
    */
   public void setEqualityFilterExpression(String dimensionName, String dimensionValue) {
     this.dimensionName = dimensionName;
     this.dimensionValue = dimensionValue;
-    this.filterExpression = getEqualityFilter(dimensionName, dimensionValue);
-    this.encodedSize = getEncodedSize(filterExpression);
+    this.filterExpression = null;
+    this.encodedSize = getEncodedEqualityFilterSize(dimensionName, dimensionValue);
   }
 
   /**
@@ -64,7 +69,88 @@ public class Filter implements Comparable<Filter> {
    * @return An equality filter expression.
    */
   public static String getEqualityFilter(String dimensionName, String dimensionValue) {
-    return MessageFormat.format("{0}=={1}", dimensionName, escapeValue(dimensionValue));
+    String escapedValue = escapeValue(dimensionValue);
+    return new StringBuilder(dimensionName.length() + EQUALITY_OPERATOR.length()
+        + escapedValue.length())
+        .append(dimensionName).append(EQUALITY_OPERATOR).append(escapedValue).toString();
+  }
+
+  /**
+   * Returns the URI encoded length of the equality expression for a
+   * dimension name and value. This is the same as the length of the escaped
+   * getEqualityFilter(dimensionName, dimensionValue), but no strings are
+   * created.
+   * @param dimensionName The dimension name.
+   * @param dimensionValue The dimension value.
+   * @return The encoded length of the equality filter expression.
+   */
+  public static int getEncodedEqualityFilterSize(String dimensionName, String dimensionValue) {
+    int size = getEncodedLength(dimensionName) + equalityOperatorSize;
+    int length = dimensionValue.length();
+    for (int i = 0; i < length; i++) {
+      char character = dimensionValue.charAt(i);
+      if (isReservedCharacter(character)) {
+        size += 3;  // The backslash is encoded as %5C.
+      }
+      if (Character.isHighSurrogate(character) && i + 1 < length
+          && Character.isLowSurrogate(dimensionValue.charAt(i + 1))) {
+        size += 12;  // 4 UTF-8 bytes, each encoded as %XX.
+        i++;
+      } else {
+        size += getEncodedLength(character);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the URI encoded length of a string. Surrogate pairs are encoded
+   * as one 4 byte UTF-8 character.
+   * @param value The string to measure.
+   * @return The length of the URI encoded string.
+   */
+  static int getEncodedLength(String value) {
+    int size = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char character = value.charAt(i);
+      if (Character.isHighSurrogate(character) && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        size += 12;
+        i++;
+      } else {
+        size += getEncodedLength(character);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the URI encoded length of one character that is not part of a
+   * surrogate pair. Letters, digits, "-_.*" and space (which becomes +) are
+   * not escaped. Every other character is encoded as %XX for each of its
+   * UTF-8 bytes.
+   * @param character The character to measure.
+   * @return The length of the URI encoded character.
+   */
+  static int getEncodedLength(char character) {
+    if ((character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z')
+        || (character >= '0' && character <= '9') || character == '-' || character == '_'
+        || character == '.' || character == '*' || character == ' ') {
+      return 1;
+    } else if (character < 0x80) {
+      return 3;
+    } else if (character < 0x800) {
+      return 6;
+    }
+    return 9;
+  }
+
+  /**
+   * @return Whether the character must be backslash-escaped in a filter.
+   */
+  private static boolean isReservedCharacter(char character) {
+    return character == ',' || character == ';' || character == '\\';
   }
 
   /**
@@ -74,15 +160,23 @@ public class Filter implements Comparable<Filter> {
    * @return The backslash-escaped value.
    */
   public static String escapeValue(String value) {
-    final StringBuilder result = new StringBuilder();
-    final StringCharacterIterator iterator = new StringCharacterIterator(value);
-    char character =  iterator.current();
-    while (character != CharacterIterator.DONE ) {
-      if (character == ',' || character == ';' || character == '\\') {
-        result.append("\\");
+    int length = value.length();
+    int i = 0;
+    while (i < length && !isReservedCharacter(value.charAt(i))) {
+      i++;
+    }
+    if (i == length) {
+      return value;  // Nothing to escape.
+    }
+
+    StringBuilder result = new StringBuilder(length + 8);
+    result.append(value, 0, i);
+    for (; i < length; i++) {
+      char character = value.charAt(i);
+      if (isReservedCharacter(character)) {
+        result.append('\\');
       }
       result.append(character);
-      character = iterator.next();
     }
     return result.toString();
   }
@@ -117,9 +211,14 @@ public class Filter implements Comparable<Filter> {
   }
 
   /**
+   * Returns the filter expression. The expression is built the first time
+   * this is called.
    * @return The filter expression.
    */
   public String getFilterExpression() {
+    if (filterExpression == null && dimensionName != null) {
+      filterExpression = getEqualityFilter(dimensionName, dimensionValue);
+    }
     return filterExpression;
   }
 
@@ -127,7 +226,7 @@ public class Filter implements Comparable<Filter> {
    * @return The filter expression as the String value for this object.
    */
   public String toString() {
-    return filterExpression;
+    return getFilterExpression();
   }
 
   /**
@@ -148,8 +247,8 @@ public class Filter implements Comparable<Filter> {
   }
 
   /**
-   * Implements the equals method of the object. True if the entire filter
-   * expression of both filters is the same.
+   * Implements the equals method of the object. True if both filters have
+   * the same dimension name and value, and so the same filter expression.
    */
   @Override
   public boolean equals(Object obj) {
@@ -160,7 +259,7 @@ public class Filter implements Comparable<Filter> {
       return false;
     }
     Filter filter = (Filter) obj;
-    return this.getFilterExpression().equals(filter.getFilterExpression());
+    return dimensionName.equals(filter.getName()) && dimensionValue.equals(filter.getValue());
   }
 
   /**
@@ -169,7 +268,7 @@ public class Filter implements Comparable<Filter> {
    */
   @Override
   public int hashCode() {
-    return getFilterExpression().hashCode();
+    return 31 * dimensionName.hashCode() + dimensionValue.hashCode();
   }
 
   /**
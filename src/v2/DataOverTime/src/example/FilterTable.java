@@ -0,0 +1,132 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provides a compact, read only table of equality filters for one dimension.
+ * Instead of one Filter object per dimension value, the table keeps two
+ * parallel int arrays: the index of each value in the original list of
+ * dimension values and its encoded filter size. Rows are sorted from the
+ * largest encoded size to the smallest, and values with the same size keep
+ * their original order. Filter expressions are only built when a bucket is
+ * turned into a query.
+ */
+public final class FilterTable {
+
+  private final String dimensionName;
+  private final List<String> dimensionValues;
+  private final int[] valueIndexes;
+  private final int[] encodedSizes;
+
+  /**
+   * Constructor.
+   * Values whose encoded filter size is greater than filterMaxCharLength
+   * are silently dropped.
+   * @param dimensionName The dimension name for each of the filters.
+   * @param dimensionValues A list of dimension values for each filter. The
+   *     list is not copied, so it must not be changed while the table is used.
+   * @param filterMaxCharLength The maximum number of characters allowed in
+   *     a bucket.
+   */
+  public FilterTable(String dimensionName, List<String> dimensionValues,
+      int filterMaxCharLength) {
+
+    this.dimensionName = dimensionName;
+    this.dimensionValues = dimensionValues;
+
+    int numValues = dimensionValues == null ? 0 : dimensionValues.size();
+    long[] keys = new long[numValues];
+    int size = 0;
+    for (int i = 0; i < numValues; i++) {
+      int encodedSize =
+          Filter.getEncodedEqualityFilterSize(dimensionName, dimensionValues.get(i));
+      if (encodedSize <= filterMaxCharLength) {
+        // Sorting ascending on (MAX - size, index) puts the largest sizes
+        // first and keeps values of the same size in their original order.
+        keys[size++] = ((long) (Integer.MAX_VALUE - encodedSize) << 32) | i;
+      }
+    }
+    Arrays.sort(keys, 0, size);
+
+    valueIndexes = new int[size];
+    encodedSizes = new int[size];
+    for (int i = 0; i < size; i++) {
+      valueIndexes[i] = (int) keys[i];
+      encodedSizes[i] = Integer.MAX_VALUE - (int) (keys[i] >>> 32);
+    }
+  }
+
+  /**
+   * @return The number of filters in this table.
+   */
+  public int size() {
+    return valueIndexes.length;
+  }
+
+  /**
+   * @return The dimension name for each of the filters.
+   */
+  public String getDimensionName() {
+    return dimensionName;
+  }
+
+  /**
+   * @param row A row of this table.
+   * @return The encoded size of the filter in row.
+   */
+  public int getEncodedSize(int row) {
+    return encodedSizes[row];
+  }
+
+  /**
+   * @param row A row of this table.
+   * @return The index of the filter's value in the original list of
+   *     dimension values.
+   */
+  public int getValueIndex(int row) {
+    return valueIndexes[row];
+  }
+
+  /**
+   * @param row A row of this table.
+   * @return The dimension value of the filter in row.
+   */
+  public String getValue(int row) {
+    return dimensionValues.get(valueIndexes[row]);
+  }
+
+  /**
+   * Appends the equality filter expression of a row to a StringBuilder.
+   * @param output The StringBuilder to append to.
+   * @param row A row of this table.
+   */
+  public void appendFilterExpression(StringBuilder output, int row) {
+    output.append(dimensionName).append("==").append(Filter.escapeValue(getValue(row)));
+  }
+
+  /**
+   * Returns a new Filter object for a row. Useful for code that works with
+   * lists of Filter objects.
+   * @param row A row of this table.
+   * @return A new Filter object.
+   */
+  public Filter getFilter(int row) {
+    Filter filter = new Filter();
+    filter.setEqualityFilterExpression(dimensionName, getValue(row));
+    return filter;
+  }
+}
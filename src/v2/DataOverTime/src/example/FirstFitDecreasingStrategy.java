@@ -0,0 +1,58 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements the BucketStrategy interface using first fit decreasing. The
+ * filters are taken from largest to smallest. Each filter is added to the
+ * first existing bucket with enough room, or to a new bucket if none has
+ * room. The first bucket with enough room is found through a BucketIndex
+ * instead of checking every bucket, so packing n filters takes O(n log n)
+ * time. This only sorts on the character budget.
+ */
+public class FirstFitDecreasingStrategy implements BucketStrategy {
+
+  /**
+   * Returns a list of buckets built with first fit decreasing.
+   */
+  @Override
+  public List<Bucket> getBuckets(FilterTable filterTable, int filterMaxCharLength,
+      int filterMaxListSize) {
+
+    List<Bucket> buckets = new ArrayList<Bucket>();
+    if (filterTable == null || filterTable.size() < 1) {
+      return buckets;
+    }
+
+    BucketIndex index = new BucketIndex(filterTable.size());
+    for (int row = 0; row < filterTable.size(); row++) {
+      int bucketIndex = index.findFirst(filterTable.getEncodedSize(row));
+      Bucket bucket;
+
+      // If a filter will not fit in an existing bucket, add to a new bucket.
+      if (bucketIndex < 0) {
+        bucket = new Bucket(filterTable, filterMaxCharLength, filterMaxListSize);
+        buckets.add(bucket);
+        bucketIndex = buckets.size() - 1;
+      } else {
+        bucket = buckets.get(bucketIndex);
+      }
+      bucket.add(row);
+      index.set(bucketIndex, bucket.getRemainingCapacity());
+    }
+    return buckets;
+  }
+}
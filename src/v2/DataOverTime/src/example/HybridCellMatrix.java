@@ -0,0 +1,247 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.Arrays;
+
+/**
+ * Provides a CellMatrix which stores rows with few non zero values as
+ * sparse rows and the other rows as dense rows. Most dimension values in a
+ * report only have data on a few days, so storing only the days with data
+ * for them saves most of the memory of the table.
+ *
+ * A row is stored as a sparse row when it is added if the fraction of its
+ * values that are not 0 is at most the maximum sparse fill. A sparse row
+ * holds the sorted column indexes of its values and the values. If setting
+ * a value fills a sparse row past the maximum, it is moved to the dense
+ * rows.
+ */
+public class HybridCellMatrix implements CellMatrix {
+
+  static final double DEFAULT_MAX_SPARSE_FILL = 0.25;
+
+  private final int numCols;
+  private final int maxSparseSize;
+  private final DenseCellMatrix denseRows;
+
+  // Dense rows have their index in denseRows. Sparse rows have -1 minus
+  // their index in the sparse arrays.
+  private int[] rowRefs;
+  private int numRows;
+
+  private int[][] sparseCols;
+  private double[][] sparseValues;
+  private int[] sparseSizes;
+  private int numSparseRows;
+  private boolean isSparseIntegral = true;
+
+  /**
+   * Constructor.
+   * Uses DEFAULT_MAX_SPARSE_FILL.
+   * @param numCols The number of columns in every row.
+   * @param expectedRows The number of rows to allocate space for.
+   */
+  public HybridCellMatrix(int numCols, int expectedRows) {
+    this(numCols, expectedRows, DEFAULT_MAX_SPARSE_FILL);
+  }
+
+  /**
+   * Constructor.
+   * @param numCols The number of columns in every row.
+   * @param expectedRows The number of rows to allocate space for.
+   * @param maxSparseFill The largest fraction of non zero values a row
+   *     can have to be stored as a sparse row. 0 stores only empty rows as
+   *     sparse rows.
+   */
+  public HybridCellMatrix(int numCols, int expectedRows, double maxSparseFill) {
+    if (maxSparseFill < 0 || maxSparseFill > 1) {
+      throw new IllegalArgumentException("maxSparseFill must be from 0 to 1: " + maxSparseFill);
+    }
+    this.numCols = numCols;
+    maxSparseSize = (int) (numCols * maxSparseFill);
+    // Dense rows are expected to be the minority, so they start small.
+    denseRows = new DenseCellMatrix(numCols, 0);
+    int capacity = Math.max(expectedRows, 16);
+    rowRefs = new int[capacity];
+    sparseCols = new int[capacity][];
+    sparseValues = new double[capacity][];
+    sparseSizes = new int[capacity];
+  }
+
+  @Override
+  public int getNumRows() {
+    return numRows;
+  }
+
+  @Override
+  public int getNumCols() {
+    return numCols;
+  }
+
+  @Override
+  public int addRow(double[] values) {
+    int size = 0;
+    for (int col = 0; col < numCols; col++) {
+      if (values[col] != 0) {
+        size++;
+      }
+    }
+
+    if (numRows == rowRefs.length) {
+      rowRefs = Arrays.copyOf(rowRefs, numRows * 2);
+    }
+    if (size > maxSparseSize) {
+      rowRefs[numRows] = denseRows.addRow(values);
+      return numRows++;
+    }
+
+    int[] cols = new int[size];
+    double[] sparse = new double[size];
+    for (int col = 0, i = 0; i < size; col++) {
+      if (values[col] != 0) {
+        cols[i] = col;
+        sparse[i++] = values[col];
+        updateIntegral(values[col]);
+      }
+    }
+    rowRefs[numRows] = -1 - addSparseRow(cols, sparse, size);
+    return numRows++;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    int ref = getRowRef(row, col);
+    if (ref >= 0) {
+      return denseRows.get(ref, col);
+    }
+    int sparseRow = -1 - ref;
+    int i = Arrays.binarySearch(sparseCols[sparseRow], 0, sparseSizes[sparseRow], col);
+    return i >= 0 ? sparseValues[sparseRow][i] : 0.0;
+  }
+
+  @Override
+  public void getRow(int row, double[] values) {
+    if (row < 0 || row >= numRows) {
+      throw new IndexOutOfBoundsException("row: " + row);
+    }
+    int ref = rowRefs[row];
+    if (ref >= 0) {
+      denseRows.getRow(ref, values);
+      return;
+    }
+    int sparseRow = -1 - ref;
+    Arrays.fill(values, 0, numCols, 0.0);
+    for (int i = 0; i < sparseSizes[sparseRow]; i++) {
+      values[sparseCols[sparseRow][i]] = sparseValues[sparseRow][i];
+    }
+  }
+
+  @Override
+  public void set(int row, int col, double value) {
+    int ref = getRowRef(row, col);
+    if (ref >= 0) {
+      denseRows.set(ref, col, value);
+      return;
+    }
+
+    int sparseRow = -1 - ref;
+    int size = sparseSizes[sparseRow];
+    int i = Arrays.binarySearch(sparseCols[sparseRow], 0, size, col);
+    if (i >= 0) {
+      sparseValues[sparseRow][i] = value;
+      updateIntegral(value);
+      return;
+    }
+    if (value == 0) {
+      return;
+    }
+    if (size + 1 > maxSparseSize) {
+      double[] values = new double[numCols];
+      for (int j = 0; j < size; j++) {
+        values[sparseCols[sparseRow][j]] = sparseValues[sparseRow][j];
+      }
+      values[col] = value;
+      rowRefs[row] = denseRows.addRow(values);
+      sparseCols[sparseRow] = null;
+      sparseValues[sparseRow] = null;
+      sparseSizes[sparseRow] = 0;
+      return;
+    }
+
+    int insert = -1 - i;
+    int[] cols = sparseCols[sparseRow];
+    double[] values = sparseValues[sparseRow];
+    if (size == cols.length) {
+      cols = Arrays.copyOf(cols, Math.min(Math.max(size * 2, 4), numCols));
+      values = Arrays.copyOf(values, cols.length);
+      sparseCols[sparseRow] = cols;
+      sparseValues[sparseRow] = values;
+    }
+    System.arraycopy(cols, insert, cols, insert + 1, size - insert);
+    System.arraycopy(values, insert, values, insert + 1, size - insert);
+    cols[insert] = col;
+    values[insert] = value;
+    sparseSizes[sparseRow] = size + 1;
+    updateIntegral(value);
+  }
+
+  @Override
+  public boolean isIntegral() {
+    return isSparseIntegral && denseRows.isIntegral();
+  }
+
+  /**
+   * @param row The row index.
+   * @return Whether the row is stored as a sparse row.
+   */
+  public boolean isSparse(int row) {
+    if (row < 0 || row >= numRows) {
+      throw new IndexOutOfBoundsException("row: " + row);
+    }
+    return rowRefs[row] < 0;
+  }
+
+  /**
+   * @return The number of rows stored as dense rows.
+   */
+  public int getNumDenseRows() {
+    return denseRows.getNumRows();
+  }
+
+  private int addSparseRow(int[] cols, double[] values, int size) {
+    if (numSparseRows == sparseSizes.length) {
+      int capacity = numSparseRows * 2;
+      sparseCols = Arrays.copyOf(sparseCols, capacity);
+      sparseValues = Arrays.copyOf(sparseValues, capacity);
+      sparseSizes = Arrays.copyOf(sparseSizes, capacity);
+    }
+    sparseCols[numSparseRows] = cols;
+    sparseValues[numSparseRows] = values;
+    sparseSizes[numSparseRows] = size;
+    return numSparseRows++;
+  }
+
+  private int getRowRef(int row, int col) {
+    if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+      throw new IndexOutOfBoundsException("row: " + row + ", col: " + col);
+    }
+    return rowRefs[row];
+  }
+
+  private void updateIntegral(double value) {
+    if (isSparseIntegral) {
+      isSparseIntegral = DenseCellMatrix.isWhole(value);
+    }
+  }
+}
@@ -19,7 +19,9 @@ import com.google.gdata.client.analytics.AnalyticsService;
 import com.google.gdata.client.analytics.DataQuery;
 import com.google.gdata.util.AuthenticationException;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -41,6 +43,8 @@ public class MainDemo {
   private static final String PASSWORD = "INSERT_YOUR_GOOGLE_ACCOUNT_PASSWORD";
   private static final String TABLE_ID = "INSERT_YOUR_TABLE_ID";
   private static final String fileName = "output.csv";
+  private static final String CACHE_DIRECTORY = "feed-cache";
+  private static final long CACHE_TTL_MILLIS = 24L * 60 * 60 * 1000;
 
   private static AnalyticsService analyticsService;
 
@@ -54,22 +58,38 @@ public class MainDemo {
     } catch (FileNotFoundException e) {
       System.err.println ("File " + fileName + "not found");
       return;
+    } catch (IOException e) {
+      System.err.println("Can not read or write the snapshot: " + e.getMessage());
     }
   }
 
   /**
    * The actual main demo. This gets all the data over time as
-   * a Results object then prints the results to a file.
+   * a Results object then prints the results to a file. The fill ratios
+   * of the grouped queries are printed to the console. Feeds are cached in
+   * CACHE_DIRECTORY so running the demo again does not repeat requests.
    * @throws FileNotFoundException If the file was not found.
+   * @throws IOException If the snapshot of a refresh can not be read or
+   *     written.
    */
-  public MainDemo() throws FileNotFoundException  {
+  public MainDemo() throws IOException {
     analyticsService = getAnalyticsService();
 
-    DataOverTime dataOverTime = DataOverTimeFactory.getGroupQueries(analyticsService);
+    FeedCache feedCache = new FeedCache(new File(CACHE_DIRECTORY), CACHE_TTL_MILLIS);
+    DataOverTime dataOverTime = DataOverTimeFactory.getGroupQueries(analyticsService, feedCache);
     //dataOverTime = DataOverTimeFactory.getIndividualQueries(analyticsService);
 
-    Results results = dataOverTime.getData(getDataQuery());
-    results.printCsvToFile(fileName);
+    DataOverTimeJob job = new DataOverTimeJob(getDataQuery());
+    dataOverTime.run(job);
+    // To only request the dates and dimension values that are new since the
+    // last run, replace the line above with:
+    // dataOverTime.refresh(job, new File("output.snapshot"));
+    if (job.getQueryPlan().getBucketReport() != null) {
+      System.out.println(job.getQueryPlan().getBucketReport());
+    }
+    job.getResults().printCsvToFile(fileName);
+    System.out.println("Feed cache: " + feedCache.getMemoryHitCount() + " memory hits, "
+        + feedCache.getDiskHitCount() + " disk hits, " + feedCache.getMissCount() + " misses");
   }
 
   /**
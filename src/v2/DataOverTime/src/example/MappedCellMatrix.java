@@ -0,0 +1,206 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Provides a CellMatrix which stores its values in a memory mapped file
+ * instead of on the heap, so a table can be larger than the heap. The file
+ * is mapped in regions of whole rows as rows are added. The operating
+ * system pages the values in and out as they are used.
+ *
+ * The file only holds the values, in little endian byte order, and is not
+ * meant to be read by other programs. Use ResultsSnapshot to store a table.
+ * A matrix can also map the cell block of a snapshot file read only. The
+ * mapped regions are released when they are garbage collected, which may
+ * be after close.
+ */
+public class MappedCellMatrix implements CellMatrix, Closeable {
+
+  static final int REGION_BYTES = 64 * 1024 * 1024;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final int numCols;
+  private final int rowsPerRegion;
+  private DoubleBuffer[] regions = new DoubleBuffer[16];
+  private int numRegions;
+  private int numRows;
+  private boolean isIntegral = true;
+
+  /**
+   * Constructor.
+   * @param file The file to store the values in. It is overwritten.
+   * @param numCols The number of columns in every row.
+   * @throws IOException If the file can not be opened.
+   */
+  public MappedCellMatrix(File file, int numCols) throws IOException {
+    this(file, numCols, REGION_BYTES);
+  }
+
+  /**
+   * Constructor.
+   * @param file The file to store the values in. It is overwritten.
+   * @param numCols The number of columns in every row.
+   * @param regionBytes The size of each mapped region. Regions always hold
+   *     at least one row.
+   * @throws IOException If the file can not be opened.
+   */
+  MappedCellMatrix(File file, int numCols, int regionBytes) throws IOException {
+    if (numCols < 0) {
+      throw new IllegalArgumentException("numCols must not be negative: " + numCols);
+    }
+    this.numCols = numCols;
+    rowsPerRegion = numCols == 0 ? Integer.MAX_VALUE : Math.max(regionBytes / 8 / numCols, 1);
+    this.file = new RandomAccessFile(file, "rw");
+    this.file.setLength(0);
+    channel = this.file.getChannel();
+  }
+
+  /**
+   * Constructor.
+   * Maps rows already stored in a file read only. Rows can not be added and
+   * values can not be set. The channel may be closed once this returns.
+   * @param channel The channel of the file.
+   * @param position The position of the first row in the file.
+   * @param numRows The number of rows.
+   * @param numCols The number of columns in every row.
+   * @param isIntegral Whether every value is a whole number.
+   * @throws IOException If the rows can not be mapped.
+   */
+  MappedCellMatrix(FileChannel channel, long position, int numRows, int numCols,
+      boolean isIntegral) throws IOException {
+    this.numCols = numCols;
+    this.numRows = numRows;
+    this.isIntegral = isIntegral;
+    file = null;
+    this.channel = null;
+    rowsPerRegion = numCols == 0 ? Integer.MAX_VALUE : Math.max(REGION_BYTES / 8 / numCols, 1);
+    for (int row = 0; numCols > 0 && row < numRows; row += rowsPerRegion) {
+      int regionRows = Math.min(rowsPerRegion, numRows - row);
+      long regionPosition = position + (long) row * numCols * 8;
+      addRegion(channel.map(FileChannel.MapMode.READ_ONLY, regionPosition,
+          (long) regionRows * numCols * 8));
+    }
+  }
+
+  @Override
+  public int getNumRows() {
+    return numRows;
+  }
+
+  @Override
+  public int getNumCols() {
+    return numCols;
+  }
+
+  @Override
+  public int addRow(double[] values) {
+    if (channel == null) {
+      throw new UnsupportedOperationException("Rows can not be added to a read only matrix");
+    }
+    if (numCols > 0) {
+      int region = numRows / rowsPerRegion;
+      if (region == numRegions) {
+        mapRegion();
+      }
+      DoubleBuffer buffer = regions[region];
+      int offset = (numRows % rowsPerRegion) * numCols;
+      for (int col = 0; col < numCols; col++) {
+        buffer.put(offset + col, values[col]);
+        if (isIntegral) {
+          isIntegral = DenseCellMatrix.isWhole(values[col]);
+        }
+      }
+    }
+    return numRows++;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    checkIndex(row, col);
+    return regions[row / rowsPerRegion].get((row % rowsPerRegion) * numCols + col);
+  }
+
+  @Override
+  public void getRow(int row, double[] values) {
+    if (row < 0 || row >= numRows) {
+      throw new IndexOutOfBoundsException("row: " + row);
+    }
+    if (numCols > 0) {
+      DoubleBuffer buffer = regions[row / rowsPerRegion].duplicate();
+      buffer.position((row % rowsPerRegion) * numCols);
+      buffer.get(values, 0, numCols);
+    }
+  }
+
+  @Override
+  public void set(int row, int col, double value) {
+    checkIndex(row, col);
+    regions[row / rowsPerRegion].put((row % rowsPerRegion) * numCols + col, value);
+    if (isIntegral) {
+      isIntegral = DenseCellMatrix.isWhole(value);
+    }
+  }
+
+  @Override
+  public boolean isIntegral() {
+    return isIntegral;
+  }
+
+  /**
+   * Closes the file. The matrix can not be used after it is closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (file != null) {
+      file.close();
+    }
+  }
+
+  /**
+   * Maps the region after the last mapped region.
+   */
+  private void mapRegion() {
+    long regionBytes = (long) rowsPerRegion * numCols * 8;
+    try {
+      addRegion(channel.map(FileChannel.MapMode.READ_WRITE, numRegions * regionBytes,
+          regionBytes));
+    } catch (IOException e) {
+      throw new IllegalStateException("Can not map region " + numRegions, e);
+    }
+  }
+
+  private void addRegion(ByteBuffer region) {
+    if (numRegions == regions.length) {
+      regions = Arrays.copyOf(regions, numRegions * 2);
+    }
+    regions[numRegions++] = region.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+  }
+
+  private void checkIndex(int row, int col) {
+    if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+      throw new IndexOutOfBoundsException("row: " + row + ", col: " + col);
+    }
+  }
+}
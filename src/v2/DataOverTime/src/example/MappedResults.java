@@ -0,0 +1,102 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides a Results object which keeps its table off the heap, for tables
+ * larger than the heap. The values are stored in a MappedCellMatrix and the
+ * row names in a FileStringList, both in temporary files in a directory.
+ * ResultManagers fill it through addRow like any other Results object, and
+ * outputCsv reads each row directly from the mapped file.
+ *
+ * Call close once the results are no longer needed to close and delete
+ * the files.
+ */
+public class MappedResults extends Results implements Closeable {
+
+  private final File directory;
+  private final List<Closeable> openFiles = new ArrayList<Closeable>();
+  private final List<File> files = new ArrayList<File>();
+
+  /**
+   * Constructor.
+   * @param directory The directory to store the temporary files in.
+   */
+  public MappedResults(File directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  protected CellMatrix createCellMatrix(int numCols, int expectedRows) {
+    try {
+      MappedCellMatrix matrix = new MappedCellMatrix(createFile(".cells"), numCols);
+      openFiles.add(matrix);
+      return matrix;
+    } catch (IOException e) {
+      throw new IllegalStateException("Can not create a cell file in " + directory, e);
+    }
+  }
+
+  @Override
+  protected List<String> createRowNames(int expectedRows) {
+    try {
+      FileStringList rowNames = new FileStringList(createFile(".names"));
+      openFiles.add(rowNames);
+      return rowNames;
+    } catch (IOException e) {
+      throw new IllegalStateException("Can not create a row name file in " + directory, e);
+    }
+  }
+
+  /**
+   * Closes and deletes every file of these results. The results can not be
+   * used after they are closed.
+   */
+  @Override
+  public void close() throws IOException {
+    IOException error = null;
+    for (Closeable openFile : openFiles) {
+      try {
+        openFile.close();
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+    openFiles.clear();
+    for (File file : files) {
+      if (file.exists() && !file.delete()) {
+        // Mapped files can not be deleted on some platforms until the
+        // mapping is garbage collected.
+        file.deleteOnExit();
+      }
+    }
+    files.clear();
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private File createFile(String suffix) throws IOException {
+    directory.mkdirs();
+    File file = File.createTempFile("results", suffix, directory);
+    files.add(file);
+    return file;
+  }
+}
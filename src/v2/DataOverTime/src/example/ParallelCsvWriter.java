@@ -0,0 +1,155 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Writes a Results table as CSV using many threads. The rows are split into
+ * chunks which are formatted in parallel on a ForkJoinPool, each into its
+ * own buffer by a CsvWriter. The buffers are written in row order, with a
+ * gathering write when the channel supports it, so the output is the same
+ * bytes CsvWriter writes.
+ *
+ * Only a few chunks per thread of the pool are formatted ahead of the chunk
+ * being written, so the whole table is never held in memory. The table must
+ * not change while it is written. The pool belongs to the caller, so one pool
+ * can be shared by many writers.
+ */
+public class ParallelCsvWriter {
+
+  static final int DEFAULT_ROWS_PER_CHUNK = 2048;
+  private static final int CHUNKS_PER_THREAD = 2;
+  private static final int MAX_GATHERED_CHUNKS = 16;
+
+  private final ForkJoinPool pool;
+  private final int rowsPerChunk;
+
+  /**
+   * Constructor.
+   * Uses DEFAULT_ROWS_PER_CHUNK.
+   * @param pool The pool that formats the chunks. It is not shut down.
+   */
+  public ParallelCsvWriter(ForkJoinPool pool) {
+    this(pool, DEFAULT_ROWS_PER_CHUNK);
+  }
+
+  /**
+   * Constructor.
+   * @param pool The pool that formats the chunks. It is not shut down.
+   * @param rowsPerChunk The number of rows in each chunk.
+   */
+  public ParallelCsvWriter(ForkJoinPool pool, int rowsPerChunk) {
+    if (rowsPerChunk < 1) {
+      throw new IllegalArgumentException("rowsPerChunk must be positive: " + rowsPerChunk);
+    }
+    this.pool = pool;
+    this.rowsPerChunk = rowsPerChunk;
+  }
+
+  /**
+   * Writes the table to a file through its FileChannel.
+   * @param results The table to write.
+   * @param file The file to write. It is overwritten.
+   * @throws IOException If the file can not be written.
+   */
+  public void write(Results results, File file) throws IOException {
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      write(results, output.getChannel());
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Writes the table to a channel. The output is the same as
+   * CsvWriter.write.
+   * @param results The table to write.
+   * @param channel The channel to write to. It is not closed.
+   * @throws IOException If the channel can not be written.
+   */
+  public void write(final Results results, WritableByteChannel channel) throws IOException {
+    writeFully(channel, new ByteBuffer[] {new CsvWriter(CsvWriter.DEFAULT_BUFFER_BYTES / 16)
+        .formatHeader(results)});
+
+    final int numRows = results.getNumTableRows();
+    int numChunks = (numRows + rowsPerChunk - 1) / rowsPerChunk;
+    int window = pool.getParallelism() * CHUNKS_PER_THREAD;
+    List<ForkJoinTask<ByteBuffer>> tasks = new ArrayList<ForkJoinTask<ByteBuffer>>(numChunks);
+
+    try {
+      int written = 0;
+      while (written < numChunks) {
+        while (tasks.size() < numChunks && tasks.size() < written + window) {
+          final int fromRow = tasks.size() * rowsPerChunk;
+          tasks.add(pool.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() {
+              return new CsvWriter(CsvWriter.DEFAULT_BUFFER_BYTES / 16).formatRows(results,
+                  fromRow, Math.min(fromRow + rowsPerChunk, numRows));
+            }
+          }));
+        }
+
+        // Write the next chunk and every chunk after it that is done.
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        buffers.add(tasks.get(written).join());
+        tasks.set(written++, null);
+        while (written < tasks.size() && tasks.get(written).isDone()
+            && buffers.size() < MAX_GATHERED_CHUNKS) {
+          buffers.add(tasks.get(written).join());
+          tasks.set(written++, null);
+        }
+        writeFully(channel, buffers.toArray(new ByteBuffer[buffers.size()]));
+      }
+    } finally {
+      for (ForkJoinTask<ByteBuffer> task : tasks) {
+        if (task != null) {
+          task.cancel(false);
+        }
+      }
+    }
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers)
+      throws IOException {
+
+    if (channel instanceof GatheringByteChannel) {
+      long remaining = 0;
+      for (ByteBuffer buffer : buffers) {
+        remaining += buffer.remaining();
+      }
+      while (remaining > 0) {
+        remaining -= ((GatheringByteChannel) channel).write(buffers);
+      }
+      return;
+    }
+    for (ByteBuffer buffer : buffers) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,266 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+import com.google.gdata.data.analytics.DataFeed;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executes a list of filtered queries concurrently. At most maxConcurrency
+ * requests are sent to the API at the same time. Completed feeds are handed
+ * back to the calling thread through a bounded queue and are passed to the
+ * ResultManager in the same order the queries were returned from the
+ * iterator, so the final Results are identical to running each query one
+ * after another.
+ *
+ * The number of queries that have been dispatched but not yet handed to
+ * the ResultManager never exceeds maxConcurrency + queueCapacity. This keeps
+ * memory use flat no matter how many queries there are.
+ *
+ * An AdaptiveConcurrencyLimiter may be passed in instead of a fixed limit.
+ * The limiter then decides how many requests are sent at once from the
+ * latency and errors of earlier requests, and is shared by every call to
+ * execute.
+ *
+ * Threads are created with the ThreadFactory passed to the constructor.
+ * On JVMs that support them, a virtual thread factory can be used. No state
+ * is kept between calls to execute, so one instance can be shared.
+ */
+public class ParallelQueryExecutor {
+
+  private final int maxConcurrency;
+  private final int queueCapacity;
+  private final ThreadFactory threadFactory;
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  /**
+   * Constructor.
+   * Uses a queue the same size as the number of concurrent requests and
+   * the default thread factory.
+   * @param maxConcurrency The maximum number of requests to make at once.
+   */
+  public ParallelQueryExecutor(int maxConcurrency) {
+    this(maxConcurrency, maxConcurrency, Executors.defaultThreadFactory());
+  }
+
+  /**
+   * Constructor.
+   * @param maxConcurrency The maximum number of requests to make at once.
+   * @param queueCapacity The number of completed feeds that can wait to be
+   *     added to the results.
+   * @param threadFactory The factory used to create the threads that make
+   *     requests to the API.
+   */
+  public ParallelQueryExecutor(int maxConcurrency, int queueCapacity,
+      ThreadFactory threadFactory) {
+
+    if (maxConcurrency < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException(
+          "maxConcurrency and queueCapacity must be greater than 0");
+    }
+    this.maxConcurrency = maxConcurrency;
+    this.queueCapacity = queueCapacity;
+    this.threadFactory = threadFactory;
+    this.limiter = null;
+  }
+
+  /**
+   * Constructor.
+   * The number of requests made at once is set by the limiter, up to its
+   * maximum limit.
+   * @param limiter Adjusts the number of requests made at once.
+   * @param queueCapacity The number of completed feeds that can wait to be
+   *     added to the results.
+   * @param threadFactory The factory used to create the threads that make
+   *     requests to the API.
+   */
+  public ParallelQueryExecutor(AdaptiveConcurrencyLimiter limiter, int queueCapacity,
+      ThreadFactory threadFactory) {
+
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be greater than 0");
+    }
+    this.maxConcurrency = limiter.getMaxLimit();
+    this.queueCapacity = queueCapacity;
+    this.threadFactory = threadFactory;
+    this.limiter = limiter;
+  }
+
+  /**
+   * Retrieves the feed for each query and adds the rows to the result
+   * manager. Each query is copied before being dispatched since iterators
+   * like FilteredQueries return the same DataQuery object on every call.
+   * This method returns once every feed has been added to the results.
+   * @param queries The queries to execute.
+   * @param dataManager The DataManager used to retrieve each feed.
+   * @param resultManager The ResultManager that adds each feed, in order.
+   * @param results The Results object the feeds are added to.
+   */
+  public void execute(Iterator<DataQuery> queries, DataManager dataManager,
+      ResultManager resultManager, Results results) {
+    execute(queries, dataManager, null, resultManager, results);
+  }
+
+  /**
+   * Retrieves the feed for each query and adds the rows to the result
+   * manager, hedging slow requests within the budget of the job.
+   * @param queries The queries to execute.
+   * @param dataManager The DataManager used to retrieve each feed.
+   * @param hedgeBudget The budget of extra requests of the job, or null to
+   *     not hedge requests.
+   * @param resultManager The ResultManager that adds each feed, in order.
+   * @param results The Results object the feeds are added to.
+   */
+  public void execute(Iterator<DataQuery> queries, final DataManager dataManager,
+      final RequestHedger.Budget hedgeBudget, ResultManager resultManager, Results results) {
+
+    ExecutorService executor = Executors.newCachedThreadPool(threadFactory);
+    final Semaphore running = new Semaphore(maxConcurrency);
+    final BlockingQueue<FeedResult> completed =
+        new ArrayBlockingQueue<FeedResult>(queueCapacity);
+    Semaphore window = new Semaphore(maxConcurrency + queueCapacity);
+    Map<Integer, FeedResult> pending = new HashMap<Integer, FeedResult>();
+
+    int submitted = 0;
+    int delivered = 0;
+
+    try {
+      while (queries.hasNext() || delivered < submitted) {
+
+        // Dispatch as many queries as the window allows.
+        while (queries.hasNext() && window.tryAcquire()) {
+          final int index = submitted++;
+          final DataQuery query = DataQueryUtil.copyQuery(queries.next());
+          executor.execute(new Runnable() {
+            public void run() {
+              FeedResult result = new FeedResult(index);
+              try {
+                result.feed = getFeed(dataManager, query, hedgeBudget, running);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.error = new IllegalStateException("Request was interrupted", e);
+              } catch (Throwable e) {
+                // Errors are passed on too, otherwise the caller would wait
+                // for this result forever.
+                result.error = e;
+              }
+              try {
+                completed.put(result);
+              } catch (InterruptedException e) {
+                // The caller has stopped waiting for results.
+                Thread.currentThread().interrupt();
+              }
+            }
+          });
+        }
+
+        // Wait for a feed, then add every feed that is next in order.
+        FeedResult result = completed.take();
+        if (result.error instanceof RuntimeException) {
+          throw (RuntimeException) result.error;
+        } else if (result.error instanceof Error) {
+          throw (Error) result.error;
+        } else if (result.error != null) {
+          throw new IllegalStateException("Request failed", result.error);
+        }
+        pending.put(result.index, result);
+
+        FeedResult next;
+        while ((next = pending.remove(delivered)) != null) {
+          resultManager.addRows(results, next.feed);
+          delivered++;
+          window.release();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for feeds", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Retrieves one feed once the limiter, or the fixed limit of the current
+   * call to execute, allows another request.
+   */
+  private DataFeed getFeed(DataManager dataManager, DataQuery query,
+      RequestHedger.Budget hedgeBudget, Semaphore running) throws InterruptedException {
+    if (limiter == null) {
+      running.acquire();
+      try {
+        return dataManager.getFeed(query, hedgeBudget);
+      } finally {
+        running.release();
+      }
+    }
+
+    long startNanos = limiter.acquire();
+    boolean failed = true;
+    try {
+      DataFeed feed = dataManager.getFeed(query, hedgeBudget);
+      failed = false;
+      return feed;
+    } finally {
+      limiter.release(startNanos, failed);
+    }
+  }
+
+  /**
+   * @return The maximum number of requests made at once.
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * @return The number of completed feeds that can wait to be added to the
+   *     results.
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return The limiter which sets the number of requests made at once, or
+   *     null if the limit is fixed.
+   */
+  public AdaptiveConcurrencyLimiter getLimiter() {
+    return limiter;
+  }
+
+  /**
+   * Holds the feed, or the error, for one query along with its position in
+   * the original list of queries.
+   */
+  private static class FeedResult {
+    final int index;
+    DataFeed feed;
+    Throwable error;
+
+    FeedResult(int index) {
+      this.index = index;
+    }
+  }
+}
@@ -37,4 +37,14 @@ public interface QueryManager {
    */
   public FilteredQueries getFilteredQueries(DataQuery dataQuery, List<String> dimensionValues);
 
+  /**
+   * Returns an immutable QueryPlan which represents a list of queries that
+   * have special filters. The dataQuery parameter is not changed.
+   * @param dataQuery A DataQuery object.
+   * @param dimensionValues A List of dimension values returned from the
+   *     Data Export API using the data query object.
+   * @return A QueryPlan representing a list of queries with filters.
+   */
+  public QueryPlan getQueryPlan(DataQuery dataQuery, List<String> dimensionValues);
+
 }
@@ -18,7 +18,9 @@ package example;
 import com.google.gdata.client.analytics.DataQuery;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides an implementation of the QueryManager Interface. This will attempt
@@ -31,18 +33,35 @@ public class QueryManagerGroupImpl implements QueryManager {
   static final int MAX_RESULTS = 10000;
   static final int MAX_QUERY_LEN = 2000;
   private BucketManager bucketManager;
+  private final DailyValueCache dailyValueCache;
 
   /**
    * Constructor.
    * Sets the BucketManager instance.
    */
   public QueryManagerGroupImpl(BucketManager bucketManager) {
+    this(bucketManager, null);
+  }
+
+  /**
+   * Constructor.
+   * Query plans only request the days of each dimension value that are not
+   * in the dailyValueCache.
+   * @param bucketManager The BucketManager used to group filters.
+   * @param dailyValueCache The cache of daily values, or null to request
+   *     every day.
+   */
+  public QueryManagerGroupImpl(BucketManager bucketManager, DailyValueCache dailyValueCache) {
     this.bucketManager = bucketManager;
+    this.dailyValueCache = dailyValueCache;
   }
 
   /**
    * Returns a FilteredQueries object which can be used to make requests
-   * to the Google Analytics API.
+   * to the Google Analytics API. The dataQuery parameter is copied and is
+   * not changed. The bucket limits are calculated for each call and passed
+   * to the BucketManager, so this method can be called from many threads
+   * at once.
    * @param dataQuery The original query used to get a list of dimensions.
    * @param dimensionValues A list of dimension values returned from the
    *     dataQuery object.
@@ -52,14 +71,84 @@ public class QueryManagerGroupImpl implements QueryManager {
   public FilteredQueries getFilteredQueries(DataQuery dataQuery, List<String> dimensionValues) {
     FilteredQueries queries = new FilteredQueries();
     String originalDimensionName = dataQuery.getDimensions();
-    updateQuery(dataQuery);
-    queries.setQuery(dataQuery);
-    bucketManager.init(getFilterMaxCharLength(MAX_QUERY_LEN, dataQuery),
-        getFilterMaxListSize(MAX_RESULTS, dataQuery));
-    queries.setFilterList(getFilterList(originalDimensionName, dimensionValues));
+    DataQuery updatedQuery = DataQueryUtil.copyQuery(dataQuery);
+    updateQuery(updatedQuery);
+    queries.setQuery(updatedQuery);
+    queries.setFilterList(getFilterList(originalDimensionName, dimensionValues,
+        getFilterMaxCharLength(MAX_QUERY_LEN, updatedQuery),
+        getFilterMaxListSize(MAX_RESULTS, updatedQuery)));
     return queries;
   }
 
+  /**
+   * Returns a QueryPlan which can be used to make requests to the Google
+   * Analytics API. The dataQuery parameter is not changed.
+   *
+   * If a DailyValueCache is set, each dimension value only requests the
+   * range of days missing from the cache. Dimension values with the same
+   * missing range are grouped together, and values with no missing days are
+   * not requested at all.
+   * @param dataQuery The original query used to get a list of dimensions.
+   * @param dimensionValues A list of dimension values returned from the
+   *     dataQuery object.
+   * @return A QueryPlan to get data over time.
+   */
+  @Override
+  public QueryPlan getQueryPlan(DataQuery dataQuery, List<String> dimensionValues) {
+    if (dailyValueCache == null || dimensionValues == null) {
+      return getDateRangeQueryPlan(dataQuery, dimensionValues);
+    }
+
+    String seriesKey = DailyValueCache.getSeriesKey(dataQuery);
+    int startDay = EpochDay.parse(dataQuery.getStartDate());
+    int endDay = EpochDay.parse(dataQuery.getEndDate());
+
+    Map<Long, List<String>> valuesByRange = new LinkedHashMap<Long, List<String>>();
+    for (String dimensionValue : dimensionValues) {
+      int[] range = dailyValueCache.getMissingRange(seriesKey, dimensionValue, startDay, endDay);
+      if (range != null) {
+        Long key = ((long) range[0] << 32) | (range[1] & 0xffffffffL);
+        List<String> values = valuesByRange.get(key);
+        if (values == null) {
+          values = new ArrayList<String>();
+          valuesByRange.put(key, values);
+        }
+        values.add(dimensionValue);
+      }
+    }
+
+    List<QueryPlan> parts = new ArrayList<QueryPlan>(valuesByRange.size());
+    for (Map.Entry<Long, List<String>> entry : valuesByRange.entrySet()) {
+      DataQuery rangeQuery = DataQueryUtil.copyQuery(dataQuery);
+      rangeQuery.setStartDate(EpochDay.toQueryDate((int) (entry.getKey() >> 32)));
+      rangeQuery.setEndDate(EpochDay.toQueryDate((int) entry.getKey().longValue()));
+      parts.add(getDateRangeQueryPlan(rangeQuery, entry.getValue()));
+    }
+
+    DataQuery updatedQuery = DataQueryUtil.copyQuery(dataQuery);
+    updateQuery(updatedQuery);
+    return QueryPlan.combine(updatedQuery, parts);
+  }
+
+  /**
+   * Returns a QueryPlan that requests every day of the query's date range
+   * for every dimension value.
+   */
+  private QueryPlan getDateRangeQueryPlan(DataQuery dataQuery, List<String> dimensionValues) {
+    String originalDimensionName = dataQuery.getDimensions();
+    DataQuery updatedQuery = DataQueryUtil.copyQuery(dataQuery);
+    updateQuery(updatedQuery);
+    int filterMaxCharLength = getFilterMaxCharLength(MAX_QUERY_LEN, updatedQuery);
+    int filterMaxListSize = getFilterMaxListSize(MAX_RESULTS, updatedQuery);
+
+    List<Bucket> buckets = getBuckets(originalDimensionName, dimensionValues,
+        filterMaxCharLength, filterMaxListSize);
+    BucketReport report = new BucketReport(
+        bucketManager.getStrategy().getClass().getSimpleName(), buckets,
+        filterMaxCharLength, filterMaxListSize);
+    return new QueryPlan(updatedQuery, toFilterList(buckets), report);
+  }
+
   /**
    * Updates a DataQuery with new parameters so that it can get metrics
    * over the period of a date range. This actually changes the original
@@ -119,8 +208,7 @@ public class QueryManagerGroupImpl implements QueryManager {
    * @return The maximum numbers of filters that can be in each query.
    */
   public int getFilterMaxListSize(int maxResults, DataQuery dataQuery) {
-    int numDays = DataQueryUtil.getNumberOfDays(dataQuery);
-    return maxResults / numDays;
+    return maxResults / DateRange.of(dataQuery).getNumColumns();
   }
 
   /**
@@ -135,18 +223,52 @@ public class QueryManagerGroupImpl implements QueryManager {
    * @return A list of filter expressions represented as strings.
    */
   public List<String> getFilterList(String originalDimensionName, List<String> dimensionValues) {
+    return getFilterList(originalDimensionName, dimensionValues,
+        bucketManager.getFilterMaxCharLength(), bucketManager.getFilterMaxListSize());
+  }
 
-    List<String> result = new ArrayList<String>();
+  /**
+   * Returns a list of strings which represent filter expressions. This is
+   * the same as getFilterList(String, List) except the bucket limits are
+   * passed in instead of being read from the BucketManager.
+   * @param originalDimensionName The dimension name from the first request to
+   *     the API.
+   * @param dimensionValues A list of dimension values retrieved from the first
+   *     API query.
+   * @param filterMaxCharLength The maximum length of each filter expression.
+   * @param filterMaxListSize The maximum number of filters in each expression.
+   * @return A list of filter expressions represented as strings.
+   */
+  public List<String> getFilterList(String originalDimensionName, List<String> dimensionValues,
+      int filterMaxCharLength, int filterMaxListSize) {
+
+    return toFilterList(getBuckets(originalDimensionName, dimensionValues,
+        filterMaxCharLength, filterMaxListSize));
+  }
+
+  /**
+   * Returns the buckets of filters for the dimension values. An empty list
+   * is returned if there is no dimension name or there are no values.
+   */
+  private List<Bucket> getBuckets(String originalDimensionName, List<String> dimensionValues,
+      int filterMaxCharLength, int filterMaxListSize) {
 
     if (!originalDimensionName.equals("") && dimensionValues != null
         && dimensionValues.size() > 0) {
 
-      List<Bucket> buckets =
-          bucketManager.getBucketsOfFilters(originalDimensionName, dimensionValues);
+      return bucketManager.getBucketsOfFilters(originalDimensionName,
+          dimensionValues, filterMaxCharLength, filterMaxListSize);
+    }
+    return new ArrayList<Bucket>();
+  }
 
-      for (Bucket bucket : buckets) {
-        result.add(bucket.toString());
-      }
+  /**
+   * Returns the filter expression of each bucket.
+   */
+  private static List<String> toFilterList(List<Bucket> buckets) {
+    List<String> result = new ArrayList<String>(buckets.size());
+    for (Bucket bucket : buckets) {
+      result.add(bucket.toString());
     }
     return result;
   }
@@ -34,7 +34,7 @@ public class QueryManagerIndividualImpl implements QueryManager {
    * Returns a FilteredQueries object in which each dimension has a
    * corresponding query to retrieve data over time.
    * @param dataQuery The DataQuery object used to retrieve a list of
-   *     dimensions.
+   *     dimensions. This is copied and is not changed.
    * @param dimensionValues The list of dimensions returned from the
    *     dataQuery parameter.
    * @return A FilteredQueries object to get data over time for each
@@ -44,12 +44,27 @@ public class QueryManagerIndividualImpl implements QueryManager {
   public FilteredQueries getFilteredQueries(DataQuery dataQuery, List<String> dimensionValues) {
     FilteredQueries queries = new FilteredQueries();
     String dimensionName = dataQuery.getDimensions();
-    updateQuery(dataQuery);
-    queries.setQuery(dataQuery);
+    DataQuery updatedQuery = DataQueryUtil.copyQuery(dataQuery);
+    updateQuery(updatedQuery);
+    queries.setQuery(updatedQuery);
     queries.setFilterList(getFilterList(dimensionName, dimensionValues));
     return queries;
   }
 
+  /**
+   * Returns a QueryPlan in which each dimension has a corresponding query
+   * to retrieve data over time. The dataQuery parameter is not changed.
+   * @param dataQuery The DataQuery object used to retrieve a list of
+   *     dimensions.
+   * @param dimensionValues The list of dimensions returned from the
+   *     dataQuery parameter.
+   * @return A QueryPlan to get data over time for each dimension.
+   */
+  @Override
+  public QueryPlan getQueryPlan(DataQuery dataQuery, List<String> dimensionValues) {
+    return new QueryPlan(getFilteredQueries(dataQuery, dimensionValues));
+  }
+
   /**
    * Updates a DataQuery object so it can be used to get
    * data over time.
@@ -58,7 +73,7 @@ public class QueryManagerIndividualImpl implements QueryManager {
   public void updateQuery(DataQuery dataQuery) {
     dataQuery.setDimensions("ga:date");
     dataQuery.setSort("ga:date");
-    dataQuery.setMaxResults(DataQueryUtil.getNumberOfDays(dataQuery));
+    dataQuery.setMaxResults(DateRange.of(dataQuery).getNumColumns());
     dataQuery.setStartIndex(-1); // Un-sets the parameter.
     Filter.addAndOperator(dataQuery);
   }
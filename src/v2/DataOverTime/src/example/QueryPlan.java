@@ -0,0 +1,189 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides an immutable list of queries which only differ by their filter
+ * parameter. Unlike FilteredQueries, a plan never changes a shared DataQuery
+ * object. Every query it returns is a new object, so a plan can be used by
+ * many threads at once and can be cached and reused across reports.
+ *
+ * A plan can also be made of other plans, for example when different
+ * dimension values need different date ranges. Each query then uses the
+ * base query of the plan it came from.
+ */
+public final class QueryPlan implements Iterable<DataQuery> {
+
+  private final DataQuery baseQuery;
+  private final List<DataQuery> partQueries;
+  private final int[] partIndexes;
+  private final List<String> filterList;
+  private final BucketReport bucketReport;
+
+  /**
+   * Constructor.
+   * @param updatedQuery The query updated to get data over time. This is
+   *     copied, so later changes to it do not affect the plan.
+   * @param filterList The filters to append to the updated query's filter.
+   */
+  public QueryPlan(DataQuery updatedQuery, List<String> filterList) {
+    this(updatedQuery, filterList, null);
+  }
+
+  /**
+   * Constructor.
+   * @param updatedQuery The query updated to get data over time. This is
+   *     copied, so later changes to it do not affect the plan.
+   * @param filterList The filters to append to the updated query's filter.
+   * @param bucketReport How well the filters were packed into buckets. May
+   *     be null if the filters were not grouped.
+   */
+  public QueryPlan(DataQuery updatedQuery, List<String> filterList,
+      BucketReport bucketReport) {
+    this.bucketReport = bucketReport;
+    baseQuery = DataQueryUtil.copyQuery(updatedQuery);
+    partQueries = Collections.singletonList(baseQuery);
+    partIndexes = new int[filterList.size()];
+    this.filterList = Collections.unmodifiableList(new ArrayList<String>(filterList));
+  }
+
+  /**
+   * Returns a plan with the queries of every part, in order. The bucket
+   * report is the report of the only part, or null if there is more than
+   * one part.
+   * @param updatedQuery The query updated to get data over time for the
+   *     whole date range. This is returned by getBaseQuery.
+   * @param parts The plans to combine.
+   * @return A new QueryPlan.
+   */
+  public static QueryPlan combine(DataQuery updatedQuery, List<QueryPlan> parts) {
+    return new QueryPlan(updatedQuery, parts.toArray(new QueryPlan[parts.size()]));
+  }
+
+  /**
+   * Constructor.
+   * Used by combine.
+   */
+  private QueryPlan(DataQuery updatedQuery, QueryPlan[] parts) {
+    bucketReport = parts.length == 1 ? parts[0].getBucketReport() : null;
+    baseQuery = DataQueryUtil.copyQuery(updatedQuery);
+
+    List<DataQuery> queries = new ArrayList<DataQuery>();
+    List<String> filters = new ArrayList<String>();
+    int size = 0;
+    for (QueryPlan part : parts) {
+      size += part.size();
+    }
+    partIndexes = new int[size];
+    for (QueryPlan part : parts) {
+      for (int i = 0; i < part.size(); i++) {
+        partIndexes[filters.size()] = queries.size() + part.partIndexes[i];
+        filters.add(part.filterList.get(i));
+      }
+      queries.addAll(part.partQueries);
+    }
+    partQueries = Collections.unmodifiableList(queries);
+    filterList = Collections.unmodifiableList(filters);
+  }
+
+  /**
+   * Constructor.
+   * Creates a plan with the same queries as a FilteredQueries object.
+   * @param filteredQueries The FilteredQueries object to copy.
+   */
+  public QueryPlan(FilteredQueries filteredQueries) {
+    this(filteredQueries.getQuery(), filteredQueries.getFilterList());
+  }
+
+  /**
+   * @return The number of queries in this plan.
+   */
+  public int size() {
+    return filterList.size();
+  }
+
+  /**
+   * Returns a new DataQuery object whose filter is the original filter
+   * followed by the filter at index. The other parameters are the same as
+   * the base query of the part the filter came from.
+   * @param index An index into the filter list.
+   * @return A new DataQuery object.
+   */
+  public DataQuery getQuery(int index) {
+    DataQuery query = DataQueryUtil.copyQuery(partQueries.get(partIndexes[index]));
+    String originalFilter = query.getFilters();
+    query.setFilters((originalFilter != null ? originalFilter : "") + filterList.get(index));
+    return query;
+  }
+
+  /**
+   * @return The unmodifiable list of filters.
+   */
+  public List<String> getFilterList() {
+    return filterList;
+  }
+
+  /**
+   * @return How well the filters were packed into buckets, or null if the
+   *     filters were not grouped.
+   */
+  public BucketReport getBucketReport() {
+    return bucketReport;
+  }
+
+  /**
+   * @return A copy of the query every filter is applied to.
+   */
+  public DataQuery getBaseQuery() {
+    return DataQueryUtil.copyQuery(baseQuery);
+  }
+
+  /**
+   * Returns an iterator over new DataQuery objects for each filter. Each
+   * call returns a new iterator so a plan can be iterated many times.
+   * @return An iterator of DataQuery objects.
+   */
+  @Override
+  public Iterator<DataQuery> iterator() {
+    return new Iterator<DataQuery>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < filterList.size();
+      }
+
+      @Override
+      public DataQuery next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return getQuery(index++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
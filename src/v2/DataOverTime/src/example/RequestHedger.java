@@ -0,0 +1,246 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends a second copy of a request that has not answered by a percentile of
+ * the latency of recent requests, and uses whichever copy answers first.
+ * This cuts the time a job waits for its slowest feed. Every job gets a
+ * Budget which limits how many extra requests it may send, so the extra
+ * quota used is bounded.
+ *
+ * Requests are run on threads created by the ThreadFactory. Nothing is
+ * hedged until MIN_SAMPLES requests have completed. Every method may be
+ * called from many threads at once.
+ */
+public class RequestHedger {
+
+  static final int MIN_SAMPLES = 20;
+  static final int MAX_SAMPLES = 512;
+
+  private final double percentile;
+  private final double maxHedgeFraction;
+  private final ExecutorService executor;
+
+  // The latency of the most recent requests, in a ring.
+  private final long[] samples = new long[MAX_SAMPLES];
+  private int numSamples;
+  private int nextSample;
+
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong hedgeWinCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param percentile The percentile of recent latencies after which a
+   *     request is hedged, for example 0.95.
+   * @param maxHedgeFraction The number of extra requests each job may send,
+   *     as a fraction of its number of queries, rounded up. 0 turns off
+   *     hedging.
+   * @param threadFactory The factory used to create the threads that send
+   *     requests.
+   */
+  public RequestHedger(double percentile, double maxHedgeFraction,
+      ThreadFactory threadFactory) {
+    if (percentile <= 0 || percentile >= 1 || maxHedgeFraction < 0) {
+      throw new IllegalArgumentException("Invalid percentile or maxHedgeFraction");
+    }
+    this.percentile = percentile;
+    this.maxHedgeFraction = maxHedgeFraction;
+    this.executor = Executors.newCachedThreadPool(threadFactory);
+  }
+
+  /**
+   * Returns the budget of extra requests for a job.
+   * @param numQueries The number of queries the job will send.
+   * @return A new Budget.
+   */
+  public Budget newBudget(int numQueries) {
+    return new Budget((int) Math.ceil(numQueries * maxHedgeFraction));
+  }
+
+  /**
+   * Sends a request, and sends it again if it has not answered by the hedge
+   * delay and the budget allows it. The first copy to answer is returned and
+   * the other is cancelled. If one copy fails, the other is waited for.
+   * @param request The request to send.
+   * @param budget The budget of the job sending the request.
+   * @return The response of the first copy to answer.
+   * @throws RuntimeException The error thrown by the request, if every
+   *     copy failed.
+   */
+  public <T> T execute(Callable<T> request, Budget budget) {
+    CompletionService<T> completion = new ExecutorCompletionService<T>(executor);
+    long startNanos = System.nanoTime();
+    Future<T> primary = completion.submit(request);
+    Future<T> hedge = null;
+    RuntimeException error = null;
+
+    try {
+      long delayNanos = getHedgeDelayNanos();
+      Future<T> done = delayNanos < 0 ? completion.take()
+          : completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+      if (done == null) {
+        if (budget.tryAcquire()) {
+          hedgeCount.incrementAndGet();
+          hedge = completion.submit(request);
+        }
+        done = completion.take();
+      }
+
+      int pending = hedge != null ? 2 : 1;
+      while (true) {
+        pending--;
+        try {
+          T response = done.get();
+          if (done == hedge) {
+            hedgeWinCount.incrementAndGet();
+          }
+          // If the hedge answered first, this is a lower bound of the
+          // primary's latency. Leaving it out would lower the hedge delay.
+          addSample(System.nanoTime() - startNanos);
+          return response;
+        } catch (ExecutionException e) {
+          if (error == null) {
+            error = e.getCause() instanceof RuntimeException
+                ? (RuntimeException) e.getCause()
+                : new IllegalStateException(e.getCause());
+          }
+        }
+        if (pending == 0) {
+          throw error;
+        }
+        done = completion.take();
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a request", e);
+    } finally {
+      primary.cancel(true);
+      if (hedge != null) {
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * @return The latency after which a request is hedged, in nanoseconds, or
+   *     -1 if too few requests have completed.
+   */
+  public long getHedgeDelayNanos() {
+    long[] sorted;
+    synchronized (samples) {
+      if (numSamples < MIN_SAMPLES) {
+        return -1;
+      }
+      sorted = Arrays.copyOf(samples, numSamples);
+    }
+    Arrays.sort(sorted);
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+  }
+
+  /**
+   * Adds the latency of a request.
+   * @param latencyNanos The latency in nanoseconds.
+   */
+  void addSample(long latencyNanos) {
+    synchronized (samples) {
+      samples[nextSample] = latencyNanos;
+      nextSample = (nextSample + 1) % MAX_SAMPLES;
+      numSamples = Math.min(numSamples + 1, MAX_SAMPLES);
+    }
+  }
+
+  /**
+   * @return The number of extra requests sent by every job.
+   */
+  public long getHedgeCount() {
+    return hedgeCount.get();
+  }
+
+  /**
+   * @return The number of extra requests which answered before the request
+   *     they copied.
+   */
+  public long getHedgeWinCount() {
+    return hedgeWinCount.get();
+  }
+
+  /**
+   * Stops the threads used to send requests.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Limits the number of extra requests sent for one job.
+   */
+  public static class Budget {
+    private final int limit;
+    private final AtomicInteger used = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param limit The number of extra requests allowed.
+     */
+    public Budget(int limit) {
+      this.limit = limit;
+    }
+
+    /**
+     * Takes one extra request from the budget.
+     * @return False if the budget is used up.
+     */
+    boolean tryAcquire() {
+      while (true) {
+        int current = used.get();
+        if (current >= limit) {
+          return false;
+        }
+        if (used.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * @return The number of extra requests allowed.
+     */
+    public int getLimit() {
+      return limit;
+    }
+
+    /**
+     * @return The number of extra requests sent.
+     */
+    public int getUsed() {
+      return used.get();
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.util.ServiceException;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules requests to the API so they stay within its quota. Each profile,
+ * identified by its table id, has a token bucket which limits the rate of
+ * requests to it, and a count of the requests made to it today. Requests
+ * that fail with a retryable error, such as a 503 or a rate limit error,
+ * are sent again after an exponential backoff with random jitter. Errors
+ * that can not be retried, and running out of daily quota, are thrown as
+ * an IllegalStateException instead of stopping the program.
+ *
+ * Every method may be called from many threads at once.
+ */
+public class RequestScheduler {
+
+  // The limits of the Data Export API for each profile.
+  static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+  static final int DEFAULT_DAILY_QUOTA = 10000;
+  static final int DEFAULT_MAX_RETRIES = 5;
+  static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+  static final long DEFAULT_MAX_BACKOFF_MILLIS = 32000;
+
+  /**
+   * A request to the API.
+   * @param <T> The type of the response.
+   */
+  public interface Request<T> {
+
+    /**
+     * Sends the request. May be called more than once if it fails.
+     * @return The response.
+     */
+    public T send() throws IOException, ServiceException;
+  }
+
+  private final double requestsPerSecond;
+  private final int dailyQuota;
+  private final int maxRetries;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final ConcurrentMap<String, TokenBucket> buckets =
+      new ConcurrentHashMap<String, TokenBucket>();
+  private final ConcurrentMap<String, DailyCount> quotaUsed =
+      new ConcurrentHashMap<String, DailyCount>();
+  private final Random random = new Random();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong retryCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   * Uses the default limits of the Data Export API.
+   */
+  public RequestScheduler() {
+    this(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_DAILY_QUOTA, DEFAULT_MAX_RETRIES,
+        DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+  }
+
+  /**
+   * Constructor.
+   * @param requestsPerSecond The rate of requests allowed to each profile.
+   *     Up to one second of requests may be sent at once.
+   * @param dailyQuota The number of requests allowed to each profile each
+   *     day, or 0 for no limit.
+   * @param maxRetries The number of times a failed request is sent again.
+   * @param initialBackoffMillis The longest wait before the first retry.
+   * @param maxBackoffMillis The longest wait before any retry.
+   */
+  public RequestScheduler(double requestsPerSecond, int dailyQuota, int maxRetries,
+      long initialBackoffMillis, long maxBackoffMillis) {
+    if (requestsPerSecond <= 0 || dailyQuota < 0 || maxRetries < 0
+        || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+      throw new IllegalArgumentException("Invalid request limits");
+    }
+    this.requestsPerSecond = requestsPerSecond;
+    this.dailyQuota = dailyQuota;
+    this.maxRetries = maxRetries;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+  }
+
+  /**
+   * Sends a request to a profile, waiting for the rate limit of the profile
+   * and retrying it if it fails with a retryable error.
+   * @param tableId The table id of the profile, for example ga:1234. May be
+   *     null if the query has none.
+   * @param request The request to send.
+   * @return The response of the request.
+   * @throws IllegalStateException If the daily quota of the profile is used
+   *     up, or the request fails with an error that can not be retried, or
+   *     fails more than maxRetries times.
+   */
+  public <T> T execute(String tableId, Request<T> request) {
+    if (tableId == null) {
+      tableId = "";
+    }
+    TokenBucket bucket = getBucket(tableId);
+    for (int attempt = 0; ; attempt++) {
+      useQuota(tableId);
+      sleep(bucket.reserve(nanoTime()));
+      requestCount.incrementAndGet();
+
+      Exception error;
+      try {
+        return request.send();
+      } catch (IOException e) {
+        error = e;
+      } catch (ServiceException e) {
+        if (!isRetryable(e)) {
+          throw new IllegalStateException("Service Exception: " + e.getMessage(), e);
+        }
+        error = e;
+      }
+
+      if (attempt >= maxRetries) {
+        throw new IllegalStateException(
+            "Request failed after " + (attempt + 1) + " attempts: " + error.getMessage(), error);
+      }
+      retryCount.incrementAndGet();
+      sleep(TimeUnit.MILLISECONDS.toNanos(getBackoffMillis(attempt)));
+    }
+  }
+
+  /**
+   * Returns true if a request that failed with the exception may succeed if
+   * it is sent again. Server errors and rate limit errors are retryable.
+   * Running out of daily quota is not.
+   * @param e The exception thrown by the request.
+   * @return Whether to retry the request.
+   */
+  public static boolean isRetryable(ServiceException e) {
+    int code = e.getHttpErrorCodeOverride();
+    String message = String.valueOf(e.getMessage());
+    if (code == 403) {
+      return message.contains("RateLimitExceeded") || message.contains("rateLimitExceeded");
+    }
+    return code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+  }
+
+  /**
+   * Returns the wait before a retry. The wait doubles after each attempt,
+   * up to maxBackoffMillis, and half of it is random so that requests which
+   * failed at the same time are not all sent again at the same time.
+   * @param attempt The number of the attempt that failed, starting at 0.
+   * @return The number of milliseconds to wait.
+   */
+  long getBackoffMillis(int attempt) {
+    long backoff = initialBackoffMillis << Math.min(attempt, 30);
+    if (backoff > maxBackoffMillis || backoff < 0) {
+      backoff = maxBackoffMillis;
+    }
+    long half = backoff / 2;
+    double jitter;
+    synchronized (random) {
+      jitter = random.nextDouble();
+    }
+    return half + (long) (jitter * (backoff - half));
+  }
+
+  /**
+   * @param tableId The table id of a profile.
+   * @return The number of requests made to the profile today.
+   */
+  public int getQuotaUsed(String tableId) {
+    DailyCount count = quotaUsed.get(tableId);
+    return count == null ? 0 : count.get(getToday());
+  }
+
+  /**
+   * @param tableId The table id of a profile.
+   * @return The number of requests that can still be made to the profile
+   *     today, or Integer.MAX_VALUE if there is no daily quota.
+   */
+  public int getQuotaRemaining(String tableId) {
+    return dailyQuota == 0 ? Integer.MAX_VALUE : Math.max(0, dailyQuota - getQuotaUsed(tableId));
+  }
+
+  /**
+   * @return The number of requests sent, including retries.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return The number of requests that were sent again after failing.
+   */
+  public long getRetryCount() {
+    return retryCount.get();
+  }
+
+  /**
+   * @return The current epoch day. Quota is counted for each day. Tests may
+   *     override this.
+   */
+  protected int getToday() {
+    return EpochDay.today();
+  }
+
+  /**
+   * @return The current value of a monotonic clock. Tests may override this.
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Waits before sending a request. Tests may override this.
+   * @param nanos The number of nanoseconds to wait.
+   */
+  protected void sleep(long nanos) {
+    if (nanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to send a request", e);
+    }
+  }
+
+  private TokenBucket getBucket(String tableId) {
+    TokenBucket bucket = buckets.get(tableId);
+    if (bucket == null) {
+      TokenBucket newBucket = new TokenBucket(requestsPerSecond, nanoTime());
+      bucket = buckets.putIfAbsent(tableId, newBucket);
+      if (bucket == null) {
+        bucket = newBucket;
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * Counts a request against the daily quota of a profile.
+   * @throws IllegalStateException If the quota is used up.
+   */
+  private void useQuota(String tableId) {
+    DailyCount count = quotaUsed.get(tableId);
+    if (count == null) {
+      DailyCount newCount = new DailyCount();
+      count = quotaUsed.putIfAbsent(tableId, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    if (!count.increment(getToday(), dailyQuota)) {
+      throw new IllegalStateException("Daily quota of " + dailyQuota
+          + " requests used up for " + tableId);
+    }
+  }
+
+  /**
+   * Limits the rate of requests to one profile. Tokens are added at a
+   * steady rate up to one second's worth. A request takes a token, and if
+   * there is none it waits until one is added. Tokens may go negative so
+   * that waiting requests are served in order.
+   */
+  private static class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastNanos;
+
+    TokenBucket(double requestsPerSecond, long nowNanos) {
+      tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+      capacity = Math.max(1, requestsPerSecond);
+      tokens = capacity;
+      lastNanos = nowNanos;
+    }
+
+    /**
+     * Takes a token.
+     * @return The number of nanoseconds to wait before using it.
+     */
+    synchronized long reserve(long nowNanos) {
+      tokens = Math.min(capacity, tokens + (nowNanos - lastNanos) * tokensPerNano);
+      lastNanos = nowNanos;
+      tokens--;
+      return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+  }
+
+  /**
+   * Counts the requests to one profile on the current day.
+   */
+  private static class DailyCount {
+    private int day = Integer.MIN_VALUE;
+    private int count;
+
+    /**
+     * Adds a request if it is within the quota.
+     * @param today The current epoch day.
+     * @param quota The daily quota, or 0 for no limit.
+     * @return False if the quota is used up.
+     */
+    synchronized boolean increment(int today, int quota) {
+      if (day != today) {
+        day = today;
+        count = 0;
+      }
+      if (quota > 0 && count >= quota) {
+        return false;
+      }
+      count++;
+      return true;
+    }
+
+    synchronized int get(int today) {
+      return day == today ? count : 0;
+    }
+  }
+}
@@ -19,6 +19,8 @@ import com.google.gdata.data.analytics.DataFeed;
 
 /**
  * Interface for handling data over time results from the Data Export API.
+ * Implementations should not keep any state for addRows(Results, DataFeed)
+ * so one instance can be shared by many jobs at once.
  * @author api.nickm@google.com (Nick Mihailovski)
  */
 public interface ResultManager {
@@ -37,4 +39,13 @@ public interface ResultManager {
    */
   public void addRows(DataFeed feed);
 
+  /**
+   * Adds a data from a data feed returned from the API as rows to the
+   * results parameter.
+   * @param results The Results object of the current job.
+   * @param feed The DataFeed object returned with data from the Data Export
+   *     API.
+   */
+  public void addRows(Results results, DataFeed feed);
+
 }
@@ -19,10 +19,6 @@ import com.google.gdata.data.analytics.DataEntry;
 import com.google.gdata.data.analytics.DataFeed;
 import com.google.gdata.data.analytics.Metric;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 /**
@@ -33,21 +29,7 @@ import java.util.List;
  */
 public class ResultManagerGroupImpl implements ResultManager {
 
-  private static final long millisInDay = 24 * 60 * 60 * 1000;
-
   private Results results;
-  private SimpleDateFormat resultDateFormat;
-  private Calendar calendar;
-
-  /**
-   * Constructor.
-   * Creates a new dimple date format and gets a calendar instance.
-   */
-  public ResultManagerGroupImpl() {
-    super();
-    resultDateFormat = new SimpleDateFormat("yyyyMMdd");
-    calendar = Calendar.getInstance();
-  }
 
   /**
    * Sets the initialized result object to add the data to.
@@ -67,46 +49,30 @@ public class ResultManagerGroupImpl implements ResultManager {
    */
   @Override
   public void addRows(DataFeed feed) {
-    String startDate = DataQueryUtil.getResultDateFormat(results.getColNames().get(0));
-    String expectedDate = "";
-    String dimensionValue = "";
-    boolean isSampled = false;
-    List<Double> row = null;
-    int numCols = results.getNumCols();
-
-    for (DataEntry entry : feed.getEntries()) {
-      String tmpDimValue = entry.getDimensions().get(0).getValue();
-
-      if (!tmpDimValue.equals(dimensionValue)) {  // Detect beginning of a row.
-        if (row != null) {
-          forwardFillRow(numCols, row);
-          results.addRow(dimensionValue, row);  // Add the row.
-        }
-        row = new ArrayList<Double>(numCols);  // Create a new row.
-        dimensionValue = tmpDimValue;
-        expectedDate = startDate;
-      }
+    addRows(results, feed);
+  }
 
-      String foundDate = entry.getDimension("ga:date").getValue();  // Backfill row.
-      if (!foundDate.equals(expectedDate)) {
-        backFillRow(expectedDate, foundDate, row);
-      }
+  /**
+   * Parses a data feed into the results parameter. This is the same as
+   * addRows(DataFeed) except no member state is used, so it can be called
+   * by many threads at once.
+   * @param results The Results object of the current job.
+   * @param feed The Data Export API response object filled with data.
+   */
+  @Override
+  public void addRows(Results results, DataFeed feed) {
+    DimensionDictionary dictionary = results.getDimensionDictionary();
+    ResultsRowSink sink = new ResultsRowSink(results);
+    double[] metricValues = new double[1];  // Reused for every entry.
 
-      // Handle the data.
+    for (DataEntry entry : feed.getEntries()) {
+      int valueId = dictionary.getId(entry.getDimensions().get(0).getValue());
+      int epochDay = EpochDay.parse(entry.getDimension("ga:date").getValue());
       Metric metric = entry.getMetrics().get(0);
-      if (!isSampled && 0 != metric.getConfidenceInterval()) {
-        isSampled = true;
-      }
-      row.add(new Double(metric.getValue()));
-      expectedDate = getNextDate(foundDate);
-    }
-
-    // Add the last row.
-    if (row != null) {
-      forwardFillRow(numCols, row);
-      results.addRow(dimensionValue, row);
+      metricValues[0] = metric.doubleValue();
+      sink.addEntry(valueId, epochDay, metricValues, 1, metric.getConfidenceInterval());
     }
-    results.setIsSampled(isSampled);
+    sink.endFeed();
   }
 
   /**
@@ -118,21 +84,7 @@ public class ResultManagerGroupImpl implements ResultManager {
    * @param row The current row being added to the table.
    */
   public void backFillRow(String startDate, String endDate, List<Double> row) {
-    long d1 = 0;
-    long d2 = 0;
-
-    try {
-      calendar.setTime(resultDateFormat.parse(startDate));
-      d1 = calendar.getTimeInMillis() / millisInDay;
-
-      calendar.setTime(resultDateFormat.parse(endDate));
-      d2 = calendar.getTimeInMillis() / millisInDay;
-
-    } catch (ParseException e) {
-      System.out.println("Result Table Date Error: " + e.getMessage());
-    }
-
-    long differenceInDays = d2 - d1;
+    long differenceInDays = getDaysBetween(startDate, endDate);
     if (differenceInDays > 0) {
       for (int i = 0; i < differenceInDays; i++) {
         row.add(0.0);
@@ -140,21 +92,23 @@ public class ResultManagerGroupImpl implements ResultManager {
     }
   }
 
+  /**
+   * Returns the number of days from startDate to endDate.
+   * @param startDate A date in the yyyyMMdd format.
+   * @param endDate A date in the yyyyMMdd format.
+   * @return The number of days, which is negative if endDate is first.
+   */
+  private int getDaysBetween(String startDate, String endDate) {
+    return EpochDay.parse(endDate) - EpochDay.parse(startDate);
+  }
+
   /**
    * Returns the following date represented by initialDate.
    * @param initialDate The string representation of the date to increment.
    * @return The next date.
    */
   public String getNextDate(String initialDate) {
-    try {
-      calendar.setTime(resultDateFormat.parse(initialDate));
-      calendar.add(Calendar.DATE, 1);
-      return resultDateFormat.format(calendar.getTime());
-
-    } catch (ParseException e) {
-      System.out.println("Result Table Date Error: " + e.getMessage());
-    }
-    return "";
+    return EpochDay.toResultDate(EpochDay.parse(initialDate) + 1);
   }
 
   /**
@@ -19,9 +19,6 @@ import com.google.gdata.data.analytics.DataEntry;
 import com.google.gdata.data.analytics.DataFeed;
 import com.google.gdata.data.analytics.Metric;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Implements the ResultManager interface to handle queries where each
  * request has only one row of data.
@@ -51,7 +48,20 @@ public class ResultManagerIndividualImpl implements ResultManager {
    */
   @Override
   public void addRows(DataFeed feed) {
-    List<Double> row = new ArrayList<Double>(results.getNumRows());
+    addRows(results, feed);
+  }
+
+  /**
+   * Adds all the rows from the DataFeed object returned from the API
+   * into the results parameter. This uses no member state.
+   * @param results The Results object to add the row to.
+   * @param feed The DataFeed object to parse and store in a Results
+   *     object.
+   */
+  @Override
+  public void addRows(Results results, DataFeed feed) {
+    DateRange dateRange = results.getDateRange();
+    double[] row = new double[results.getNumCols()];
     Metric metric;
     boolean isSampled = false;
 
@@ -60,9 +70,13 @@ public class ResultManagerIndividualImpl implements ResultManager {
       if (!isSampled && 0 != metric.getConfidenceInterval()) {
         isSampled = true;
       }
-      row.add(new Double(metric.getValue()));
+      int col = dateRange.getColumn(entry.getDimension("ga:date").getValue());
+      if (col >= 0) {
+        row[col] = metric.doubleValue();
+      }
     }
-    results.addRow(row);
+    String rowName = results.getOriginalDimensionValues().get(results.getNumTableRows());
+    results.addRow(rowName, row);
     results.setIsSampled(isSampled);
   }
 }
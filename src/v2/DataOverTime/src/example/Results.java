@@ -17,13 +17,19 @@ package example;
 
 import com.google.gdata.client.analytics.DataQuery;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.text.MessageFormat;
+import java.nio.channels.Channels;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Provides a data object that represents a Table. The table has lists
@@ -31,14 +37,20 @@ import java.util.List;
  * the data has been sampled. This table can be output to the console
  * or output to a file.
  *
+ * The values are stored as primitive doubles in a CellMatrix. getRow,
+ * getColumn and getTable return views of the matrix, so no values are
+ * copied or boxed until they are read.
+ *
  * @author api.nickm@google.com (Nick Mihailovski)
  */
 public class Results {
 
   private List<String> rowNames;
   private List<String> originalDimensionValues;
-  private List<List<Double>> table;
+  private DimensionDictionary dimensionDictionary;
+  private CellMatrix cells;
   private List<String> colNames;
+  private DateRange dateRange;
   private String dimensionName = "";
   private boolean isSampled;
 
@@ -50,14 +62,39 @@ public class Results {
    *     dataQuery parameter.
    */
   public void initTable(DataQuery dataQuery, List<String> dimensionValues) {
-    table = new ArrayList<List<Double>>(dimensionValues.size());
     originalDimensionValues = dimensionValues;
-    rowNames = new ArrayList<String>(dimensionValues.size());
+    dimensionDictionary = new DimensionDictionary(dimensionValues);
+    rowNames = createRowNames(dimensionValues.size());
     dimensionName = dataQuery.getDimensions();
-    setColNames(DataQueryUtil.getListOfDates(dataQuery));
+    dateRange = DateRange.of(dataQuery);
+    colNames = dateRange.getColumnNames();
+    cells = createCellMatrix(colNames.size(), dimensionValues.size());
     isSampled = false;
   }
 
+  /**
+   * Creates the matrix that stores the values of the table. The default is
+   * a HybridCellMatrix, which stores rows with data on only a few days as
+   * sparse rows. Subclasses can override this to store the values
+   * differently.
+   * @param numCols The number of columns in every row.
+   * @param expectedRows The number of rows the table is expected to have.
+   * @return A new, empty CellMatrix.
+   */
+  protected CellMatrix createCellMatrix(int numCols, int expectedRows) {
+    return new HybridCellMatrix(numCols, expectedRows);
+  }
+
+  /**
+   * Creates the list that row names are added to. Subclasses can override
+   * this to store the row names differently.
+   * @param expectedRows The number of rows the table is expected to have.
+   * @return A new, empty list.
+   */
+  protected List<String> createRowNames(int expectedRows) {
+    return new ArrayList<String>(expectedRows);
+  }
+
   /**
    * Prints the table to the standard output.
    */
@@ -66,91 +103,220 @@ public class Results {
   }
 
   /**
-   * Prints the table to a file.
+   * Prints the table to a file. Errors writing the file are printed to
+   * the standard error.
    *
    * @param fileName The name of the file to print to.
    * @throws FileNotFoundException If the file is not found.
    */
   public void printCsvToFile(String fileName) throws FileNotFoundException {
     FileOutputStream out = new FileOutputStream(fileName);
-    PrintStream fileOutput = new PrintStream(out);
-    outputCsv(fileOutput);
-    fileOutput.close();
+    try {
+      try {
+        new CsvWriter().write(this, out.getChannel());
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      System.err.println("Can not write " + fileName + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the table to a CSV file.
+   *
+   * @param file The file to write.
+   * @throws IOException If the file can not be written.
+   */
+  public void writeCsv(File file) throws IOException {
+    new CsvWriter().write(this, file);
+  }
+
+  /**
+   * Writes the table to a CSV file, formatting chunks of rows in parallel
+   * with a ParallelCsvWriter. The file is the same as writeCsv writes.
+   *
+   * @param file The file to write.
+   * @param pool The pool that formats the rows. It is not shut down.
+   * @throws IOException If the file can not be written.
+   */
+  public void writeCsv(File file, ForkJoinPool pool) throws IOException {
+    new ParallelCsvWriter(pool).write(this, file);
   }
 
   /**
    * Prints the table as a CSV file. Prints if any sampling occurred, the name
    * of the dimension along with all the column names, and each row including
-   * the row name and the data.
+   * the row name and the data. See CsvWriter for how values are printed.
    *
    * @param output An object that implements PrintStream, like a file or
    *     standard output.
    */
   public void outputCsv(PrintStream output) {
-
-    Double total = 0.0;
-
-    // Print sampled disclaimer.
-    if (isSampled) {
-      output.println("These results are based on sampled data");
-    }
-
-    // Print header.
-    output.print(dimensionName);
-    for (String colName : colNames) {
-      output.print(MessageFormat.format(",{0}", colName));
-    }
-    output.print(",Total\n");
-
-    // Print main table.
-    for (int i = 0; i<table.size(); i++) {
-      output.print(rowNames.get(i));
-
-      List<Double> row = table.get(i);
-      Iterator<Double> valueIter = row.iterator();
-      while (valueIter.hasNext()) {
-        Double intValue = valueIter.next();
-        total += intValue;
-        output.print(MessageFormat.format(",{0}", intValue.toString()));
-      }
-      output.print(MessageFormat.format(",{0}\n", total.toString()));
-      total = 0.0;
+    try {
+      new CsvWriter().write(this, Channels.newChannel(output));
+    } catch (IOException e) {
+      // PrintStream never throws IOException.
+      throw new IllegalStateException(e);
     }
+    output.flush();
   }
 
   /**
    * Adds a row and it's row name to the table.
    * @param rowName The name of a row.
-   * @param row A list of Integers representing each value.
+   * @param row A list of values. Missing values at the end of the row are
+   *     set to 0.
    */
   public void addRow(String rowName, List<Double> row) {
+    addRow(rowName, toArray(row));
+  }
+
+  /**
+   * Adds a row and it's row name to the table. The values are copied, so
+   * the array can be reused for the next row.
+   * @param rowName The name of a row.
+   * @param row An array of at least getNumCols values.
+   */
+  public void addRow(String rowName, double[] row) {
+    getCellMatrix(row.length).addRow(row);
     rowNames.add(rowName);
-    table.add(row);
+  }
+
+  /**
+   * Adds a row to the table. The row name is the value of an id in the
+   * dimension dictionary, so it is the same String object as the value.
+   * @param valueId The id of the row's dimension value.
+   * @param row An array of at least getNumCols values.
+   */
+  public void addRow(int valueId, double[] row) {
+    addRow(getDimensionDictionary().getValue(valueId), row);
+  }
+
+  /**
+   * Returns the dictionary of this table's dimension values. It starts with
+   * the dimension values the table was initialized with.
+   * @return The dimension dictionary.
+   */
+  public DimensionDictionary getDimensionDictionary() {
+    if (dimensionDictionary == null) {
+      dimensionDictionary = new DimensionDictionary(originalDimensionValues != null
+          ? originalDimensionValues : Collections.<String>emptyList());
+    }
+    return dimensionDictionary;
   }
 
   /**
    * Adds a row to the table and uses the originalDimensionValue
    * as the row name.
-   * @param row A list of Integers representing each value.
+   * @param row A list of values. Missing values at the end of the row are
+   *     set to 0.
    */
   public void addRow(List<Double> row) {
-    table.add(row);
-    rowNames.add(originalDimensionValues.get(table.size()));
+    addRow(originalDimensionValues.get(getNumTableRows()), row);
   }
 
   /**
+   * Returns a view of every row in the table. Changing a value of a row
+   * changes the value in the table.
    * @return The table.
    */
   public List<List<Double>> getTable() {
-    return table;
+    final CellMatrix matrix = cells;
+    return new AbstractList<List<Double>>() {
+      @Override
+      public List<Double> get(int row) {
+        return new RowView(matrix, row);
+      }
+
+      @Override
+      public int size() {
+        return matrix != null ? matrix.getNumRows() : 0;
+      }
+    };
   }
 
   /**
-   * Sets the table.
+   * Sets the table. The values are copied into a new matrix, so the rows
+   * may be views of this table.
    * @param table The table to set.
    */
   public void setTable(List<List<Double>> table) {
-    this.table = table;
+    int numCols = colNames != null ? colNames.size() : 0;
+    if (colNames == null && !table.isEmpty()) {
+      numCols = table.get(0).size();
+    }
+    CellMatrix matrix = createCellMatrix(numCols, table.size());
+    double[] values = new double[numCols];
+    for (List<Double> row : table) {
+      matrix.addRow(toArray(row, values));
+    }
+    cells = matrix;
+  }
+
+  /**
+   * Returns a view of a row. Changing a value of the view changes the value
+   * in the table.
+   * @param row The row index.
+   * @return A list of the values of the row.
+   */
+  public List<Double> getRow(int row) {
+    checkIndex(row, getNumTableRows());
+    return new RowView(cells, row);
+  }
+
+  /**
+   * Returns a view of a column. Changing a value of the view changes the
+   * value in the table.
+   * @param col The column index.
+   * @return A list of the values of the column, one for each row.
+   */
+  public List<Double> getColumn(int col) {
+    checkIndex(col, cells != null ? cells.getNumCols() : 0);
+    return new ColumnView(cells, col);
+  }
+
+  /**
+   * @param row The row index.
+   * @param col The column index.
+   * @return The value of the cell.
+   */
+  public double getValue(int row, int col) {
+    return cells.get(row, col);
+  }
+
+  /**
+   * Sets the value of a cell.
+   * @param row The row index.
+   * @param col The column index.
+   * @param value The new value.
+   */
+  public void setValue(int row, int col, double value) {
+    cells.set(row, col, value);
+  }
+
+  /**
+   * @return The matrix holding the values of the table, or null if the
+   *     table has not been initialized.
+   */
+  public CellMatrix getCellMatrix() {
+    return cells;
+  }
+
+  /**
+   * Sets the matrix holding the values of the table. The matrix is not
+   * copied.
+   * @param cells The matrix. It must have a row for every row name.
+   */
+  public void setCellMatrix(CellMatrix cells) {
+    this.cells = cells;
+  }
+
+  /**
+   * @return The number of rows that have been added to the table.
+   */
+  public int getNumTableRows() {
+    return cells != null ? cells.getNumRows() : 0;
   }
 
   /**
@@ -188,6 +354,7 @@ public class Results {
    */
   public void setColNames(List<String> colNames) {
     this.colNames = colNames;
+    dateRange = null;
   }
 
   /**
@@ -197,6 +364,19 @@ public class Results {
     return colNames;
   }
 
+  /**
+   * Returns the date range of the columns. If the column names were set
+   * with setColNames, they must be one column for each day, in order.
+   * @return The DateRange of the columns, or null if there are none.
+   */
+  public DateRange getDateRange() {
+    if (dateRange == null && colNames != null && !colNames.isEmpty()) {
+      dateRange = DateRange.of(colNames.get(0), colNames.get(colNames.size() - 1),
+          DateRange.Granularity.DAY);
+    }
+    return dateRange;
+  }
+
   /**
    * Sets the dimension name.
    * @param dimensionName The dimension name.
@@ -212,6 +392,16 @@ public class Results {
     return dimensionName;
   }
 
+  /**
+   * Sets the list of original dimension values.
+   * @param originalDimensionValues The dimension values the table was
+   *     initialized with.
+   */
+  public void setOriginalDimensionValues(List<String> originalDimensionValues) {
+    this.originalDimensionValues = originalDimensionValues;
+    dimensionDictionary = null;
+  }
+
   /**
    * @return The list of original dimension values.
    */
@@ -219,6 +409,104 @@ public class Results {
     return originalDimensionValues;
   }
 
+  private CellMatrix getCellMatrix(int numCols) {
+    if (cells == null) {
+      cells = createCellMatrix(colNames != null ? colNames.size() : numCols, 0);
+    }
+    if (numCols < cells.getNumCols()) {
+      throw new IllegalArgumentException("Expected " + cells.getNumCols()
+          + " values but got " + numCols);
+    }
+    return cells;
+  }
+
+  private double[] toArray(List<Double> row) {
+    int numCols = cells != null ? cells.getNumCols() : row.size();
+    return toArray(row, new double[numCols]);
+  }
+
+  /**
+   * Copies a row into values and sets the rest of values to 0.
+   */
+  private static double[] toArray(List<Double> row, double[] values) {
+    if (row.size() > values.length) {
+      throw new IllegalArgumentException("Expected " + values.length
+          + " values but got " + row.size());
+    }
+    int i = 0;
+    for (Double value : row) {
+      values[i++] = value;
+    }
+    Arrays.fill(values, i, values.length, 0.0);
+    return values;
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  /**
+   * A view of one row of a CellMatrix.
+   */
+  private static class RowView extends AbstractList<Double> implements RandomAccess {
+    private final CellMatrix matrix;
+    private final int row;
+
+    RowView(CellMatrix matrix, int row) {
+      this.matrix = matrix;
+      this.row = row;
+    }
+
+    @Override
+    public Double get(int col) {
+      return matrix.get(row, col);
+    }
+
+    @Override
+    public Double set(int col, Double value) {
+      Double previous = matrix.get(row, col);
+      matrix.set(row, col, value);
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return matrix.getNumCols();
+    }
+  }
+
+  /**
+   * A view of one column of a CellMatrix.
+   */
+  private static class ColumnView extends AbstractList<Double> implements RandomAccess {
+    private final CellMatrix matrix;
+    private final int col;
+
+    ColumnView(CellMatrix matrix, int col) {
+      this.matrix = matrix;
+      this.col = col;
+    }
+
+    @Override
+    public Double get(int row) {
+      return matrix.get(row, col);
+    }
+
+    @Override
+    public Double set(int row, Double value) {
+      Double previous = matrix.get(row, col);
+      matrix.set(row, col, value);
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return matrix.getNumRows();
+    }
+  }
+
   /**
    * Sets whether this data has been sampled. Since the default is false,
    * only update isSampled if it's true.
@@ -0,0 +1,103 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.Arrays;
+
+/**
+ * Adds the entries of one feed to a Results object. Entries of the same
+ * dimension value must be next to each other, as they are in feeds sorted
+ * by dimension value and date. Each entry's first metric value is stored
+ * in the column of its date, and days without an entry are left as 0.
+ * Entries with a value id of -1, from feeds of a single dimension value
+ * like those of QueryManagerIndividualImpl, are added as one row named by
+ * the next original dimension value. A sink made for such feeds adds that
+ * row even when the feed has no entries, as ResultManagerIndividualImpl
+ * does, so the rows after it keep their names. A new sink must be used for
+ * each feed.
+ */
+public class ResultsRowSink implements FeedRowSink {
+
+  private final Results results;
+  private final DateRange dateRange;
+  private final double[] row;  // Reused for every row.
+  private int valueId = -1;
+  private boolean hasRow;
+  private int lastCol = -1;
+  private boolean isSampled;
+
+  /**
+   * Constructor.
+   * @param results The initialized Results object to add rows to.
+   */
+  public ResultsRowSink(Results results) {
+    this(results, false);
+  }
+
+  /**
+   * Constructor.
+   * @param results The initialized Results object to add rows to.
+   * @param isSingleValue True if the feed is for one dimension value, so
+   *     exactly one row is added for it, of zeros if it has no entries.
+   */
+  public ResultsRowSink(Results results, boolean isSingleValue) {
+    this.results = results;
+    dateRange = results.getDateRange();
+    row = new double[results.getNumCols()];
+    hasRow = isSingleValue;
+  }
+
+  @Override
+  public void addEntry(int valueId, int epochDay, double[] metricValues, int numMetrics,
+      double confidenceInterval) {
+    if (valueId != this.valueId || !hasRow) {  // Detect beginning of a row.
+      addRow();
+      this.valueId = valueId;
+      hasRow = true;
+    }
+
+    if (confidenceInterval != 0) {
+      isSampled = true;
+    }
+    int col = dateRange.getColumn(epochDay);
+    if (col >= 0 && numMetrics > 0) {
+      row[col] = metricValues[0];
+      lastCol = Math.max(lastCol, col);
+    }
+  }
+
+  /**
+   * Adds the last row. Days after the last entry are already 0. For a
+   * single dimension value, the row is added even if there were no entries.
+   */
+  @Override
+  public void endFeed() {
+    addRow();
+    results.setIsSampled(isSampled);
+  }
+
+  private void addRow() {
+    if (!hasRow) {
+      return;
+    }
+    if (valueId >= 0) {
+      results.addRow(valueId, row);
+    } else {
+      results.addRow(results.getOriginalDimensionValues().get(results.getNumTableRows()), row);
+    }
+    Arrays.fill(row, 0, lastCol + 1, 0.0);
+    lastCol = -1;
+    hasRow = false;
+  }
+}
@@ -0,0 +1,531 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Provides a saved copy of a Results object along with the series key of
+ * the query that created it. Snapshots let the next run only request the
+ * new dates and dimension values instead of the whole table.
+ *
+ * Snapshots are stored in a binary format which read memory maps, so the
+ * table is not parsed or copied onto the heap. All numbers are little
+ * endian. The file holds, in order:
+ * <ul>
+ * <li>A header: the magic number, the format version, flags for whether
+ *     the data is sampled and whether every value is a whole number, the
+ *     number of rows and columns, and the position of the cell block.
+ * <li>The series key and the dimension name.
+ * <li>A dictionary of the row names and one of the original dimension
+ *     values. Each holds the number of strings, the offset of each string
+ *     and the UTF-8 bytes of every string.
+ * <li>The date of each column as an epoch day.
+ * <li>The cell block, which holds the values of each row one row after
+ *     another as doubles, starting at a multiple of 8 bytes.
+ * </ul>
+ * Snapshots in the gzip compressed format of version 1 can still be read.
+ *
+ * writeCompressed stores a snapshot for archiving instead. Each row is
+ * compressed by a SeriesCodec, which is usually many times smaller, but
+ * the rows have to be decoded onto the heap when the file is read.
+ */
+public class ResultsSnapshot {
+
+  private static final int MAGIC = 0x504e5352;  // The bytes "RSNP".
+  private static final int FORMAT_VERSION = 2;
+  private static final int GZIP_FORMAT_VERSION = 1;
+  private static final int COMPRESSED_MAGIC = 0x52534e5a;  // The bytes "RSNZ".
+  private static final int COMPRESSED_FORMAT_VERSION = 3;
+  private static final int HEADER_BYTES = 32;
+  private static final int FLAG_SAMPLED = 1;
+  private static final int FLAG_INTEGRAL = 2;
+  private static final int BUFFER_BYTES = 1024 * 1024;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final String seriesKey;
+  private final Results results;
+
+  /**
+   * Constructor.
+   * @param seriesKey The series key of the query that created the results.
+   * @param results The results.
+   */
+  public ResultsSnapshot(String seriesKey, Results results) {
+    this.seriesKey = seriesKey;
+    this.results = results;
+  }
+
+  /**
+   * @return The series key of the query that created the results.
+   */
+  public String getSeriesKey() {
+    return seriesKey;
+  }
+
+  /**
+   * @return The results.
+   */
+  public Results getResults() {
+    return results;
+  }
+
+  /**
+   * Writes this snapshot to a file. The file is first written to a
+   * temporary file, so a failed write does not replace the last snapshot.
+   * @param file The file to write.
+   * @throws IOException If the file can not be written.
+   */
+  public void write(File file) throws IOException {
+    List<String> rowNames = results.getRowNames();
+    List<String> originalValues = results.getOriginalDimensionValues() != null
+        ? results.getOriginalDimensionValues() : Collections.<String>emptyList();
+    List<String> colNames = results.getColNames();
+    CellMatrix cells = results.getCellMatrix();
+    int numRows = results.getNumTableRows();
+    int numCols = numRows > 0 ? cells.getNumCols() : colNames.size();
+    if (numCols != colNames.size()) {
+      throw new IllegalStateException("The table has " + numCols + " columns but "
+          + colNames.size() + " column names");
+    }
+
+    long cellOffset = HEADER_BYTES + getStringSize(seriesKey)
+        + getStringSize(results.getDimensionName()) + getDictionarySize(rowNames, numRows)
+        + getDictionarySize(originalValues, originalValues.size()) + 4L * numCols;
+    cellOffset = (cellOffset + 7) / 8 * 8;
+    int flags = (results.getIsSampled() ? FLAG_SAMPLED : 0)
+        | (cells == null || cells.isIntegral() ? FLAG_INTEGRAL : 0);
+
+    File tempFile = new File(file.getPath() + ".tmp");
+    FileOutputStream output = new FileOutputStream(tempFile);
+    try {
+      FileChannel channel = output.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(flags).putInt(numRows)
+          .putInt(numCols).putInt(0).putLong(cellOffset);
+      putString(channel, buffer, seriesKey);
+      putString(channel, buffer, results.getDimensionName());
+      putDictionary(channel, buffer, rowNames, numRows);
+      putDictionary(channel, buffer, originalValues, originalValues.size());
+      for (String colName : colNames) {
+        ensureRemaining(channel, buffer, 4);
+        buffer.putInt(EpochDay.parse(colName));
+      }
+      ensureRemaining(channel, buffer, 8);
+      long position = channel.position() + buffer.position();
+      if (position > cellOffset) {
+        throw new IllegalStateException("Wrote " + position + " bytes before the cells at "
+            + cellOffset);
+      }
+      for (; position < cellOffset; position++) {
+        buffer.put((byte) 0);
+      }
+
+      double[] row = new double[numCols];
+      for (int i = 0; i < numRows; i++) {
+        cells.getRow(i, row);
+        for (double value : row) {
+          ensureRemaining(channel, buffer, 8);
+          buffer.putDouble(value);
+        }
+      }
+      flush(channel, buffer);
+    } finally {
+      output.close();
+    }
+
+    if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+      throw new IOException("Can not rename " + tempFile + " to " + file);
+    }
+  }
+
+  /**
+   * Writes this snapshot to a file with every row compressed. The file is
+   * first written to a temporary file, so a failed write does not replace
+   * the last snapshot.
+   * @param file The file to write.
+   * @throws IOException If the file can not be written.
+   */
+  public void writeCompressed(File file) throws IOException {
+    List<String> originalValues = results.getOriginalDimensionValues() != null
+        ? results.getOriginalDimensionValues() : Collections.<String>emptyList();
+    List<String> colNames = results.getColNames();
+    int numRows = results.getNumTableRows();
+
+    File tempFile = new File(file.getPath() + ".tmp");
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(tempFile), BUFFER_BYTES));
+    try {
+      output.writeInt(COMPRESSED_MAGIC);
+      output.writeInt(COMPRESSED_FORMAT_VERSION);
+      writeString(output, seriesKey);
+      writeString(output, results.getDimensionName());
+      output.writeBoolean(results.getIsSampled());
+      output.writeInt(colNames.size());
+      for (String colName : colNames) {
+        output.writeInt(EpochDay.parse(colName));
+      }
+      output.writeInt(originalValues.size());
+      for (String value : originalValues) {
+        writeString(output, value);
+      }
+
+      output.writeInt(numRows);
+      BitOutput bits = new BitOutput(output);
+      double[] row = new double[colNames.size()];
+      for (int i = 0; i < numRows; i++) {
+        writeString(output, results.getRowNames().get(i));
+        results.getCellMatrix().getRow(i, row);
+        SeriesCodec.encode(row, row.length, bits);
+      }
+    } finally {
+      output.close();
+    }
+
+    if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+      throw new IOException("Can not rename " + tempFile + " to " + file);
+    }
+  }
+
+  /**
+   * Reads a snapshot written by write or writeCompressed. The cell block
+   * and the dictionaries written by write are memory mapped and read only,
+   * so no rows can be added to the Results and no values can be set. Copy
+   * the table with setTable to change it. The rows written by
+   * writeCompressed are decoded one at a time into a new Results object.
+   * @param file The file to read.
+   * @return A new ResultsSnapshot.
+   * @throws IOException If the file can not be read or has the wrong format.
+   */
+  public static ResultsSnapshot read(File file) throws IOException {
+    FileInputStream input = new FileInputStream(file);
+    try {
+      FileChannel channel = input.getChannel();
+      long size = channel.size();
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          Math.min(size, HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+      if (size >= 2 && header.get(0) == (byte) 0x1f && header.get(1) == (byte) 0x8b) {
+        return readGzip(file);
+      }
+      if (size >= 4 && header.order(ByteOrder.BIG_ENDIAN).getInt(0) == COMPRESSED_MAGIC) {
+        return readCompressed(file);
+      }
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (size < HEADER_BYTES || header.getInt(0) != MAGIC
+          || header.getInt(4) != FORMAT_VERSION) {
+        throw new IOException("Unknown snapshot format in " + file);
+      }
+
+      int flags = header.getInt(8);
+      int numRows = header.getInt(12);
+      int numCols = header.getInt(16);
+      long cellOffset = header.getLong(24);
+      if (numRows < 0 || numCols < 0 || cellOffset < HEADER_BYTES
+          || cellOffset > Integer.MAX_VALUE
+          || cellOffset + (long) numRows * numCols * 8 > size) {
+        throw new IOException("Corrupt snapshot " + file);
+      }
+
+      ByteBuffer meta = channel.map(FileChannel.MapMode.READ_ONLY, 0, cellOffset)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      meta.position(HEADER_BYTES);
+      String seriesKey = getString(meta);
+      Results results = new Results();
+      results.setDimensionName(getString(meta));
+      results.setIsSampled((flags & FLAG_SAMPLED) != 0);
+      results.setRowNames(Dictionary.read(meta));
+      results.setOriginalDimensionValues(Dictionary.read(meta));
+      List<String> colNames = new ArrayList<String>(numCols);
+      for (int i = 0; i < numCols; i++) {
+        colNames.add(EpochDay.toQueryDate(meta.getInt()));
+      }
+      results.setColNames(colNames);
+      if (results.getRowNames().size() != numRows) {
+        throw new IOException("Corrupt snapshot " + file);
+      }
+      results.setCellMatrix(new MappedCellMatrix(channel, cellOffset, numRows, numCols,
+          (flags & FLAG_INTEGRAL) != 0));
+      return new ResultsSnapshot(seriesKey, results);
+
+    } catch (RuntimeException e) {
+      // Thrown by the mapped buffers if the file is too short.
+      throw new IOException("Corrupt snapshot " + file, e);
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Reads a snapshot written by writeCompressed.
+   */
+  private static ResultsSnapshot readCompressed(File file) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(file), BUFFER_BYTES));
+    try {
+      if (input.readInt() != COMPRESSED_MAGIC
+          || input.readInt() != COMPRESSED_FORMAT_VERSION) {
+        throw new IOException("Unknown snapshot format in " + file);
+      }
+      String seriesKey = readString(input);
+      Results results = new Results();
+      results.setDimensionName(readString(input));
+      results.setIsSampled(input.readBoolean());
+      int numCols = input.readInt();
+      List<String> colNames = new ArrayList<String>(numCols);
+      for (int i = 0; i < numCols; i++) {
+        colNames.add(EpochDay.toQueryDate(input.readInt()));
+      }
+      results.setColNames(colNames);
+      int numValues = input.readInt();
+      List<String> originalValues = new ArrayList<String>(numValues);
+      for (int i = 0; i < numValues; i++) {
+        originalValues.add(readString(input));
+      }
+      results.setOriginalDimensionValues(originalValues);
+
+      int numRows = input.readInt();
+      results.setRowNames(new ArrayList<String>(numRows));
+      BitInput bits = new BitInput(input);
+      double[] row = new double[numCols];
+      for (int i = 0; i < numRows; i++) {
+        String rowName = readString(input);
+        SeriesCodec.decode(bits, row, numCols);
+        results.addRow(rowName, row);
+      }
+      return new ResultsSnapshot(seriesKey, results);
+    } finally {
+      input.close();
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      throw new IOException("Negative string length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Reads a snapshot in the gzip compressed format of version 1.
+   */
+  private static ResultsSnapshot readGzip(File file) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(new FileInputStream(file))));
+    try {
+      if (input.readInt() != GZIP_FORMAT_VERSION) {
+        throw new IOException("Unknown snapshot format in " + file);
+      }
+      String seriesKey = input.readUTF();
+      Results results = new Results();
+      results.setDimensionName(input.readUTF());
+      results.setIsSampled(input.readBoolean());
+      results.setColNames(readList(input));
+      results.setOriginalDimensionValues(readList(input));
+      List<String> rowNames = readList(input);
+      results.setRowNames(new ArrayList<String>(rowNames.size()));
+
+      double[] row = new double[results.getNumCols()];
+      for (String rowName : rowNames) {
+        for (int col = 0; col < row.length; col++) {
+          row[col] = input.readDouble();
+        }
+        results.addRow(rowName, row);
+      }
+      return new ResultsSnapshot(seriesKey, results);
+    } finally {
+      input.close();
+    }
+  }
+
+  private static List<String> readList(DataInputStream input) throws IOException {
+    int size = input.readInt();
+    List<String> values = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      values.add(input.readUTF());
+    }
+    return values;
+  }
+
+  /**
+   * Returns the number of bytes String.getBytes uses to encode a string as
+   * UTF-8, without encoding it.
+   */
+  static int getUtf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length += 1;  // Replaced by '?'.
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static long getStringSize(String value) {
+    return 4 + getUtf8Length(value);
+  }
+
+  private static long getDictionarySize(List<String> values, int size) {
+    long bytes = 4 + 4L * (size + 1);
+    for (int i = 0; i < size; i++) {
+      bytes += getUtf8Length(values.get(i));
+    }
+    return bytes;
+  }
+
+  private static void putString(FileChannel channel, ByteBuffer buffer, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    ensureRemaining(channel, buffer, 4);
+    buffer.putInt(bytes.length);
+    putBytes(channel, buffer, bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Puts the first size values as a dictionary.
+   */
+  private static void putDictionary(FileChannel channel, ByteBuffer buffer, List<String> values,
+      int size) throws IOException {
+    ensureRemaining(channel, buffer, 4);
+    buffer.putInt(size);
+    int offset = 0;
+    for (int i = 0; i < size; i++) {
+      ensureRemaining(channel, buffer, 4);
+      buffer.putInt(offset);
+      offset += getUtf8Length(values.get(i));
+    }
+    ensureRemaining(channel, buffer, 4);
+    buffer.putInt(offset);
+    for (int i = 0; i < size; i++) {
+      putBytes(channel, buffer, values.get(i).getBytes(UTF_8));
+    }
+  }
+
+  private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes)
+      throws IOException {
+    for (int start = 0; start < bytes.length;) {
+      ensureRemaining(channel, buffer, 1);
+      int length = Math.min(bytes.length - start, buffer.remaining());
+      buffer.put(bytes, start, length);
+      start += length;
+    }
+  }
+
+  private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes)
+      throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(channel, buffer);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * A read only list of the strings of a dictionary in a mapped file. Each
+   * string is decoded when it is read.
+   */
+  private static class Dictionary extends AbstractList<String> implements RandomAccess {
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int offsetsPosition;
+    private final int bytesPosition;
+
+    private Dictionary(ByteBuffer buffer, int size, int offsetsPosition) {
+      this.buffer = buffer;
+      this.size = size;
+      this.offsetsPosition = offsetsPosition;
+      bytesPosition = offsetsPosition + 4 * (size + 1);
+    }
+
+    /**
+     * Reads a dictionary at the position of a buffer and moves the position
+     * past it.
+     */
+    static Dictionary read(ByteBuffer buffer) {
+      int size = buffer.getInt();
+      if (size < 0) {
+        throw new IllegalStateException("Negative dictionary size: " + size);
+      }
+      Dictionary dictionary = new Dictionary(buffer, size, buffer.position());
+      buffer.position(dictionary.bytesPosition + buffer.getInt(dictionary.bytesPosition - 4));
+      return dictionary;
+    }
+
+    @Override
+    public String get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      int start = buffer.getInt(offsetsPosition + 4 * index);
+      byte[] bytes = new byte[buffer.getInt(offsetsPosition + 4 * index + 4) - start];
+      ByteBuffer view = buffer.duplicate();
+      view.position(bytesPosition + start);
+      view.get(bytes);
+      return new String(bytes, UTF_8);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.IOException;
+
+/**
+ * Compresses a series of daily values in the style of Facebook's Gorilla
+ * time series database. A row whose values are all whole numbers is stored
+ * as the delta of the deltas between consecutive values, which is 0 or
+ * small for series that change slowly. Any other row is stored as the XOR
+ * of each value with the one before it, which only needs the bits that
+ * changed. Each row starts with one bit for which encoding it uses and
+ * ends on a byte boundary.
+ */
+public final class SeriesCodec {
+
+  // Whole numbers below this are stored as deltas. Their deltas of deltas
+  // always fit in a long.
+  private static final double MAX_INTEGRAL = 1L << 52;
+
+  // The number of bits of each delta of deltas bucket, after its prefix of
+  // 1 bits ending in a 0 bit. The last bucket has no 0 bit.
+  private static final int[] DELTA_BITS = {0, 7, 9, 12, 32, 64};
+
+  private SeriesCodec() {
+  }
+
+  /**
+   * Encodes a row of values.
+   * @param values The values of the row.
+   * @param length The number of values to encode.
+   * @param output Where to write the encoded row.
+   * @throws IOException If the output can not be written.
+   */
+  public static void encode(double[] values, int length, BitOutput output) throws IOException {
+    boolean isIntegral = true;
+    for (int i = 0; isIntegral && i < length; i++) {
+      isIntegral = Math.abs(values[i]) < MAX_INTEGRAL && values[i] == Math.rint(values[i])
+          && Double.doubleToRawLongBits(values[i]) != Long.MIN_VALUE;  // Not -0.0.
+    }
+    output.writeBit(isIntegral);
+    if (isIntegral) {
+      encodeDeltas(values, length, output);
+    } else {
+      encodeXor(values, length, output);
+    }
+    output.align();
+  }
+
+  /**
+   * Decodes a row written by encode.
+   * @param input Where to read the encoded row.
+   * @param values The array to decode the values into.
+   * @param length The number of values that were encoded.
+   * @throws IOException If the input can not be read.
+   */
+  public static void decode(BitInput input, double[] values, int length) throws IOException {
+    if (input.readBit()) {
+      decodeDeltas(input, values, length);
+    } else {
+      decodeXor(input, values, length);
+    }
+    input.align();
+  }
+
+  private static void encodeDeltas(double[] values, int length, BitOutput output)
+      throws IOException {
+
+    long previous = 0;
+    long previousDelta = 0;
+    for (int i = 0; i < length; i++) {
+      long value = (long) values[i];
+      long delta = value - previous;
+      long deltaOfDelta = delta - previousDelta;
+      long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+
+      int bucket = 0;
+      while (bucket < DELTA_BITS.length - 1 && (zigzag >>> DELTA_BITS[bucket]) != 0) {
+        bucket++;
+      }
+      int last = DELTA_BITS.length - 1;
+      output.write((1L << bucket) - 1, bucket);
+      if (bucket < last) {
+        output.writeBit(false);
+      }
+      output.write(zigzag, DELTA_BITS[bucket]);
+
+      previous = value;
+      previousDelta = delta;
+    }
+  }
+
+  private static void decodeDeltas(BitInput input, double[] values, int length)
+      throws IOException {
+
+    long previous = 0;
+    long previousDelta = 0;
+    for (int i = 0; i < length; i++) {
+      int bucket = 0;
+      while (bucket < DELTA_BITS.length - 1 && input.readBit()) {
+        bucket++;
+      }
+      long zigzag = input.read(DELTA_BITS[bucket]);
+      long deltaOfDelta = (zigzag >>> 1) ^ -(zigzag & 1);
+
+      previousDelta += deltaOfDelta;
+      previous += previousDelta;
+      values[i] = previous;
+    }
+  }
+
+  private static void encodeXor(double[] values, int length, BitOutput output)
+      throws IOException {
+
+    long previous = 0;
+    int previousLeading = -1;
+    int previousTrailing = 0;
+    for (int i = 0; i < length; i++) {
+      long bits = Double.doubleToRawLongBits(values[i]);
+      long xor = bits ^ previous;
+      previous = bits;
+      if (xor == 0) {
+        output.writeBit(false);
+        continue;
+      }
+      output.writeBit(true);
+
+      int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      int trailing = Long.numberOfTrailingZeros(xor);
+      if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+        // The changed bits fit in the window of the previous value.
+        output.writeBit(false);
+        output.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+      } else {
+        int significant = 64 - leading - trailing;
+        output.writeBit(true);
+        output.write(leading, 5);
+        output.write(significant - 1, 6);
+        output.write(xor >>> trailing, significant);
+        previousLeading = leading;
+        previousTrailing = trailing;
+      }
+    }
+  }
+
+  private static void decodeXor(BitInput input, double[] values, int length)
+      throws IOException {
+
+    long previous = 0;
+    int previousLeading = 0;
+    int previousTrailing = 0;
+    for (int i = 0; i < length; i++) {
+      if (input.readBit()) {
+        if (input.readBit()) {
+          previousLeading = (int) input.read(5);
+          int significant = (int) input.read(6) + 1;
+          previousTrailing = 64 - previousLeading - significant;
+        }
+        int significant = 64 - previousLeading - previousTrailing;
+        previous ^= input.read(significant) << previousTrailing;
+      }
+      values[i] = Double.longBitsToDouble(previous);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls for the same key. The first caller for a key
+ * runs the call on its own thread. Callers that arrive while it is running
+ * wait for it and get the same value, or the same exception, instead of
+ * making the call again. Once the call completes the key is removed, so a
+ * later caller runs it again.
+ *
+ * Every method may be called from many threads at once.
+ * @param <V> The type of the values returned by calls.
+ */
+public class SingleFlight<V> {
+
+  private final ConcurrentMap<String, FutureTask<V>> inFlight =
+      new ConcurrentHashMap<String, FutureTask<V>>();
+  private final AtomicLong sharedCount = new AtomicLong();
+
+  /**
+   * Runs the call for a key, or waits for the call already running for it.
+   * @param key The key of the call.
+   * @param call The call to run if none is running for the key.
+   * @return The value returned by the call.
+   * @throws RuntimeException The exception thrown by the call.
+   */
+  public V execute(String key, Callable<V> call) {
+    FutureTask<V> task = new FutureTask<V>(call);
+    FutureTask<V> running = inFlight.putIfAbsent(key, task);
+    if (running != null) {
+      sharedCount.incrementAndGet();
+      task = running;
+    } else {
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(key, task);
+      }
+    }
+
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for " + key, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @return The number of calls which waited for a call already running
+   *     instead of running their own.
+   */
+  public long getSharedCount() {
+    return sharedCount.get();
+  }
+
+  /**
+   * @return The number of keys with a call running.
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,180 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parses the Atom XML of a Data Export API feed with StAX and pushes each
+ * entry into a FeedRowSink as it is read. No DataFeed, DataEntry, Dimension
+ * or Metric objects are created, and the stream can be parsed while it is
+ * still being read from the network.
+ *
+ * The ga:date dimension of each entry is parsed to an epoch day. The value
+ * of the other dimension is looked up in a DimensionDictionary. Metric
+ * values are parsed into a reused array of doubles.
+ *
+ * One parser may be used by many threads at once.
+ */
+public class StreamingFeedParser {
+
+  static final String DXP_NAMESPACE = "http://schemas.google.com/analytics/2009";
+  static final String DATE_DIMENSION = "ga:date";
+
+  private static final int MAX_METRICS = 10;
+
+  private final XMLInputFactory inputFactory;
+
+  /**
+   * Constructor.
+   */
+  public StreamingFeedParser() {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+  }
+
+  /**
+   * Parses a feed and adds each entry to the sink, then calls endFeed. If
+   * parsing fails, the entries read so far have already been added and
+   * endFeed is not called, so whatever the sink fills should be discarded.
+   * @param input The Atom XML of the feed. It is not closed.
+   * @param dictionary Gives the id of each dimension value.
+   * @param sink Receives each entry.
+   * @return The number of entries parsed.
+   * @throws IOException If the input can not be read.
+   * @throws IllegalArgumentException If the feed is not valid XML, or an
+   *     entry has no ga:date dimension or has a value that can not be
+   *     parsed.
+   */
+  public int parse(InputStream input, DimensionDictionary dictionary, FeedRowSink sink)
+      throws IOException {
+    double[] metricValues = new double[MAX_METRICS];  // Reused for every entry.
+    int numEntries = 0;
+    ReadErrorInputStream recordingInput = new ReadErrorInputStream(input);
+    XMLStreamReader reader = null;
+    try {
+      synchronized (inputFactory) {
+        reader = inputFactory.createXMLStreamReader(recordingInput);
+      }
+
+      boolean inEntry = false;
+      int valueId = -1;
+      int epochDay = Integer.MIN_VALUE;
+      int numMetrics = 0;
+      double confidenceInterval = 0;
+
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          String name = reader.getLocalName();
+          if (name.equals("entry")) {
+            inEntry = true;
+            valueId = -1;
+            epochDay = Integer.MIN_VALUE;
+            numMetrics = 0;
+            confidenceInterval = 0;
+
+          } else if (inEntry && DXP_NAMESPACE.equals(reader.getNamespaceURI())) {
+            if (name.equals("dimension")) {
+              String value = reader.getAttributeValue(null, "value");
+              if (DATE_DIMENSION.equals(reader.getAttributeValue(null, "name"))) {
+                epochDay = EpochDay.parse(value);
+              } else if (valueId < 0) {
+                valueId = dictionary.getId(value);
+              }
+
+            } else if (name.equals("metric")) {
+              if (numMetrics == metricValues.length) {
+                throw new IllegalArgumentException("Too many metrics in entry");
+              }
+              metricValues[numMetrics++] =
+                  Double.parseDouble(reader.getAttributeValue(null, "value"));
+              String interval = reader.getAttributeValue(null, "confidenceInterval");
+              if (interval != null) {
+                confidenceInterval = Math.max(confidenceInterval, Double.parseDouble(interval));
+              }
+            }
+          }
+
+        } else if (event == XMLStreamConstants.END_ELEMENT && inEntry
+            && reader.getLocalName().equals("entry")) {
+          if (epochDay == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Entry has no " + DATE_DIMENSION + " dimension");
+          }
+          sink.addEntry(valueId, epochDay, metricValues, numMetrics, confidenceInterval);
+          numEntries++;
+          inEntry = false;
+        }
+      }
+      sink.endFeed();
+      return numEntries;
+
+    } catch (XMLStreamException e) {
+      // StAX wraps errors reading the input, which are not a bad feed.
+      if (recordingInput.readError != null) {
+        throw recordingInput.readError;
+      }
+      throw new IllegalArgumentException("Invalid feed: " + e.getMessage(), e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // The feed has already been read.
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps the last error thrown while reading the input, so it can be told
+   * apart from an error in the XML.
+   */
+  private static class ReadErrorInputStream extends FilterInputStream {
+    IOException readError;
+
+    ReadErrorInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (IOException e) {
+        readError = e;
+        throw e;
+      }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      try {
+        return super.read(buffer, offset, length);
+      } catch (IOException e) {
+        readError = e;
+        throw e;
+      }
+    }
+  }
+}
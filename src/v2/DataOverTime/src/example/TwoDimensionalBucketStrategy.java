@@ -0,0 +1,96 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Implements the BucketStrategy interface by filling one bucket at a time
+ * on both of its limits. Each bucket is filled with the largest remaining
+ * filter that still leaves room for the bucket's remaining slots to be
+ * filled with the smallest remaining filters. When the character budget is
+ * the tighter limit this fills each bucket's characters as much as possible.
+ * When the filter count is the tighter limit, large filters are mixed with
+ * small ones so every bucket uses all of its slots.
+ *
+ * The remaining rows are kept in a tree keyed on encoded size, so packing
+ * n filters takes O(n log n) time.
+ */
+public class TwoDimensionalBucketStrategy implements BucketStrategy {
+
+  /**
+   * Returns a list of buckets filled on both the character and filter count
+   * limits.
+   */
+  @Override
+  public List<Bucket> getBuckets(FilterTable filterTable, int filterMaxCharLength,
+      int filterMaxListSize) {
+
+    List<Bucket> buckets = new ArrayList<Bucket>();
+    if (filterTable == null || filterTable.size() < 1) {
+      return buckets;
+    }
+
+    // Rows with the same size are next to each other in the table. Each
+    // entry holds the next unused row and the end of the run for one size.
+    TreeMap<Integer, int[]> rowsBySize = new TreeMap<Integer, int[]>();
+    int start = 0;
+    for (int row = 1; row <= filterTable.size(); row++) {
+      if (row == filterTable.size()
+          || filterTable.getEncodedSize(row) != filterTable.getEncodedSize(start)) {
+        rowsBySize.put(filterTable.getEncodedSize(start), new int[] {start, row});
+        start = row;
+      }
+    }
+
+    int remainingFilters = filterTable.size();
+    int operatorSize = Filter.getOperatorSize();
+
+    while (remainingFilters > 0) {
+      Bucket bucket = new Bucket(filterTable, filterMaxCharLength, filterMaxListSize);
+
+      while (remainingFilters > 0) {
+        int capacity = bucket.getRemainingCapacity();
+        int minSize = rowsBySize.firstKey();
+        if (capacity < minSize) {
+          break;
+        }
+
+        // Leave room to fill the other slots with the smallest filters.
+        int otherSlots = Math.min(filterMaxListSize - bucket.getNumFilters(),
+            remainingFilters) - 1;
+        int limit = capacity - otherSlots * (minSize + operatorSize);
+        if (limit < minSize) {
+          limit = capacity;
+        }
+
+        Integer size = rowsBySize.floorKey(limit);
+        int[] rows = rowsBySize.get(size);
+        bucket.add(rows[0]++);
+        if (rows[0] == rows[1]) {
+          rowsBySize.remove(size);
+        }
+        remainingFilters--;
+      }
+
+      if (bucket.getNumFilters() == 0) {
+        // Only possible if a bucket can not hold any filter.
+        break;
+      }
+      buckets.add(bucket);
+    }
+    return buckets;
+  }
+}
@@ -51,6 +51,29 @@ public class AllTests {
     suite.addTestSuite(TestFilter.class);
     suite.addTestSuite(TestDataQueryUtil.class);
     suite.addTestSuite(TestBucketManager.class);
+    suite.addTestSuite(TestParallelQueryExecutor.class);
+    suite.addTestSuite(TestQueryPlan.class);
+    suite.addTestSuite(TestCachingQueryManager.class);
+    suite.addTestSuite(TestBucketIndex.class);
+    suite.addTestSuite(TestTwoDimensionalBucketStrategy.class);
+    suite.addTestSuite(TestBucketReport.class);
+    suite.addTestSuite(TestFilterTable.class);
+    suite.addTestSuite(TestFeedCache.class);
+    suite.addTestSuite(TestEpochDay.class);
+    suite.addTestSuite(TestDailyValueCache.class);
+    suite.addTestSuite(TestResultsSnapshot.class);
+    suite.addTestSuite(TestHybridCellMatrix.class);
+    suite.addTestSuite(TestMappedResults.class);
+    suite.addTestSuite(TestCsvWriter.class);
+    suite.addTestSuite(TestParallelCsvWriter.class);
+    suite.addTestSuite(TestSeriesCodec.class);
+    suite.addTestSuite(TestDimensionDictionary.class);
+    suite.addTestSuite(TestDateRange.class);
+    suite.addTestSuite(TestRequestScheduler.class);
+    suite.addTestSuite(TestAdaptiveConcurrencyLimiter.class);
+    suite.addTestSuite(TestRequestHedger.class);
+    suite.addTestSuite(TestSingleFlight.class);
+    suite.addTestSuite(TestStreamingFeedParser.class);
 
     return suite;
   }
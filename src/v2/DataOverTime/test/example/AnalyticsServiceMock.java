@@ -113,6 +113,41 @@ public class AnalyticsServiceMock extends AnalyticsService {
     return getDataFeed(dimensions, metrics);
   }
 
+  /**
+   * Returns the Atom XML of a feed with the data set, as it would be sent by
+   * the API. The dimension names must be set.
+   * @param dimensionNames The names of all the dimensions.
+   * @param dimensions NxM array of dimension values, where [0][i] and [1][i]
+   *     will be in the same entry.
+   * @param metrics NxM array of metric values, where [0][i] and [1][i]
+   *     will be in the same entry.
+   * @return The XML of the feed.
+   */
+  public String getFeedXml(String[] dimensionNames, String[][] dimensions, String[][] metrics) {
+    StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>"
+        + "<feed xmlns='http://www.w3.org/2005/Atom'"
+        + " xmlns:dxp='http://schemas.google.com/analytics/2009'>");
+    for (int entryIndex = 0; entryIndex < metrics[0].length; entryIndex++) {
+      xml.append("<entry>");
+      for (int dimensionIndex = 0; dimensionIndex < dimensions.length; dimensionIndex++) {
+        xml.append("<dxp:dimension name='").append(dimensionNames[dimensionIndex])
+            .append("' value='").append(escape(dimensions[dimensionIndex][entryIndex]))
+            .append("'/>");
+      }
+      for (int metricIndex = 0; metricIndex < metrics.length; metricIndex++) {
+        xml.append("<dxp:metric confidenceInterval='").append(confidenceInterval)
+            .append("' name='ga:visits' type='integer' value='")
+            .append(metrics[metricIndex][entryIndex]).append("'/>");
+      }
+      xml.append("</entry>");
+    }
+    return xml.append("</feed>").toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace("'", "&apos;");
+  }
+
   /**
    * Main method to return a Data Feed object. This overrides the
    * Analytics Service implementation.
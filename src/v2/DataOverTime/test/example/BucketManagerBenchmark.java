@@ -0,0 +1,163 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the planning time and number of buckets of the indexed
+ * BucketManager against checking every existing bucket for every filter.
+ * Synthetic ga:pagePath values are used. Run with --all to also run the
+ * linear algorithm on one million values, which takes a very long time.
+ * A BucketReport for each BucketStrategy is also printed for 30 and 365
+ * day date ranges, followed by the heap used by a list of Filter objects
+ * and by a FilterTable for one million values.
+ */
+public class BucketManagerBenchmark {
+
+  private static final String DIMENSION_NAME = "ga:pagePath";
+  private static final int[] SIZES = {10000, 100000, 1000000};
+  private static final int MAX_LINEAR_SIZE = 100000;
+
+  // Typical limits for a 30 day query.
+  private static final int FILTER_MAX_CHAR_LENGTH = 1700;
+  private static final int FILTER_MAX_LIST_SIZE = QueryManagerGroupImpl.MAX_RESULTS / 30;
+
+  /**
+   * Benchmark entry point.
+   * @param args Pass --all to run the linear algorithm on every size.
+   */
+  public static void main(String args[]) {
+    boolean runAll = args.length > 0 && args[0].equals("--all");
+    BucketManager bucketManager = new BucketManager();
+
+    System.out.println("values,algorithm,millis,buckets");
+    for (int size : SIZES) {
+      List<String> values = getValues(size, new Random(size));
+
+      // Warm up.
+      bucketManager.getBucketsOfFilters(DIMENSION_NAME, values,
+          FILTER_MAX_CHAR_LENGTH, FILTER_MAX_LIST_SIZE);
+
+      long start = System.nanoTime();
+      List<Bucket> buckets = bucketManager.getBucketsOfFilters(DIMENSION_NAME, values,
+          FILTER_MAX_CHAR_LENGTH, FILTER_MAX_LIST_SIZE);
+      print(size, "indexed", start, buckets.size());
+
+      if (runAll || size <= MAX_LINEAR_SIZE) {
+        start = System.nanoTime();
+        buckets = getBucketsLinear(bucketManager, values);
+        print(size, "linear", start, buckets.size());
+      }
+    }
+
+    List<String> values = getValues(SIZES[1], new Random(SIZES[1]));
+    for (int numDays : new int[] {30, 365}) {
+      int filterMaxListSize = QueryManagerGroupImpl.MAX_RESULTS / numDays;
+      for (BucketStrategy strategy : new BucketStrategy[] {
+          new FirstFitDecreasingStrategy(), new TwoDimensionalBucketStrategy()}) {
+        List<Bucket> buckets = new BucketManager(strategy).getBucketsOfFilters(DIMENSION_NAME,
+            values, FILTER_MAX_CHAR_LENGTH, filterMaxListSize);
+        System.out.println(numDays + " days, " + new BucketReport(
+            strategy.getClass().getSimpleName(), buckets, FILTER_MAX_CHAR_LENGTH,
+            filterMaxListSize));
+      }
+    }
+
+    values = getValues(SIZES[2], new Random(SIZES[2]));
+    System.out.println("values,representation,retainedBytes");
+    long before = getUsedMemory();
+    List<Filter> filters =
+        bucketManager.getFiltersOrderedBySize(DIMENSION_NAME, values, FILTER_MAX_CHAR_LENGTH);
+    System.out.println(values.size() + ",filters," + (getUsedMemory() - before));
+    filters = null;
+
+    before = getUsedMemory();
+    FilterTable table =
+        bucketManager.getFilterTable(DIMENSION_NAME, values, FILTER_MAX_CHAR_LENGTH);
+    System.out.println(values.size() + ",table," + (getUsedMemory() - before));
+    if (table.size() != values.size()) {
+      throw new IllegalStateException("Filters were dropped");
+    }
+  }
+
+  /**
+   * @return The heap used after a garbage collection.
+   */
+  private static long getUsedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Packs the filters by checking every existing bucket for every filter.
+   * This is the algorithm BucketManager used before it was indexed.
+   * @param bucketManager Used to create the sorted list of filters.
+   * @param values The dimension values.
+   * @return A list of buckets.
+   */
+  static List<Bucket> getBucketsLinear(BucketManager bucketManager, List<String> values) {
+    List<Bucket> buckets = new ArrayList<Bucket>();
+    for (Filter filter : bucketManager.getFiltersOrderedBySize(DIMENSION_NAME, values,
+        FILTER_MAX_CHAR_LENGTH)) {
+      boolean added = false;
+      for (Bucket bucket : buckets) {
+        if (bucket.add(filter)) {
+          added = true;
+          break;
+        }
+      }
+      if (!added) {
+        buckets.add(new Bucket(FILTER_MAX_CHAR_LENGTH, FILTER_MAX_LIST_SIZE, filter));
+      }
+    }
+    return buckets;
+  }
+
+  /**
+   * Returns a list of random page paths of varying length.
+   * @param size The number of values to return.
+   * @param random The source of randomness.
+   * @return A list of page paths.
+   */
+  static List<String> getValues(int size, Random random) {
+    List<String> values = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      StringBuilder value = new StringBuilder("/");
+      int segments = 1 + random.nextInt(4);
+      for (int j = 0; j < segments; j++) {
+        int length = 2 + random.nextInt(12);
+        for (int k = 0; k < length; k++) {
+          value.append((char) ('a' + random.nextInt(26)));
+        }
+        value.append('/');
+      }
+      if (random.nextInt(4) == 0) {
+        value.append("?id=").append(i);
+      }
+      values.add(value.toString());
+    }
+    return values;
+  }
+
+  private static void print(int size, String algorithm, long startNanos, int numBuckets) {
+    long millis = (System.nanoTime() - startNanos) / 1000000;
+    System.out.println(size + "," + algorithm + "," + millis + "," + numBuckets);
+  }
+}
@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the time to write a table of about 10 million cells as CSV with
+ * the MessageFormat and PrintStream code printCsvToFile used before, with
+ * CsvWriter and with ParallelCsvWriter. Each is run a few times and the
+ * fastest time is printed.
+ */
+public class CsvBenchmark {
+
+  private static final int NUM_ROWS = 27398;
+  private static final int RUNS = 3;
+
+  /**
+   * Benchmark entry point.
+   * @param args Not used.
+   * @throws IOException If the temporary file can not be written.
+   */
+  public static void main(String args[]) throws IOException {
+    List<String> dimensionValues = new ArrayList<String>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      dimensionValues.add("/page" + i);
+    }
+    Results results = ResultsBenchmark.getResults(dimensionValues);
+    long numCells = (long) results.getNumTableRows() * results.getNumCols();
+    File file = File.createTempFile("csvbenchmark", ".csv");
+
+    try {
+      System.out.println("cells,writer,millis,bytes");
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; i++) {
+        long start = System.nanoTime();
+        PrintStream output = new PrintStream(new FileOutputStream(file));
+        outputCsvMessageFormat(results, output);
+        output.close();
+        best = Math.min(best, System.nanoTime() - start);
+      }
+      System.out.println(numCells + ",messageFormat," + best / 1000000 + "," + file.length());
+
+      best = Long.MAX_VALUE;
+      CsvWriter writer = new CsvWriter();
+      for (int i = 0; i < RUNS; i++) {
+        long start = System.nanoTime();
+        writer.write(results, file);
+        best = Math.min(best, System.nanoTime() - start);
+      }
+      System.out.println(numCells + ",csvWriter," + best / 1000000 + "," + file.length());
+
+      best = Long.MAX_VALUE;
+      ForkJoinPool pool = new ForkJoinPool();
+      try {
+        ParallelCsvWriter parallelWriter = new ParallelCsvWriter(pool);
+        for (int i = 0; i < RUNS; i++) {
+          long start = System.nanoTime();
+          parallelWriter.write(results, file);
+          best = Math.min(best, System.nanoTime() - start);
+        }
+      } finally {
+        pool.shutdown();
+      }
+      System.out.println(numCells + ",parallelCsvWriter," + best / 1000000 + ","
+          + file.length());
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Prints the table the way Results.outputCsv did before CsvWriter.
+   */
+  static void outputCsvMessageFormat(Results results, PrintStream output) {
+    Double total = 0.0;
+    if (results.getIsSampled()) {
+      output.println("These results are based on sampled data");
+    }
+    output.print(results.getDimensionName());
+    for (String colName : results.getColNames()) {
+      output.print(MessageFormat.format(",{0}", colName));
+    }
+    output.print(",Total\n");
+
+    List<List<Double>> table = results.getTable();
+    for (int i = 0; i < table.size(); i++) {
+      output.print(results.getRowNames().get(i));
+      for (Double value : table.get(i)) {
+        total += value;
+        output.print(MessageFormat.format(",{0}", value.toString()));
+      }
+      output.print(MessageFormat.format(",{0}\n", total.toString()));
+      total = 0.0;
+    }
+  }
+}
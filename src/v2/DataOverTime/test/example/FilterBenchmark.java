@@ -0,0 +1,112 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.util.common.base.CharEscapers;
+
+import java.lang.management.ManagementFactory;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the time and bytes allocated to compute the encoded size of
+ * every filter when the expression is built and escaped, as Filter used
+ * to, against Filter.getEncodedEqualityFilterSize. Allocated bytes are
+ * only reported on JVMs that support thread allocation counters.
+ */
+public class FilterBenchmark {
+
+  private static final String DIMENSION_NAME = "ga:pagePath";
+  private static final int NUM_VALUES = 100000;
+  private static final int ITERATIONS = 10;
+
+  /**
+   * Benchmark entry point.
+   * @param args Not used.
+   */
+  public static void main(String args[]) {
+    List<String> values = BucketManagerBenchmark.getValues(NUM_VALUES, new Random(NUM_VALUES));
+
+    // Warm up.
+    long check = runEscaped(values) - runCounted(values);
+    if (check != 0) {
+      throw new IllegalStateException("Encoded sizes differ by " + check);
+    }
+
+    System.out.println("algorithm,millis,bytesPerFilter");
+    for (int i = 0; i < 2; i++) {
+      long bytes = getAllocatedBytes();
+      long start = System.nanoTime();
+      for (int j = 0; j < ITERATIONS; j++) {
+        runEscaped(values);
+      }
+      print("escaped", start, bytes);
+
+      bytes = getAllocatedBytes();
+      start = System.nanoTime();
+      for (int j = 0; j < ITERATIONS; j++) {
+        runCounted(values);
+      }
+      print("counted", start, bytes);
+    }
+  }
+
+  /**
+   * Builds and escapes every filter expression.
+   * @param values The dimension values.
+   * @return The sum of the encoded sizes.
+   */
+  static long runEscaped(List<String> values) {
+    long total = 0;
+    for (String value : values) {
+      String expression = MessageFormat.format("{0}=={1}", DIMENSION_NAME,
+          Filter.escapeValue(value));
+      total += CharEscapers.uriEscaper().escape(expression).length();
+    }
+    return total;
+  }
+
+  /**
+   * Counts the encoded size of every filter without building strings.
+   * @param values The dimension values.
+   * @return The sum of the encoded sizes.
+   */
+  static long runCounted(List<String> values) {
+    long total = 0;
+    for (String value : values) {
+      total += Filter.getEncodedEqualityFilterSize(DIMENSION_NAME, value);
+    }
+    return total;
+  }
+
+  /**
+   * @return The bytes allocated by this thread, or -1 if not supported.
+   */
+  private static long getAllocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+          Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  private static void print(String algorithm, long startNanos, long startBytes) {
+    long millis = (System.nanoTime() - startNanos) / 1000000;
+    long bytes = startBytes < 0 ? -1
+        : (getAllocatedBytes() - startBytes) / ((long) NUM_VALUES * ITERATIONS);
+    System.out.println(algorithm + "," + millis + "," + bytes);
+  }
+}
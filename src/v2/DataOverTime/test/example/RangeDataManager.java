@@ -0,0 +1,99 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+import com.google.gdata.data.analytics.DataEntry;
+import com.google.gdata.data.analytics.DataFeed;
+import com.google.gdata.data.analytics.Dimension;
+import com.google.gdata.data.analytics.Metric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mock of a Data Manager that returns a feed with a value for each filtered
+ * dimension value and each day of the query. Days that are a multiple of 4
+ * have no data. The number of days requested is counted.
+ */
+public class RangeDataManager extends DataManager {
+
+  private List<String> dimensionValues;
+  int requestedDays = 0;
+
+  /**
+   * Constructor.
+   * @param dimensionValues The dimension values returned for every query.
+   */
+  public RangeDataManager(List<String> dimensionValues) {
+    super(null);
+    this.dimensionValues = dimensionValues;
+  }
+
+  /**
+   * Sets the dimension values returned for every query.
+   * @param dimensionValues List of strings containing dimension values.
+   */
+  public void setDimensionValues(List<String> dimensionValues) {
+    this.dimensionValues = dimensionValues;
+  }
+
+  /**
+   * Returns the value of a dimension value on an epoch day.
+   * @param dimensionValue The dimension value.
+   * @param day The epoch day.
+   * @return The metric value.
+   */
+  public static double getValue(String dimensionValue, int day) {
+    return day % 4 == 0 ? 0 : dimensionValue.charAt(0) * 1000 + day % 1000;
+  }
+
+  @Override
+  public List<String> getDimensionValues(DataQuery dataQuery) {
+    return dimensionValues;
+  }
+
+  @Override
+  public DataFeed getFeed(DataQuery dataQuery) {
+    int startDay = EpochDay.parse(dataQuery.getStartDate());
+    int endDay = EpochDay.parse(dataQuery.getEndDate());
+    List<DataEntry> entries = new ArrayList<DataEntry>();
+    for (String filter : dataQuery.getFilters().split(",")) {
+      String value = filter.substring(filter.indexOf("==") + 2);
+      for (int day = startDay; day <= endDay; day++) {
+        requestedDays++;
+        if (getValue(value, day) == 0) {
+          continue;
+        }
+        DataEntry entry = new DataEntry();
+        entry.addDimension(getDimension("ga:source", value));
+        entry.addDimension(getDimension("ga:date", EpochDay.toResultDate(day)));
+        Metric metric = new Metric();
+        metric.setValue(Integer.toString((int) getValue(value, day)));
+        entry.addMetric(metric);
+        entries.add(entry);
+      }
+    }
+    DataFeed feed = new DataFeed();
+    feed.setEntries(entries);
+    return feed;
+  }
+
+  private static Dimension getDimension(String name, String value) {
+    Dimension dimension = new Dimension();
+    dimension.setName(name);
+    dimension.setValue(value);
+    return dimension;
+  }
+}
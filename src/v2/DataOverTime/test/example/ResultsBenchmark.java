@@ -0,0 +1,142 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the heap used by a table of 50 thousand dimension values over
+ * 365 days stored as lists of boxed Doubles and stored in a Results object.
+ * Then compares a DenseCellMatrix and a HybridCellMatrix for a long tail
+ * table, where one row in ten has data every day and the rest only have
+ * data on a few days. Run it with a large heap, for example -Xmx2g.
+ */
+public class ResultsBenchmark {
+
+  private static final int NUM_ROWS = 50000;
+  private static final int NUM_DAYS = 365;
+
+  /**
+   * Benchmark entry point.
+   * @param args Not used.
+   */
+  public static void main(String args[]) {
+    List<String> dimensionValues = new ArrayList<String>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      dimensionValues.add("/page" + i);
+    }
+
+    System.out.println("rows,days,representation,retainedBytes");
+    long before = getUsedMemory();
+    List<List<Double>> table = new ArrayList<List<Double>>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      List<Double> row = new ArrayList<Double>(NUM_DAYS);
+      for (int day = 0; day < NUM_DAYS; day++) {
+        row.add(new Double(getValue(i, day)));
+      }
+      table.add(row);
+    }
+    print("boxed", getUsedMemory() - before);
+    table = null;
+
+    before = getUsedMemory();
+    Results results = getResults(dimensionValues);
+    print("matrix", getUsedMemory() - before);
+    if (results.getNumTableRows() != NUM_ROWS) {
+      throw new IllegalStateException("Rows were dropped");
+    }
+    results = null;
+
+    before = getUsedMemory();
+    CellMatrix matrix = fillLongTail(new DenseCellMatrix(NUM_DAYS, NUM_ROWS));
+    print("longTailDense", getUsedMemory() - before);
+    matrix = null;
+
+    before = getUsedMemory();
+    matrix = fillLongTail(new HybridCellMatrix(NUM_DAYS, NUM_ROWS));
+    print("longTailHybrid", getUsedMemory() - before);
+    if (matrix.getNumRows() != NUM_ROWS) {
+      throw new IllegalStateException("Rows were dropped");
+    }
+  }
+
+  /**
+   * Adds NUM_ROWS rows to a matrix. Every tenth row has a value every day,
+   * the others have a value on 5 random days.
+   * @param matrix The matrix to fill.
+   * @return The matrix.
+   */
+  static CellMatrix fillLongTail(CellMatrix matrix) {
+    Random random = new Random(NUM_ROWS);
+    double[] row = new double[NUM_DAYS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Arrays.fill(row, 0.0);
+      if (i % 10 == 0) {
+        for (int day = 0; day < NUM_DAYS; day++) {
+          row[day] = getValue(i, day) + 1;
+        }
+      } else {
+        for (int j = 0; j < 5; j++) {
+          row[random.nextInt(NUM_DAYS)] = 1 + random.nextInt(10);
+        }
+      }
+      matrix.addRow(row);
+    }
+    return matrix;
+  }
+
+  /**
+   * Returns a Results object filled with NUM_ROWS rows of NUM_DAYS values.
+   * @param dimensionValues The row names.
+   * @return A filled Results object.
+   */
+  static Results getResults(List<String> dimensionValues) {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setEndDate(EpochDay.toQueryDate(EpochDay.parse("2010-01-01") + NUM_DAYS - 1));
+    Results results = new Results();
+    results.initTable(dataQuery, dimensionValues);
+    double[] row = new double[NUM_DAYS];
+    for (int i = 0; i < dimensionValues.size(); i++) {
+      for (int day = 0; day < NUM_DAYS; day++) {
+        row[day] = getValue(i, day);
+      }
+      results.addRow(dimensionValues.get(i), row);
+    }
+    return results;
+  }
+
+  private static double getValue(int row, int day) {
+    return (row * 31 + day) % 1000;
+  }
+
+  /**
+   * @return The heap used after a garbage collection.
+   */
+  private static long getUsedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void print(String representation, long bytes) {
+    System.out.println(NUM_ROWS + "," + NUM_DAYS + "," + representation + "," + bytes);
+  }
+}
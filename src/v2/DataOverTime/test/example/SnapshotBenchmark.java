@@ -0,0 +1,157 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the size and the time to load a table of 50 thousand dimension
+ * values over 365 days from its CSV file, from a ResultsSnapshot, which
+ * memory maps the table, and from a compressed ResultsSnapshot. Each load
+ * is followed by a sum of every value so the mapped rows are actually read.
+ * One row in ten changes slowly every day and the rest only have data on a
+ * few days, like a long tail report.
+ */
+public class SnapshotBenchmark {
+
+  private static final int NUM_ROWS = 50000;
+  private static final int NUM_DAYS = 365;
+
+  /**
+   * Benchmark entry point.
+   * @param args Not used.
+   * @throws IOException If the temporary files can not be written.
+   */
+  public static void main(String args[]) throws IOException {
+    List<String> dimensionValues = new ArrayList<String>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      dimensionValues.add("/page" + i);
+    }
+    Results results = getResults(dimensionValues);
+    File csvFile = File.createTempFile("snapshotbenchmark", ".csv");
+    File snapshotFile = File.createTempFile("snapshotbenchmark", ".snapshot");
+    File compressedFile = File.createTempFile("snapshotbenchmark", ".snapshot");
+
+    try {
+      results.writeCsv(csvFile);
+      new ResultsSnapshot("key", results).write(snapshotFile);
+      new ResultsSnapshot("key", results).writeCompressed(compressedFile);
+      results = null;
+
+      System.out.println("format,bytes,loadMillis,sumMillis,sum");
+      long start = System.nanoTime();
+      List<double[]> rows = parseCsv(csvFile);
+      long loaded = System.nanoTime();
+      double sum = 0;
+      for (double[] row : rows) {
+        for (double value : row) {
+          sum += value;
+        }
+      }
+      print("csv", csvFile.length(), start, loaded, sum);
+
+      for (File file : new File[] {snapshotFile, compressedFile}) {
+        start = System.nanoTime();
+        Results snapshot = ResultsSnapshot.read(file).getResults();
+        loaded = System.nanoTime();
+        print(file == snapshotFile ? "snapshot" : "compressed", file.length(), start, loaded,
+            sum(snapshot.getCellMatrix()));
+      }
+    } finally {
+      csvFile.delete();
+      snapshotFile.delete();
+      compressedFile.delete();
+    }
+  }
+
+  /**
+   * Returns a long tail table of whole numbers.
+   */
+  static Results getResults(List<String> dimensionValues) {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setEndDate(EpochDay.toQueryDate(EpochDay.parse("2010-01-01") + NUM_DAYS - 1));
+    Results results = new Results();
+    results.initTable(dataQuery, dimensionValues);
+    Random random = new Random(dimensionValues.size());
+    double[] row = new double[NUM_DAYS];
+    for (int i = 0; i < dimensionValues.size(); i++) {
+      Arrays.fill(row, 0.0);
+      if (i % 10 == 0) {
+        double value = 100 + random.nextInt(10000);
+        for (int day = 0; day < NUM_DAYS; day++) {
+          value = Math.max(value + random.nextInt(21) - 10, 0);
+          row[day] = value;
+        }
+      } else {
+        for (int j = 0; j < 5; j++) {
+          row[random.nextInt(NUM_DAYS)] = 1 + random.nextInt(10);
+        }
+      }
+      results.addRow(dimensionValues.get(i), row);
+    }
+    return results;
+  }
+
+  private static double sum(CellMatrix cells) {
+    double[] row = new double[cells.getNumCols()];
+    double sum = 0;
+    for (int i = 0; i < cells.getNumRows(); i++) {
+      cells.getRow(i, row);
+      for (double value : row) {
+        sum += value;
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Parses the values of a CSV file written by CsvWriter, without the
+   * totals.
+   */
+  private static List<double[]> parseCsv(File file) throws IOException {
+    List<double[]> rows = new ArrayList<double[]>();
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      reader.readLine();  // Header.
+      for (String line; (line = reader.readLine()) != null;) {
+        String[] fields = line.split(",");
+        double[] row = new double[fields.length - 2];
+        for (int i = 0; i < row.length; i++) {
+          row[i] = Double.parseDouble(fields[i + 1]);
+        }
+        rows.add(row);
+      }
+    } finally {
+      reader.close();
+    }
+    return rows;
+  }
+
+  private static void print(String format, long bytes, long start, long loaded, double sum) {
+    long end = System.nanoTime();
+    System.out.println(format + "," + bytes + "," + (loaded - start) / 1000000 + ","
+        + (end - loaded) / 1000000 + "," + (long) sum);
+  }
+}
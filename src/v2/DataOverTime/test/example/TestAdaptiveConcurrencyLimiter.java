@@ -0,0 +1,144 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+/**
+ * Test suite for AdaptiveConcurrencyLimiter. Extends testCase.
+ */
+public class TestAdaptiveConcurrencyLimiter extends TestCase {
+
+  private static final long MILLIS = 1000000;
+
+  private FakeClockLimiter limiter;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    limiter = new FakeClockLimiter(4, 1, 8);
+  }
+
+  /**
+   * Tests the limit grows by about one after a limit's worth of fast
+   * requests, up to the maximum.
+   */
+  public void testRelease_grows() throws InterruptedException {
+    for (int i = 0; i < 5; i++) {
+      complete(100, false);
+    }
+    assertEquals(5, limiter.getLimit());
+    assertEquals(100 * MILLIS, limiter.getUsualLatencyNanos());
+
+    for (int i = 0; i < 100; i++) {
+      complete(100, false);
+    }
+    assertEquals(8, limiter.getLimit());
+  }
+
+  /**
+   * Tests the limit is cut on errors and on slow requests, but not below
+   * the minimum.
+   */
+  public void testRelease_cuts() throws InterruptedException {
+    complete(100, false);
+    complete(100, true);
+    assertEquals(3, limiter.getLimit());
+
+    complete(300, false);
+    assertEquals(2, limiter.getLimit());
+
+    for (int i = 0; i < 10; i++) {
+      complete(100, true);
+    }
+    assertEquals(1, limiter.getLimit());
+  }
+
+  /**
+   * Tests requests in flight when the limit is cut do not cut it again.
+   */
+  public void testRelease_cutsOncePerBurst() throws InterruptedException {
+    long first = limiter.acquire();
+    long second = limiter.acquire();
+    limiter.now += 100 * MILLIS;
+    limiter.release(first, true);
+    limiter.release(second, true);
+    assertEquals(3, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  /**
+   * Tests callers wait for a slot and are counted in the queue depth.
+   */
+  public void testAcquire_waits() throws InterruptedException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+    long start = limiter.acquire();
+    Thread waiting = new Thread() {
+      @Override
+      public void run() {
+        try {
+          limiter.release(limiter.acquire(), false);
+        } catch (InterruptedException e) {
+          // The test failed.
+        }
+      }
+    };
+    waiting.start();
+    while (limiter.getQueueDepth() == 0) {
+      Thread.sleep(1);
+    }
+    assertEquals(1, limiter.getInFlight());
+
+    limiter.release(start, false);
+    waiting.join(10000);
+    assertFalse(waiting.isAlive());
+    assertEquals(0, limiter.getQueueDepth());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  /**
+   * Tests that bad limits are rejected.
+   */
+  public void testConstructor_badLimits() {
+    try {
+      new AdaptiveConcurrencyLimiter(5, 1, 4);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  private void complete(long latencyMillis, boolean failed) throws InterruptedException {
+    long start = limiter.acquire();
+    limiter.now += latencyMillis * MILLIS;
+    limiter.release(start, failed);
+  }
+
+  /**
+   * A limiter whose clock is set by the test.
+   */
+  private static class FakeClockLimiter extends AdaptiveConcurrencyLimiter {
+    long now;
+
+    FakeClockLimiter(int initialLimit, int minLimit, int maxLimit) {
+      super(initialLimit, minLimit, maxLimit);
+    }
+
+    @Override
+    protected long nanoTime() {
+      return now;
+    }
+  }
+}
@@ -56,6 +56,22 @@ public class TestBucket extends TestCase {
     assertFalse(bucket.canAdd(filter));
   }
 
+  /**
+   * Tests that the remaining capacity accounts for operators and the
+   * filter list size.
+   */
+  public void testGetRemainingCapacity() {
+    Bucket bucket = new Bucket(100, 2);
+    assertEquals(100, bucket.getRemainingCapacity());
+
+    bucket.add(filter);
+    assertEquals(100 - filter.getEncodedSize() - Filter.getOperatorSize(),
+        bucket.getRemainingCapacity());
+
+    bucket.add(filter);
+    assertEquals(Integer.MIN_VALUE, bucket.getRemainingCapacity());
+  }
+
   /**
    * Tests not exceeding max filter char length.
    */
@@ -0,0 +1,60 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import junit.framework.TestCase;
+
+/**
+ * Test suite for BucketIndex. Extends TestCase.
+ */
+public class TestBucketIndex extends TestCase {
+
+  /**
+   * Tests that no bucket is found in an empty index.
+   */
+  public void testFindFirst_empty() {
+    BucketIndex index = new BucketIndex(5);
+    assertEquals(-1, index.findFirst(1));
+  }
+
+  /**
+   * Tests the bucket index finds the first bucket with enough room.
+   */
+  public void testFindFirst() {
+    BucketIndex index = new BucketIndex(5);
+    index.set(0, 10);
+    index.set(1, 30);
+    index.set(2, 20);
+
+    assertEquals(0, index.findFirst(5));
+    assertEquals(1, index.findFirst(15));
+    assertEquals(1, index.findFirst(30));
+    assertEquals(-1, index.findFirst(31));
+  }
+
+  /**
+   * Tests that updating a bucket's capacity updates the index.
+   */
+  public void testSet_updatesCapacity() {
+    BucketIndex index = new BucketIndex(3);
+    index.set(0, 10);
+    index.set(1, 30);
+    index.set(2, 20);
+
+    index.set(1, Integer.MIN_VALUE);
+    assertEquals(2, index.findFirst(15));
+
+    index.set(0, 40);
+    assertEquals(0, index.findFirst(15));
+  }
+}
@@ -21,6 +21,7 @@ import junit.framework.TestCase;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Test suite for BucketManager. Extends TestCase.
@@ -368,4 +369,45 @@ public class TestBucketManager extends TestCase {
     assertTrue(bucket2.equals(buckets.get(1)));
     assertTrue(bucket3.equals(buckets.get(2)));
   }
+
+  /**
+   * Tests that the indexed packer returns the same buckets as checking each
+   * existing bucket in order, on random values with both constraints.
+   */
+  public void testGetListOfBuckets_matchesFirstFit() {
+    Random random = new Random(42);
+    List<String> values = new ArrayList<String>();
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder value = new StringBuilder();
+      int length = 1 + random.nextInt(60);
+      for (int j = 0; j < length; j++) {
+        value.append((char) ('a' + random.nextInt(26)));
+      }
+      values.add(value.toString());
+    }
+
+    int filterMaxCharLength = 500;
+    int filterMaxListSize = 12;
+    List<Bucket> buckets = bucketManager.getBucketsOfFilters(dimensionName, values,
+        filterMaxCharLength, filterMaxListSize);
+
+    // Reference first fit decreasing, checking every bucket.
+    List<Bucket> expected = new ArrayList<Bucket>();
+    for (Filter filter : bucketManager.getFiltersOrderedBySize(dimensionName, values,
+        filterMaxCharLength)) {
+      boolean added = false;
+      for (Bucket bucket : expected) {
+        if (bucket.add(filter)) {
+          added = true;
+          break;
+        }
+      }
+      if (!added) {
+        expected.add(new Bucket(filterMaxCharLength, filterMaxListSize, filter));
+      }
+    }
+
+    assertEquals(expected.size(), buckets.size());
+    assertEquals(expected, buckets);
+  }
 }
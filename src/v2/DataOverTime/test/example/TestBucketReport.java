@@ -0,0 +1,91 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test suite for BucketReport. Extends TestCase.
+ */
+public class TestBucketReport extends TestCase {
+
+  private Filter filter;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    filter = new Filter();
+    filter.setEqualityFilterExpression("ga:source", "google");
+  }
+
+  /**
+   * Tests the fill ratios of full and partly full buckets.
+   */
+  public void testFillRatios() {
+    int filterMaxCharLength = 2 * filter.getEncodedSize() + Filter.getOperatorSize();
+    List<Bucket> buckets = new ArrayList<Bucket>();
+    Bucket full = new Bucket(filterMaxCharLength, 2);
+    full.add(filter);
+    full.add(filter);
+    buckets.add(full);
+    buckets.add(new Bucket(filterMaxCharLength, 2, filter));
+
+    BucketReport report = new BucketReport("test", buckets, filterMaxCharLength, 2);
+    assertEquals(2, report.getNumBuckets());
+    assertEquals(3, report.getNumFilters());
+    assertEquals(2, report.getLowerBound());
+    assertEquals(0.5, report.getMinListFill(), 0.0001);
+    assertEquals(0.75, report.getAverageListFill(), 0.0001);
+    assertEquals((double) filter.getEncodedSize() / filterMaxCharLength,
+        report.getMinCharFill(), 0.0001);
+    assertTrue(report.toString().startsWith("test: 3 filters in 2 buckets"));
+  }
+
+  /**
+   * Tests that an empty list of buckets does not cause errors.
+   */
+  public void testEmpty() {
+    BucketReport report = new BucketReport("test", new ArrayList<Bucket>(), 100, 10);
+    assertEquals(0, report.getNumBuckets());
+    assertEquals(0, report.getLowerBound());
+    assertEquals(0.0, report.getAverageCharFill(), 0.0);
+  }
+
+  /**
+   * Tests that a list size of 0 is rejected instead of dividing by it.
+   */
+  public void testZeroListSize() {
+    try {
+      new BucketReport("test", new ArrayList<Bucket>(), 100, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Tests that the query plan of grouped queries has a report.
+   */
+  public void testQueryPlanHasReport() {
+    QueryManagerGroupImpl queryManager = new QueryManagerGroupImpl(new BucketManager());
+    QueryPlan plan = queryManager.getQueryPlan(TestUtil.getFilledDataQuery(),
+        TestUtil.toList(new String[] {"/foo", "/bar"}));
+    assertNotNull(plan.getBucketReport());
+    assertEquals(1, plan.getBucketReport().getNumBuckets());
+    assertEquals("FirstFitDecreasingStrategy", plan.getBucketReport().getStrategyName());
+  }
+}
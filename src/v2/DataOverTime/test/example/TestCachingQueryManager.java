@@ -0,0 +1,93 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Test suite for CachingQueryManager. Extends TestCase.
+ */
+public class TestCachingQueryManager extends TestCase {
+
+  private CachingQueryManager queryManager;
+  private DataQuery dataQuery;
+  private List<String> dimensionValues;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    queryManager = new CachingQueryManager(new QueryManagerGroupImpl(new BucketManager()), 2);
+    dataQuery = TestUtil.getFilledDataQuery();
+    dimensionValues = TestUtil.toList(new String[] {"/foo", "/bar"});
+  }
+
+  /**
+   * Tests that the same plan is returned for the same query and values.
+   */
+  public void testGetQueryPlan_cached() {
+    QueryPlan plan1 = queryManager.getQueryPlan(dataQuery, dimensionValues);
+    QueryPlan plan2 = queryManager.getQueryPlan(TestUtil.getFilledDataQuery(),
+        TestUtil.toList(new String[] {"/foo", "/bar"}));
+
+    assertSame(plan1, plan2);
+    assertEquals(1, queryManager.getHitCount());
+    assertEquals(1, queryManager.getMissCount());
+  }
+
+  /**
+   * Tests that a different query or different values create a new plan.
+   */
+  public void testGetQueryPlan_differentSignature() {
+    QueryPlan plan1 = queryManager.getQueryPlan(dataQuery, dimensionValues);
+
+    List<String> otherValues = TestUtil.toList(new String[] {"/foo", "/baz"});
+    assertNotSame(plan1, queryManager.getQueryPlan(dataQuery, otherValues));
+
+    DataQuery otherQuery = TestUtil.getFilledDataQuery();
+    otherQuery.setEndDate("2010-01-20");
+    assertNotSame(plan1, queryManager.getQueryPlan(otherQuery, dimensionValues));
+
+    assertEquals(3, queryManager.getMissCount());
+  }
+
+  /**
+   * Tests that the least recently used plan is removed once the cache is
+   * full.
+   */
+  public void testGetQueryPlan_evictsEldest() {
+    QueryPlan plan1 = queryManager.getQueryPlan(dataQuery, dimensionValues);
+    queryManager.getQueryPlan(dataQuery, TestUtil.toList(new String[] {"/a"}));
+    queryManager.getQueryPlan(dataQuery, TestUtil.toList(new String[] {"/b"}));
+
+    assertNotSame(plan1, queryManager.getQueryPlan(dataQuery, dimensionValues));
+    assertEquals(0, queryManager.getHitCount());
+  }
+
+  /**
+   * Tests that the value boundaries are part of the signature.
+   */
+  public void testGetSignature() {
+    String signature1 = CachingQueryManager.getSignature(dataQuery,
+        TestUtil.toList(new String[] {"ab", "c"}));
+    String signature2 = CachingQueryManager.getSignature(dataQuery,
+        TestUtil.toList(new String[] {"a", "bc"}));
+    assertFalse(signature1.equals(signature2));
+    assertEquals(64, signature1.length());
+  }
+}
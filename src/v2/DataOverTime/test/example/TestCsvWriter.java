@@ -0,0 +1,118 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+
+/**
+ * Test suite for CsvWriter. Extends testCase.
+ */
+public class TestCsvWriter extends TestCase {
+
+  private Results results;
+
+  /**
+   * Creates a table with 3 days.
+   */
+  public void setUp() {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setEndDate("2010-01-03");
+    results = new Results();
+    results.initTable(dataQuery, new ArrayList<String>());
+  }
+
+  /**
+   * Tests whole numbers are printed without a decimal part.
+   */
+  public void testWrite_integral() throws IOException {
+    results.addRow("/foo", new double[] {1, 0, 12345678901L});
+    results.addRow("/bar", new double[] {-3, 0, 0});
+    String expected = "ga:landingPagePath,2010-01-01,2010-01-02,2010-01-03,Total\n"
+        + "/foo,1,0,12345678901,12345678902\n"
+        + "/bar,-3,0,0,-3\n";
+    assertEquals(expected, write(new CsvWriter()));
+  }
+
+  /**
+   * Tests values are printed like Double.toString if any value is not a
+   * whole number.
+   */
+  public void testWrite_notIntegral() throws IOException {
+    results.addRow("/foo", new double[] {1, 0.25, 2});
+    results.setIsSampled(true);
+    String expected = CsvWriter.SAMPLED_MESSAGE + "\n"
+        + "ga:landingPagePath,2010-01-01,2010-01-02,2010-01-03,Total\n"
+        + "/foo,1.0,0.25,2.0,3.25\n";
+    assertEquals(expected, write(new CsvWriter()));
+  }
+
+  /**
+   * Tests a small buffer that is flushed many times writes the same bytes
+   * as a large buffer, including row names longer than the buffer.
+   */
+  public void testWrite_smallBuffer() throws IOException {
+    StringBuilder longName = new StringBuilder("/caf\u00e9");
+    for (int i = 0; i < 100; i++) {
+      longName.append("/\u00e9t\u00e9");
+    }
+    results.addRow(longName.toString(), new double[] {1, 2, 3});
+    for (int i = 0; i < 100; i++) {
+      results.addRow("/page" + i, new double[] {i, i * 1000, -i});
+    }
+    String expected = write(new CsvWriter());
+    assertTrue(expected.startsWith("ga:landingPagePath"));
+    assertTrue(expected.contains(longName.toString() + ",1,2,3,6\n"));
+    assertEquals(expected, write(new CsvWriter(64)));
+  }
+
+  /**
+   * Tests writing to a file and that Results.outputCsv prints the same.
+   */
+  public void testWrite_file() throws IOException {
+    results.addRow("/foo", new double[] {1, 2, 3});
+    File file = File.createTempFile("results", ".csv");
+    try {
+      results.writeCsv(file);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FileInputStream input = new FileInputStream(file);
+      try {
+        byte[] buffer = new byte[1024];
+        for (int length; (length = input.read(buffer)) > 0;) {
+          bytes.write(buffer, 0, length);
+        }
+      } finally {
+        input.close();
+      }
+      assertEquals(write(new CsvWriter()), bytes.toString("UTF-8"));
+    } finally {
+      file.delete();
+    }
+  }
+
+  private String write(CsvWriter writer) throws IOException, UnsupportedEncodingException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    writer.write(results, Channels.newChannel(bytes));
+    return bytes.toString("UTF-8");
+  }
+}
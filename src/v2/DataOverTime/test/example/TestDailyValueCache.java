@@ -0,0 +1,239 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Test suite for DailyValueCache. Extends TestCase.
+ */
+public class TestDailyValueCache extends TestCase {
+
+  private static final String SERIES = "series";
+  private static final int TODAY = EpochDay.parse("2010-02-01");
+
+  private File directory;
+  private DailyValueCache cache;
+
+  /**
+   * Creates a cache whose last final day is 2010-01-30.
+   */
+  public void setUp() throws IOException {
+    directory = File.createTempFile("dailyvalues", "");
+    directory.delete();
+    cache = new FixedDayCache(directory, 2, TODAY);
+  }
+
+  /**
+   * Removes the cache directory.
+   */
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests the series key ignores dates and sort order.
+   */
+  public void testGetSeriesKey() {
+    DataQuery one = TestUtil.getFilledDataQuery();
+    DataQuery two = TestUtil.getFilledDataQuery();
+    two.setStartDate("2010-01-05");
+    two.setSort("-ga:entrances");
+    assertEquals(DailyValueCache.getSeriesKey(one), DailyValueCache.getSeriesKey(two));
+
+    two.setFilters("ga:medium==referral");
+    assertFalse(DailyValueCache.getSeriesKey(one).equals(DailyValueCache.getSeriesKey(two)));
+  }
+
+  /**
+   * Tests the missing range of an empty cache is the whole range.
+   */
+  public void testGetMissingRange_empty() {
+    int[] range = cache.getMissingRange(SERIES, "a", day("2010-01-01"), day("2010-01-31"));
+    assertEquals(day("2010-01-01"), range[0]);
+    assertEquals(day("2010-01-31"), range[1]);
+    assertEquals(31, cache.getMissingDayCount());
+  }
+
+  /**
+   * Tests days after the freshness horizon are not stored and are missing.
+   */
+  public void testPutValues_horizon() {
+    cache.putValues(SERIES, "a", day("2010-01-01"), getRow(31, 1));
+
+    int[] range = cache.getMissingRange(SERIES, "a", day("2010-01-02"), day("2010-01-31"));
+    assertEquals(day("2010-01-31"), range[0]);
+    assertEquals(day("2010-01-31"), range[1]);
+    assertEquals(29, cache.getCachedDayCount());
+
+    assertNull(cache.getMissingRange(SERIES, "a", day("2010-01-02"), day("2010-01-30")));
+    assertNotNull(cache.getMissingRange(SERIES, "b", day("2010-01-02"), day("2010-01-30")));
+  }
+
+  /**
+   * Tests overlapping runs are merged and newer values win.
+   */
+  public void testPutValues_merge() {
+    cache.putValues(SERIES, "a", day("2010-01-01"), getRow(10, 1));
+    cache.putValues(SERIES, "a", day("2010-01-08"), getRow(10, 100));
+
+    List<Double> row = getRow(20, 0);
+    assertEquals(17, cache.copyValues(SERIES, "a", day("2010-01-01"), row));
+    assertEquals(1.0, row.get(0));
+    assertEquals(7.0, row.get(6));
+    assertEquals(100.0, row.get(7));
+    assertEquals(109.0, row.get(16));
+    assertEquals(0.0, row.get(17));
+  }
+
+  /**
+   * Tests the known days are at the start of the missing range.
+   */
+  public void testGetMissingRange_head() {
+    cache.putValues(SERIES, "a", day("2010-01-10"), getRow(10, 1));
+    int[] range = cache.getMissingRange(SERIES, "a", day("2010-01-01"), day("2010-01-15"));
+    assertEquals(day("2010-01-01"), range[0]);
+    assertEquals(day("2010-01-09"), range[1]);
+  }
+
+  /**
+   * Tests values are read back from disk by a new cache.
+   */
+  public void testSave() {
+    cache.putValues(SERIES, "a", day("2010-01-01"), getRow(10, 1));
+    cache.save();
+
+    DailyValueCache newCache = new FixedDayCache(directory, 2, TODAY);
+    List<Double> row = getRow(10, 0);
+    assertEquals(10, newCache.copyValues(SERIES, "a", day("2010-01-01"), row));
+    assertEquals(getRow(10, 1), row);
+  }
+
+  /**
+   * Tests that a report shifted by a few days only requests the new days,
+   * and has the same results as requesting every day.
+   */
+  public void testDataOverTime_shiftedRange() {
+    List<String> dimensionValues = TestUtil.toList(new String[] {"a", "b", "c"});
+    RangeDataManager dataManager = new RangeDataManager(dimensionValues);
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setDimensions("ga:source");
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-20");
+
+    DataOverTime dataOverTime = getDataOverTime(dataManager, cache);
+    dataOverTime.getData(dataQuery);
+    assertEquals(20 * 3, dataManager.requestedDays);
+
+    DailyValueCache laterCache = new FixedDayCache(directory, 2, TODAY + 5);
+    dataQuery.setStartDate("2010-01-06");
+    dataQuery.setEndDate("2010-01-25");
+    dataManager.requestedDays = 0;
+    Results results = getDataOverTime(dataManager, laterCache).getData(dataQuery);
+    assertEquals(5 * 3, dataManager.requestedDays);
+
+    Results expected = new DataOverTime(dataManager, new QueryManagerGroupImpl(
+        new BucketManager()), new ResultManagerGroupImpl()).getData(dataQuery);
+    assertEquals(expected.getRowNames().size(), results.getRowNames().size());
+    for (int i = 0; i < expected.getRowNames().size(); i++) {
+      int row = results.getRowNames().indexOf(expected.getRowNames().get(i));
+      assertEquals(expected.getTable().get(i), results.getTable().get(row));
+    }
+  }
+
+  /**
+   * Tests that a refresh caches the days merged from the previous results,
+   * not only the days it requested.
+   */
+  public void testDataOverTime_refresh() throws IOException {
+    RangeDataManager dataManager = new RangeDataManager(TestUtil.toList(new String[] {"a", "b"}));
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setDimensions("ga:source");
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-10");
+    File snapshotFile = File.createTempFile("results", ".snapshot");
+    snapshotFile.delete();
+    try {
+      getDataOverTime(dataManager, null).refresh(new DataOverTimeJob(dataQuery), snapshotFile);
+      dataQuery.setEndDate("2010-01-15");
+      dataManager.requestedDays = 0;
+      getDataOverTime(dataManager, cache).refresh(new DataOverTimeJob(dataQuery), snapshotFile);
+      assertEquals(2 * 5, dataManager.requestedDays);
+    } finally {
+      snapshotFile.delete();
+    }
+
+    dataManager.requestedDays = 0;
+    Results results = getDataOverTime(dataManager, cache).getData(dataQuery);
+    assertEquals(0, dataManager.requestedDays);
+    List<String> rowNames = results.getRowNames();
+    assertEquals(2, rowNames.size());
+    for (int row = 0; row < rowNames.size(); row++) {
+      for (int col = 0; col < 15; col++) {
+        assertEquals(RangeDataManager.getValue(rowNames.get(row), day("2010-01-01") + col),
+            results.getTable().get(row).get(col));
+      }
+    }
+  }
+
+  private static DataOverTime getDataOverTime(DataManager dataManager,
+      DailyValueCache dailyValueCache) {
+    return new DataOverTime(dataManager,
+        new QueryManagerGroupImpl(new BucketManager(), dailyValueCache),
+        new ResultManagerGroupImpl(), null, dailyValueCache);
+  }
+
+  private static int day(String date) {
+    return EpochDay.parse(date);
+  }
+
+  private static List<Double> getRow(int size, double firstValue) {
+    List<Double> row = new ArrayList<Double>(size);
+    for (int i = 0; i < size; i++) {
+      row.add(firstValue == 0 ? 0.0 : firstValue + i);
+    }
+    return row;
+  }
+
+  /**
+   * A DailyValueCache with a fixed current day.
+   */
+  private static class FixedDayCache extends DailyValueCache {
+    private final int today;
+
+    FixedDayCache(File directory, int freshnessHorizonDays, int today) {
+      super(directory, freshnessHorizonDays, TimeZone.getTimeZone("UTC"));
+      this.today = today;
+    }
+
+    @Override
+    protected int getToday() {
+      return today;
+    }
+  }
+}
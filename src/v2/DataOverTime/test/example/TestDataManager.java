@@ -15,12 +15,25 @@
 
 package example;
 
+import com.google.gdata.client.Query;
+import com.google.gdata.client.analytics.DataQuery;
+import com.google.gdata.data.IFeed;
 import com.google.gdata.data.analytics.DataEntry;
 import com.google.gdata.data.analytics.DataFeed;
+import com.google.gdata.util.ServiceException;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test suite for the DataManager. Extends testCase.
@@ -75,4 +88,210 @@ public class TestDataManager extends TestCase {
       i++;
     }
   }
+
+  /**
+   * Tests a failed request is retried, and an error that can not be
+   * retried is thrown instead of stopping the program.
+   */
+  public void testGetFeed_errors() {
+    final int[] failures = {1};
+    AnalyticsServiceMock failingService = new AnalyticsServiceMock(APP_NAME) {
+      @Override
+      public <F extends IFeed> F getFeed(Query query, Class<F> feedClass)
+          throws IOException, ServiceException {
+        if (failures[0]-- > 0) {
+          ServiceException e = new ServiceException("Service Unavailable");
+          e.setHttpErrorCodeOverride(503);
+          throw e;
+        }
+        return super.getFeed(query, feedClass);
+      }
+    };
+    failingService.setData(testDimensions, testMetrics);
+    RequestScheduler scheduler = new RequestScheduler(100, 0, 1, 0, 0);
+    dataManager = new DataManager(failingService, null, scheduler);
+
+    assertEquals(testMetrics[0].length,
+        dataManager.getFeed(TestUtil.getNewDataQuery()).getEntries().size());
+    assertEquals(1, scheduler.getRetryCount());
+
+    failures[0] = 2;
+    try {
+      dataManager.getFeed(TestUtil.getNewDataQuery());
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof ServiceException);
+    }
+  }
+
+  /**
+   * Tests feeds can be retrieved through a RequestHedger, and that nothing
+   * is hedged without one.
+   */
+  public void testGetFeed_hedged() {
+    assertNull(dataManager.newHedgeBudget(10));
+    assertNotNull(dataManager.getFeed(TestUtil.getNewDataQuery(), null));
+
+    AnalyticsServiceMock analyticsServiceMock = new AnalyticsServiceMock(APP_NAME);
+    analyticsServiceMock.setData(testDimensions, testMetrics);
+    RequestHedger hedger = new RequestHedger(0.95, 0.1, Executors.defaultThreadFactory());
+    try {
+      dataManager = new DataManager(analyticsServiceMock, null, new RequestScheduler(), hedger);
+      RequestHedger.Budget budget = dataManager.newHedgeBudget(10);
+      DataFeed feed = dataManager.getFeed(TestUtil.getNewDataQuery(), budget);
+      assertEquals(testMetrics[0].length, feed.getEntries().size());
+      assertEquals(0, budget.getUsed());
+    } finally {
+      hedger.shutdown();
+    }
+  }
+
+  /**
+   * Tests concurrent requests for the same URL, with parameters in a
+   * different order, are sent once and share the feed.
+   */
+  public void testGetFeed_coalesced() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger requests = new AtomicInteger();
+    AnalyticsServiceMock blockingService = new AnalyticsServiceMock(APP_NAME) {
+      @Override
+      public <F extends IFeed> F getFeed(Query query, Class<F> feedClass)
+          throws IOException, ServiceException {
+        requests.incrementAndGet();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return super.getFeed(query, feedClass);
+      }
+    };
+    blockingService.setData(testDimensions, testMetrics);
+    dataManager = new DataManager(blockingService);
+
+    final DataQuery first = TestUtil.getNewDataQuery();
+    first.setIds("ga:1234");
+    first.setMetrics("ga:visits");
+    final DataQuery second = TestUtil.getNewDataQuery();
+    second.setMetrics("ga:visits");
+    second.setIds("ga:1234");
+    final DataFeed[] feeds = new DataFeed[2];
+    Thread firstThread = new Thread() {
+      @Override
+      public void run() {
+        feeds[0] = dataManager.getFeed(first);
+      }
+    };
+    firstThread.start();
+    while (requests.get() == 0) {
+      Thread.sleep(1);
+    }
+    Thread secondThread = new Thread() {
+      @Override
+      public void run() {
+        feeds[1] = dataManager.getFeed(second);
+      }
+    };
+    secondThread.start();
+    while (dataManager.getCoalescedCount() == 0) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    firstThread.join(10000);
+    secondThread.join(10000);
+
+    assertEquals(1, requests.get());
+    assertNotNull(feeds[0]);
+    assertSame(feeds[0], feeds[1]);
+  }
+
+  /**
+   * Tests a feed from the API is streamed into the rows of a Results object.
+   */
+  public void testStreamFeed() {
+    StreamingDataManager streamingManager = new StreamingDataManager(new RequestScheduler());
+    Results results = getStreamResults();
+
+    int numEntries = streamingManager.streamFeed(TestUtil.getNewDataQuery(),
+        results.getDimensionDictionary(), new ResultsRowSink(results));
+
+    assertEquals(3, numEntries);
+    assertEquals(1, streamingManager.requests);
+    assertEquals(TestUtil.toList(new String[] {"/a", "/b"}), results.getRowNames());
+    assertEquals(Arrays.asList(1.0, 0.0, 3.0), results.getTable().get(0));
+    assertEquals(Arrays.asList(0.0, 5.0, 0.0), results.getTable().get(1));
+  }
+
+  /**
+   * Tests an error reading the response is not reported as an invalid feed
+   * and is not retried, and that an invalid feed is rejected.
+   */
+  public void testStreamFeed_errors() {
+    RequestScheduler scheduler = new RequestScheduler(100, 0, 1, 0, 0);
+    StreamingDataManager streamingManager = new StreamingDataManager(scheduler);
+    streamingManager.failAfter = 200;
+    Results results = getStreamResults();
+    try {
+      streamingManager.streamFeed(TestUtil.getNewDataQuery(), results.getDimensionDictionary(),
+          new ResultsRowSink(results));
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertEquals(1, streamingManager.requests);
+    assertEquals(0, scheduler.getRetryCount());
+
+    streamingManager.failAfter = -1;
+    streamingManager.feedXml = streamingManager.feedXml.replace("</feed>", "");
+    try {
+      streamingManager.streamFeed(TestUtil.getNewDataQuery(), results.getDimensionDictionary(),
+          new ResultsRowSink(getStreamResults()));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  private static Results getStreamResults() {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-03");
+    Results results = new Results();
+    results.initTable(dataQuery, TestUtil.toList(new String[] {"/a", "/b"}));
+    return results;
+  }
+
+  /**
+   * A DataManager whose responses are the Atom XML of an
+   * AnalyticsServiceMock feed, optionally failing after some bytes.
+   */
+  private static class StreamingDataManager extends DataManager {
+    String feedXml;
+    int failAfter = -1;
+    int requests;
+
+    StreamingDataManager(RequestScheduler scheduler) {
+      super(new AnalyticsServiceMock(APP_NAME), null, scheduler);
+      feedXml = new AnalyticsServiceMock(APP_NAME).getFeedXml(
+          new String[] {"ga:pagePath", "ga:date"},
+          new String[][] {{"/a", "/a", "/b"}, {"20100101", "20100103", "20100102"}},
+          new String[][] {{"1", "3", "5"}});
+    }
+
+    @Override
+    protected InputStream openFeedStream(DataQuery dataQuery) throws IOException {
+      requests++;
+      byte[] bytes = feedXml.getBytes("UTF-8");
+      if (failAfter < 0) {
+        return new ByteArrayInputStream(bytes);
+      }
+      return new SequenceInputStream(new ByteArrayInputStream(bytes, 0, failAfter),
+          new InputStream() {
+            @Override
+            public int read() throws IOException {
+              throw new IOException("Connection reset");
+            }
+          });
+    }
+  }
 }
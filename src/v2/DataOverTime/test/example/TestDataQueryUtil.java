@@ -81,4 +81,20 @@ public class TestDataQueryUtil extends TestCase {
     String test = DataQueryUtil.getResultDateFormat("2010-10-10");
     assertTrue("20101010".equals(test));
   }
+
+  /**
+   * Tests that a copied query has the same parameters but is a separate
+   * object.
+   */
+  public void testCopyQuery() {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setFilters("ga:medium==cpc");
+    dataQuery.setMaxResults(100);
+
+    DataQuery copy = DataQueryUtil.copyQuery(dataQuery);
+    assertEquals(dataQuery.getUrl().toString(), copy.getUrl().toString());
+
+    copy.setFilters("ga:medium==organic");
+    assertEquals("ga:medium==cpc", dataQuery.getFilters());
+  }
 }
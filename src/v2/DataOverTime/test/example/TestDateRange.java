@@ -0,0 +1,99 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Test suite for DateRange. Extends testCase.
+ */
+public class TestDateRange extends TestCase {
+
+  /**
+   * Tests the columns of a daily date range.
+   */
+  public void testGetColumnNames() {
+    DateRange range = DateRange.of("2010-02-27", "2010-03-02", DateRange.Granularity.DAY);
+    assertEquals(4, range.getNumDays());
+    assertEquals(4, range.getNumColumns());
+
+    List<String> expected =
+        TestUtil.toList(new String[] {"2010-02-27", "2010-02-28", "2010-03-01", "2010-03-02"});
+    assertEquals(expected, range.getColumnNames());
+    assertSame(range.getColumnNames(), range.getColumnNames());
+    try {
+      range.getColumnNames().add("2010-03-03");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Tests the same range is returned for the same dates.
+   */
+  public void testOf_cached() {
+    DataQuery dataQuery = TestUtil.getNewDataQuery();
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-15");
+
+    DateRange range = DateRange.of(dataQuery);
+    assertSame(range, DateRange.of("20100101", "20100115", DateRange.Granularity.DAY));
+    assertNotSame(range, DateRange.of("2010-01-01", "2010-01-16", DateRange.Granularity.DAY));
+    assertEquals(range, DateRange.of(range.getStartDay(), range.getEndDay(),
+        DateRange.Granularity.DAY));
+  }
+
+  /**
+   * Tests mapping dates to columns.
+   */
+  public void testGetColumn() {
+    DateRange range = DateRange.of("2010-01-01", "2010-01-15", DateRange.Granularity.DAY);
+    assertEquals(0, range.getColumn("20100101"));
+    assertEquals(14, range.getColumn("20100115"));
+    assertEquals(9, range.getColumn("2010-01-10"));
+    assertEquals(-1, range.getColumn("20091231"));
+    assertEquals(-1, range.getColumn("20100116"));
+  }
+
+  /**
+   * Tests an end date before the start date is rejected.
+   */
+  public void testOf_invalid() {
+    try {
+      DateRange.of("2010-01-02", "2010-01-01", DateRange.Granularity.DAY);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Tests the date range of Results, both from initTable and from column
+   * names set directly.
+   */
+  public void testResultsDateRange() {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    Results results = new Results();
+    results.initTable(dataQuery, TestUtil.toList(new String[] {"a"}));
+    assertSame(DateRange.of(dataQuery), results.getDateRange());
+
+    results.setColNames(TestUtil.toList(new String[] {"2010-01-01", "2010-01-02"}));
+    assertEquals(2, results.getDateRange().getNumDays());
+  }
+}
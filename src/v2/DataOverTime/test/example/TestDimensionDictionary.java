@@ -0,0 +1,64 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test suite for DimensionDictionary. Extends testCase.
+ */
+public class TestDimensionDictionary extends TestCase {
+
+  /**
+   * Tests ids are given in the order values are first seen.
+   */
+  public void testGetId() {
+    DimensionDictionary dictionary =
+        new DimensionDictionary(TestUtil.toList(new String[] {"/a", "/b", "/a"}));
+    assertEquals(2, dictionary.size());
+    assertEquals(0, dictionary.getId("/a"));
+    assertEquals(1, dictionary.getId("/b"));
+    assertEquals(-1, dictionary.findId("/c"));
+    assertEquals(2, dictionary.getId("/c"));
+    assertEquals(2, dictionary.findId("/c"));
+    assertEquals("/c", dictionary.getValue(2));
+    assertEquals(TestUtil.toList(new String[] {"/a", "/b", "/c"}), dictionary.getValues());
+  }
+
+  /**
+   * Tests many values, including values with the same hash code.
+   */
+  public void testGrow() {
+    DimensionDictionary dictionary = new DimensionDictionary(new ArrayList<String>());
+    List<String> values = new ArrayList<String>();
+    for (int i = 0; i < 10000; i++) {
+      values.add("/page" + i);
+    }
+    // "Aa" and "BB" have the same hash code.
+    values.add("AaAa");
+    values.add("BBBB");
+    values.add("AaBB");
+
+    for (int i = 0; i < values.size(); i++) {
+      assertEquals(i, dictionary.getId(values.get(i)));
+    }
+    for (int i = 0; i < values.size(); i++) {
+      assertEquals(i, dictionary.findId(new String(values.get(i))));
+      assertSame(values.get(i), dictionary.getValue(i));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Test suite for EpochDay. Extends TestCase.
+ */
+public class TestEpochDay extends TestCase {
+
+  /**
+   * Tests known dates.
+   */
+  public void testParse() {
+    assertEquals(0, EpochDay.parse("1970-01-01"));
+    assertEquals(0, EpochDay.parse("19700101"));
+    assertEquals(14610, EpochDay.parse("2010-01-01"));
+    assertEquals(-1, EpochDay.parse("1969-12-31"));
+    assertEquals(EpochDay.parse("2012-03-01") - 1, EpochDay.parse("2012-02-29"));
+  }
+
+  /**
+   * Tests every day for 20 years against Calendar.
+   */
+  public void testFormat_matchesCalendar() {
+    SimpleDateFormat queryFormat = new SimpleDateFormat("yyyy-MM-dd");
+    SimpleDateFormat resultFormat = new SimpleDateFormat("yyyyMMdd");
+    TimeZone utc = TimeZone.getTimeZone("UTC");
+    queryFormat.setTimeZone(utc);
+    resultFormat.setTimeZone(utc);
+    Calendar calendar = Calendar.getInstance(utc);
+    calendar.clear();
+    calendar.set(2000, Calendar.JANUARY, 1);
+
+    for (int day = EpochDay.parse("2000-01-01"); day < EpochDay.parse("2020-01-01"); day++) {
+      String queryDate = queryFormat.format(calendar.getTime());
+      assertEquals(queryDate, EpochDay.toQueryDate(day));
+      assertEquals(resultFormat.format(calendar.getTime()), EpochDay.toResultDate(day));
+      assertEquals(day, EpochDay.parse(queryDate));
+      calendar.add(Calendar.DATE, 1);
+    }
+  }
+
+  /**
+   * Tests the epoch day of an instant depends on the time zone.
+   */
+  public void testOfMillis() {
+    long millis = 14610L * 24 * 60 * 60 * 1000 + 3 * 60 * 60 * 1000;  // 2010-01-01 03:00 UTC.
+    assertEquals(EpochDay.parse("2010-01-01"),
+        EpochDay.ofMillis(millis, TimeZone.getTimeZone("UTC")));
+    assertEquals(EpochDay.parse("2009-12-31"),
+        EpochDay.ofMillis(millis, TimeZone.getTimeZone("America/Los_Angeles")));
+    assertEquals(EpochDay.parse("2010-01-01"),
+        EpochDay.ofMillis(millis, TimeZone.getTimeZone("Asia/Tokyo")));
+    assertEquals(-1, EpochDay.ofMillis(-1, TimeZone.getTimeZone("UTC")));
+  }
+
+  /**
+   * Tests invalid dates are rejected.
+   */
+  public void testParse_invalid() {
+    String[] dates = {"", "2010-1-01", "2010-13-01", "2010-01-00", "201001011", "2010/01/01"};
+    for (String date : dates) {
+      try {
+        EpochDay.parse(date);
+        fail(date);
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+  }
+}
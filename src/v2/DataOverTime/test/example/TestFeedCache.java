@@ -0,0 +1,192 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.Query;
+import com.google.gdata.data.IFeed;
+import com.google.gdata.data.analytics.DataEntry;
+import com.google.gdata.data.analytics.DataFeed;
+import com.google.gdata.util.ServiceException;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test suite for FeedCache. Extends TestCase.
+ */
+public class TestFeedCache extends TestCase {
+
+  private static final String APP_NAME = "TEST_APP";
+  private static final long TTL_MILLIS = 60L * 60 * 1000;
+  private static final String URL_ONE =
+      "https://www.google.com/analytics/feeds/data?ids=ga:1&metrics=ga:visits";
+  private static final String URL_TWO =
+      "https://www.google.com/analytics/feeds/data?ids=ga:2&metrics=ga:visits";
+
+  private File directory;
+  private DataFeed feed;
+
+  /**
+   * Creates an empty cache directory and a test feed.
+   */
+  public void setUp() throws IOException {
+    directory = File.createTempFile("feedcache", "");
+    directory.delete();
+
+    AnalyticsServiceMock analyticsServiceMock = new AnalyticsServiceMock(APP_NAME);
+    feed = analyticsServiceMock.getDataFeed(new String[] {"ga:source", "ga:date"},
+        new String[][] {{"google", "bing"}, {"20100101", "20100102"}},
+        new String[][] {{"1", "2.5"}}, 0.5);
+  }
+
+  /**
+   * Removes the cache directory.
+   */
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests that parameter order does not change the normalized URL.
+   */
+  public void testNormalizeUrl() {
+    assertEquals("http://a/b?a=1&b=2&c=3", FeedCache.normalizeUrl("http://a/b?c=3&a=1&b=2"));
+    assertEquals("http://a/b", FeedCache.normalizeUrl("http://a/b"));
+    assertEquals(FeedCache.getKey("http://a/b?x=1&y=2"), FeedCache.getKey("http://a/b?y=2&x=1"));
+  }
+
+  /**
+   * Tests feeds are found in memory, then on disk from a new cache.
+   */
+  public void testGetAndPut() {
+    FeedCache cache = new FeedCache(directory, TTL_MILLIS);
+    assertNull(cache.get(URL_ONE));
+    assertEquals(1, cache.getMissCount());
+
+    cache.put(URL_ONE, feed);
+    assertSame(feed, cache.get(URL_ONE));
+    assertEquals(1, cache.getMemoryHitCount());
+    assertTrue(cache.getDiskBytes() > 0);
+
+    FeedCache newCache = new FeedCache(directory, TTL_MILLIS);
+    assertEquals(cache.getDiskBytes(), newCache.getDiskBytes());
+    assertFeedEquals(feed, newCache.get(URL_ONE));
+    assertEquals(1, newCache.getDiskHitCount());
+    assertNotNull(newCache.get(URL_ONE));
+    assertEquals(1, newCache.getMemoryHitCount());
+  }
+
+  /**
+   * Tests the least recently used feed is removed from memory but is still
+   * on disk.
+   */
+  public void testMemoryEviction() {
+    FeedCache cache = new FeedCache(directory, 1, FeedCache.DEFAULT_MAX_DISK_BYTES, TTL_MILLIS);
+    cache.put(URL_ONE, feed);
+    cache.put(URL_TWO, feed);
+    assertEquals(1, cache.getEvictionCount());
+
+    assertNotNull(cache.get(URL_ONE));
+    assertEquals(1, cache.getDiskHitCount());
+  }
+
+  /**
+   * Tests the oldest files are removed once the disk tier is full.
+   */
+  public void testDiskEviction() {
+    FeedCache cache = new FeedCache(directory, 0, 1, TTL_MILLIS);
+    cache.put(URL_ONE, feed);
+    assertEquals(0, cache.getDiskBytes());
+    assertTrue(cache.getEvictionCount() > 0);
+    assertNull(cache.get(URL_ONE));
+  }
+
+  /**
+   * Tests expired feeds are not returned.
+   */
+  public void testExpired() {
+    FeedCache cache = new FeedCache(directory, TTL_MILLIS);
+    cache.put(URL_ONE, feed);
+    new File(directory, FeedCache.getKey(URL_ONE) + ".feed.gz").setLastModified(
+        System.currentTimeMillis() - 2 * TTL_MILLIS);
+
+    FeedCache newCache = new FeedCache(directory, TTL_MILLIS);
+    assertNull(newCache.get(URL_ONE));
+    assertEquals(1, newCache.getMissCount());
+    assertEquals(0, newCache.getDiskBytes());
+  }
+
+  /**
+   * Tests the DataManager only calls the API on a cache miss.
+   */
+  public void testDataManager() {
+    CountingAnalyticsService service = new CountingAnalyticsService();
+    service.setData(new String[][] {{"google"}}, new String[][] {{"1"}});
+    DataManager dataManager = new DataManager(service, new FeedCache(directory, TTL_MILLIS));
+
+    DataFeed first = dataManager.getFeed(TestUtil.getNewDataQuery());
+    DataFeed second = dataManager.getFeed(TestUtil.getNewDataQuery());
+    assertEquals(1, service.requests);
+    assertSame(first, second);
+    assertEquals(1, dataManager.getFeedCache().getMemoryHitCount());
+  }
+
+  private static void assertFeedEquals(DataFeed expected, DataFeed actual) {
+    assertEquals(expected.getEntries().size(), actual.getEntries().size());
+    for (int i = 0; i < expected.getEntries().size(); i++) {
+      DataEntry expectedEntry = expected.getEntries().get(i);
+      DataEntry actualEntry = actual.getEntries().get(i);
+      assertEquals(expectedEntry.getDimensions().size(), actualEntry.getDimensions().size());
+      for (int j = 0; j < expectedEntry.getDimensions().size(); j++) {
+        assertEquals(expectedEntry.getDimensions().get(j).getName(),
+            actualEntry.getDimensions().get(j).getName());
+        assertEquals(expectedEntry.getDimensions().get(j).getValue(),
+            actualEntry.getDimensions().get(j).getValue());
+      }
+      assertEquals(expectedEntry.getMetrics().size(), actualEntry.getMetrics().size());
+      for (int j = 0; j < expectedEntry.getMetrics().size(); j++) {
+        assertEquals(expectedEntry.getMetrics().get(j).getValue(),
+            actualEntry.getMetrics().get(j).getValue());
+        assertEquals(expectedEntry.getMetrics().get(j).getConfidenceInterval(),
+            actualEntry.getMetrics().get(j).getConfidenceInterval());
+      }
+    }
+  }
+
+  /**
+   * Counts the number of requests made to the API.
+   */
+  private static class CountingAnalyticsService extends AnalyticsServiceMock {
+    int requests = 0;
+
+    CountingAnalyticsService() {
+      super(APP_NAME);
+    }
+
+    @Override
+    public <F extends IFeed> F getFeed(Query query, Class<F> feedClass)
+        throws IOException, ServiceException {
+      requests++;
+      return super.getFeed(query, feedClass);
+    }
+  }
+}
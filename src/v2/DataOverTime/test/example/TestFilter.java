@@ -82,6 +82,34 @@ public class TestFilter extends TestCase {
     assertEquals(encodedSize, filter.getEncodedSize(filterExpression));
   }
 
+  /**
+   * Tests the encoded size matches the escaped expression for values with
+   * reserved, non-ASCII and supplementary characters.
+   */
+  public void testGetEncodedEqualityFilterSize() {
+    String[] values = {"google", "a b", "aaa,bbb;ccc\\ddd", "/path?id=1&x=%20",
+        "caf\u00e9", "\u65e5\u672c", "\ud83d\ude00 smile", "-_.*~!'()", ""};
+    for (String value : values) {
+      String expression = Filter.getEqualityFilter("ga:pagePath", value);
+      int expectedSize = CharEscapers.uriEscaper().escape(expression).length();
+      assertEquals(value, expectedSize,
+          Filter.getEncodedEqualityFilterSize("ga:pagePath", value));
+
+      Filter filter = new Filter();
+      filter.setEqualityFilterExpression("ga:pagePath", value);
+      assertEquals(value, expectedSize, filter.getEncodedSize());
+      assertEquals(expression, filter.getFilterExpression());
+    }
+  }
+
+  /**
+   * Tests values without reserved characters are returned unchanged.
+   */
+  public void testEscapeValue_noReservedCharacters() {
+    String value = "/product/toys";
+    assertSame(value, Filter.escapeValue(value));
+  }
+
   /**
    * Tests compareTo implementation.
    */
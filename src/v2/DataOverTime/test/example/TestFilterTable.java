@@ -0,0 +1,119 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Test suite for FilterTable. Extends TestCase.
+ */
+public class TestFilterTable extends TestCase {
+
+  private static final String DIMENSION_NAME = "ga:source";
+
+  private List<String> dimensionValues;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    dimensionValues = TestUtil.toList(new String[] {"bb", "dddd", "a,a", "cc", "eeeeeeeeee"});
+  }
+
+  /**
+   * Tests that rows are sorted by size and equal sizes keep their order.
+   */
+  public void testFilterTable_sortedBySize() {
+    FilterTable table = new FilterTable(DIMENSION_NAME, dimensionValues, 1000);
+    assertEquals(5, table.size());
+
+    String[] expected = {"eeeeeeeeee", "a,a", "dddd", "bb", "cc"};
+    for (int row = 0; row < table.size(); row++) {
+      assertEquals(expected[row], table.getValue(row));
+      assertEquals(dimensionValues.indexOf(expected[row]), table.getValueIndex(row));
+      assertEquals(table.getFilter(row).getEncodedSize(), table.getEncodedSize(row));
+      if (row > 0) {
+        assertTrue(table.getEncodedSize(row - 1) >= table.getEncodedSize(row));
+      }
+    }
+  }
+
+  /**
+   * Tests that filters larger than the maximum length are dropped.
+   */
+  public void testFilterTable_dropsLargeFilters() {
+    Filter filter = new Filter();
+    filter.setEqualityFilterExpression(DIMENSION_NAME, "dddd");
+    FilterTable table =
+        new FilterTable(DIMENSION_NAME, dimensionValues, filter.getEncodedSize() - 1);
+    assertEquals(2, table.size());
+    assertEquals("bb", table.getValue(0));
+    assertEquals("cc", table.getValue(1));
+  }
+
+  /**
+   * Tests null values return an empty table.
+   */
+  public void testFilterTable_nullValues() {
+    assertEquals(0, new FilterTable(DIMENSION_NAME, null, 1000).size());
+  }
+
+  /**
+   * Tests a bucket of table rows has the same filters and expression as a
+   * bucket of Filter objects.
+   */
+  public void testBucket_rows() {
+    FilterTable table = new FilterTable(DIMENSION_NAME, dimensionValues, 1000);
+    Bucket rowBucket = new Bucket(table, 1000, 10);
+    Bucket filterBucket = new Bucket(1000, 10);
+    for (int row = 0; row < table.size(); row++) {
+      assertTrue(rowBucket.add(row));
+      assertTrue(filterBucket.add(table.getFilter(row)));
+    }
+
+    assertEquals(5, rowBucket.getNumFilters());
+    assertEquals(filterBucket.getCharLength(), rowBucket.getCharLength());
+    assertEquals(filterBucket.getRemainingCapacity(), rowBucket.getRemainingCapacity());
+    assertEquals(filterBucket.toString(), rowBucket.toString());
+    assertEquals(filterBucket, rowBucket);
+    assertEquals(1, rowBucket.getRow(1));
+  }
+
+  /**
+   * Tests a bucket of table rows respects the list size.
+   */
+  public void testBucket_rowsFull() {
+    FilterTable table = new FilterTable(DIMENSION_NAME, dimensionValues, 1000);
+    Bucket bucket = new Bucket(table, 1000, 2);
+    assertTrue(bucket.add(0));
+    assertTrue(bucket.add(1));
+    assertFalse(bucket.add(2));
+    assertEquals(2, bucket.getFilterList().size());
+  }
+
+  /**
+   * Tests Filter objects can not be added to a bucket of table rows.
+   */
+  public void testBucket_rowsRejectFilters() {
+    FilterTable table = new FilterTable(DIMENSION_NAME, dimensionValues, 1000);
+    try {
+      new Bucket(table, 1000, 10).add(table.getFilter(0));
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Test suite for HybridCellMatrix. Extends testCase.
+ */
+public class TestHybridCellMatrix extends TestCase {
+
+  /**
+   * Tests rows are stored as sparse rows by their fill ratio.
+   */
+  public void testAddRow() {
+    HybridCellMatrix matrix = new HybridCellMatrix(8, 0, 0.25);
+    matrix.addRow(new double[] {0, 0, 3, 0, 0, 0, 0, 1});
+    matrix.addRow(new double[] {1, 2, 3, 0, 0, 0, 0, 0});
+    matrix.addRow(new double[8]);
+
+    assertEquals(3, matrix.getNumRows());
+    assertTrue(matrix.isSparse(0));
+    assertFalse(matrix.isSparse(1));
+    assertTrue(matrix.isSparse(2));
+    assertEquals(1, matrix.getNumDenseRows());
+
+    assertEquals(3.0, matrix.get(0, 2));
+    assertEquals(1.0, matrix.get(0, 7));
+    assertEquals(0.0, matrix.get(0, 0));
+    assertEquals(2.0, matrix.get(1, 1));
+    assertEquals(0.0, matrix.get(2, 5));
+  }
+
+  /**
+   * Tests setting values of a sparse row until it is moved to the dense
+   * rows.
+   */
+  public void testSet() {
+    HybridCellMatrix matrix = new HybridCellMatrix(8, 0, 0.25);
+    matrix.addRow(new double[8]);
+    matrix.set(0, 5, 2.0);
+    matrix.set(0, 1, 1.0);
+    matrix.set(0, 3, 0.0);
+    assertTrue(matrix.isSparse(0));
+    assertEquals(1.0, matrix.get(0, 1));
+    assertEquals(2.0, matrix.get(0, 5));
+
+    matrix.set(0, 6, 3.5);
+    assertFalse(matrix.isSparse(0));
+    assertEquals(1.0, matrix.get(0, 1));
+    assertEquals(2.0, matrix.get(0, 5));
+    assertEquals(3.5, matrix.get(0, 6));
+    assertFalse(matrix.isIntegral());
+  }
+
+  /**
+   * Tests a hybrid matrix holds the same values as a dense matrix.
+   */
+  public void testSameAsDense() {
+    Random random = new Random(7);
+    int numCols = 30;
+    HybridCellMatrix hybrid = new HybridCellMatrix(numCols, 0);
+    DenseCellMatrix dense = new DenseCellMatrix(numCols, 0);
+    double[] row = new double[numCols];
+    for (int i = 0; i < 200; i++) {
+      double fill = random.nextDouble();
+      for (int col = 0; col < numCols; col++) {
+        row[col] = random.nextDouble() < fill ? random.nextInt(100) : 0;
+      }
+      hybrid.addRow(row);
+      dense.addRow(row);
+    }
+    for (int i = 0; i < 1000; i++) {
+      int r = random.nextInt(200);
+      int col = random.nextInt(numCols);
+      double value = random.nextInt(3) == 0 ? 0 : random.nextInt(100);
+      hybrid.set(r, col, value);
+      dense.set(r, col, value);
+    }
+
+    for (int r = 0; r < 200; r++) {
+      for (int col = 0; col < numCols; col++) {
+        assertEquals(dense.get(r, col), hybrid.get(r, col));
+      }
+    }
+    assertTrue(hybrid.isIntegral());
+  }
+
+  /**
+   * Tests indexes outside the matrix are rejected.
+   */
+  public void testIndexOutOfBounds() {
+    HybridCellMatrix matrix = new HybridCellMatrix(2, 0);
+    matrix.addRow(new double[] {0, 1});
+    try {
+      matrix.get(0, 2);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // Expected.
+    }
+    try {
+      matrix.set(1, 0, 1.0);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // Expected.
+    }
+  }
+}
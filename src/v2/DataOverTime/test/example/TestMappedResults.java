@@ -0,0 +1,142 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+import com.google.gdata.data.analytics.DataFeed;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Test suite for MappedResults, MappedCellMatrix and FileStringList.
+ * Extends testCase.
+ */
+public class TestMappedResults extends TestCase {
+
+  private File directory;
+
+  /**
+   * Creates an empty directory for the files.
+   */
+  public void setUp() throws IOException {
+    directory = File.createTempFile("mappedresults", "");
+    directory.delete();
+    directory.mkdirs();
+  }
+
+  /**
+   * Removes the directory.
+   */
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests a ResultManager fills a MappedResults object the same way as a
+   * Results object, and that both print the same CSV.
+   */
+  public void testAddRows() throws IOException {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-03");
+    String[][] dimensionValues = new String[][] {{"a", "a", "b", "c"},
+        {"20100101", "20100103", "20100102", "20100101"}};
+    String[][] metricValues = new String[][] {{"1", "2", "3.5", "4"}};
+    DataFeed feed = new AnalyticsServiceMock("TEST_APP").getDataFeed(
+        new String[] {"ga:landingPage", "ga:date"}, dimensionValues, metricValues);
+
+    Results expected = new Results();
+    expected.initTable(dataQuery, new ArrayList<String>());
+    new ResultManagerGroupImpl().addRows(expected, feed);
+
+    MappedResults results = new MappedResults(directory);
+    results.initTable(dataQuery, new ArrayList<String>());
+    new ResultManagerGroupImpl().addRows(results, feed);
+
+    assertTrue(results.getRowNames() instanceof FileStringList);
+    assertEquals(expected.getRowNames(), results.getRowNames());
+    assertEquals(expected.getTable(), results.getTable());
+    assertEquals(getCsv(expected), getCsv(results));
+
+    results.close();
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  /**
+   * Tests rows spread over many mapped regions.
+   */
+  public void testRegions() throws IOException {
+    // Each region holds 2 rows of 3 columns.
+    MappedCellMatrix matrix = new MappedCellMatrix(new File(directory, "cells"), 3, 48);
+    double[] row = new double[3];
+    for (int i = 0; i < 100; i++) {
+      row[0] = i;
+      row[1] = i * 2;
+      row[2] = i * 3;
+      assertEquals(i, matrix.addRow(row));
+    }
+    matrix.set(51, 2, 0.5);
+
+    assertEquals(100, matrix.getNumRows());
+    assertEquals(98.0, matrix.get(49, 1));
+    assertEquals(0.5, matrix.get(51, 2));
+    matrix.getRow(99, row);
+    assertEquals(297.0, row[2]);
+    assertFalse(matrix.isIntegral());
+    matrix.close();
+  }
+
+  /**
+   * Tests strings are read back from the file and from the write buffer.
+   */
+  public void testFileStringList() throws IOException {
+    FileStringList list = new FileStringList(new File(directory, "names"));
+    StringBuilder longValue = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      longValue.append((char) ('a' + i % 26));
+    }
+    for (int i = 0; i < 10000; i++) {
+      list.add("/caf\u00e9/" + i);
+    }
+    list.add(longValue.toString());
+    list.add("");
+    list.add("/last");
+
+    assertEquals(10003, list.size());
+    assertEquals("/caf\u00e9/0", list.get(0));
+    assertEquals("/caf\u00e9/9999", list.get(9999));
+    assertEquals(longValue.toString(), list.get(10000));
+    assertEquals("", list.get(10001));
+    assertEquals("/last", list.get(10002));
+    list.close();
+  }
+
+  private static String getCsv(Results results) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    results.outputCsv(new PrintStream(bytes));
+    return bytes.toString();
+  }
+}
@@ -0,0 +1,132 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test suite for ParallelCsvWriter. Extends testCase.
+ */
+public class TestParallelCsvWriter extends TestCase {
+
+  private ForkJoinPool pool;
+
+  /**
+   * Creates a pool of 4 threads.
+   */
+  public void setUp() {
+    pool = new ForkJoinPool(4);
+  }
+
+  /**
+   * Shuts down the pool.
+   */
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Tests the output is the same as CsvWriter for tables with no rows, less
+   * than one chunk and many chunks, including a last chunk that is not full.
+   */
+  public void testWrite_sameAsCsvWriter() throws IOException {
+    for (int numRows : new int[] {0, 3, 7, 100, 1001}) {
+      Results results = getResults(numRows, numRows % 2 == 0);
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      new CsvWriter().write(results, Channels.newChannel(expected));
+
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new ParallelCsvWriter(pool, 7).write(results, Channels.newChannel(actual));
+      assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+  }
+
+  /**
+   * Tests writing to a file, which uses gathering writes.
+   */
+  public void testWrite_file() throws IOException {
+    Results results = getResults(500, true);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    new CsvWriter().write(results, Channels.newChannel(expected));
+
+    File file = File.createTempFile("results", ".csv");
+    try {
+      new ParallelCsvWriter(pool, 16).write(results, file);
+      assertTrue(Arrays.equals(expected.toByteArray(), readFile(file)));
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Tests Results writes the same file with and without a pool.
+   */
+  public void testResultsWriteCsv() throws IOException {
+    Results results = getResults(5000, false);
+    File expected = File.createTempFile("expected", ".csv");
+    File actual = File.createTempFile("actual", ".csv");
+    try {
+      results.writeCsv(expected);
+      results.writeCsv(actual, pool);
+      assertTrue(Arrays.equals(readFile(expected), readFile(actual)));
+    } finally {
+      expected.delete();
+      actual.delete();
+    }
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FileInputStream input = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[4096];
+      for (int length; (length = input.read(buffer)) > 0;) {
+        bytes.write(buffer, 0, length);
+      }
+    } finally {
+      input.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Returns a table of 30 days with numRows rows.
+   */
+  private static Results getResults(int numRows, boolean isIntegral) {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setEndDate("2010-01-30");
+    Results results = new Results();
+    results.initTable(dataQuery, new ArrayList<String>());
+    results.setIsSampled(numRows % 3 == 0);
+    double[] row = new double[results.getNumCols()];
+    for (int i = 0; i < numRows; i++) {
+      for (int col = 0; col < row.length; col++) {
+        row[col] = (i * col) % 7 == 0 ? 0 : i + col + (isIntegral ? 0 : 0.5);
+      }
+      results.addRow("/page/" + i, row);
+    }
+    return results;
+  }
+}
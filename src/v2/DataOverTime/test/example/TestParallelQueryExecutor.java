@@ -0,0 +1,222 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+import com.google.gdata.data.analytics.DataFeed;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test suite for ParallelQueryExecutor. Extends TestCase.
+ */
+public class TestParallelQueryExecutor extends TestCase {
+
+  private static final int NUM_QUERIES = 20;
+
+  private AnalyticsServiceMock asMock;
+  private List<DataQuery> queries;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    asMock = new AnalyticsServiceMock("TEST_APP");
+    queries = new ArrayList<DataQuery>(NUM_QUERIES);
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      DataQuery dataQuery = TestUtil.getFilledDataQuery();
+      dataQuery.setFilters(String.valueOf(i));
+      queries.add(dataQuery);
+    }
+  }
+
+  /**
+   * Tests that feeds are added to the results in query order even when
+   * later queries finish first.
+   */
+  public void testExecute_preservesOrder() {
+    SlowDataManager dataManager = new SlowDataManager(asMock);
+    RecordingResultManager resultManager = new RecordingResultManager();
+
+    new ParallelQueryExecutor(4).execute(queries.iterator(), dataManager, resultManager, null);
+
+    assertEquals(NUM_QUERIES, resultManager.order.size());
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      assertEquals(String.valueOf(i), resultManager.order.get(i));
+    }
+  }
+
+  /**
+   * Tests that no more than maxConcurrency requests are made at once.
+   */
+  public void testExecute_limitsConcurrency() {
+    SlowDataManager dataManager = new SlowDataManager(asMock);
+    RecordingResultManager resultManager = new RecordingResultManager();
+
+    new ParallelQueryExecutor(3, 1, Executors.defaultThreadFactory())
+        .execute(queries.iterator(), dataManager, resultManager, null);
+
+    assertTrue(dataManager.maxRunning.get() <= 3);
+    assertEquals(NUM_QUERIES, resultManager.order.size());
+  }
+
+  /**
+   * Tests that an adaptive limiter keeps requests within its maximum limit
+   * and frees every slot once the queries are done.
+   */
+  public void testExecute_adaptiveLimit() {
+    SlowDataManager dataManager = new SlowDataManager(asMock);
+    RecordingResultManager resultManager = new RecordingResultManager();
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4);
+
+    new ParallelQueryExecutor(limiter, 2, Executors.defaultThreadFactory())
+        .execute(queries.iterator(), dataManager, resultManager, null);
+
+    assertTrue(dataManager.maxRunning.get() <= 4);
+    assertEquals(NUM_QUERIES, resultManager.order.size());
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(0, limiter.getQueueDepth());
+  }
+
+  /**
+   * Tests that the shared query returned by an iterator is copied before
+   * being dispatched.
+   */
+  public void testExecute_copiesQueries() {
+    FilteredQueries filteredQueries = new FilteredQueries();
+    filteredQueries.setQuery(TestUtil.getFilledDataQuery());
+    List<String> filterList = new ArrayList<String>();
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      filterList.add(String.valueOf(i));
+    }
+    filteredQueries.setFilterList(filterList);
+
+    SlowDataManager dataManager = new SlowDataManager(asMock);
+    RecordingResultManager resultManager = new RecordingResultManager();
+    new ParallelQueryExecutor(5).execute(filteredQueries, dataManager, resultManager, null);
+
+    assertEquals(filterList, resultManager.order);
+  }
+
+  /**
+   * Tests that an error making a request is passed to the caller.
+   */
+  public void testExecute_propagatesErrors() {
+    DataManager dataManager = new DataManager(asMock) {
+      @Override
+      public DataFeed getFeed(DataQuery dataQuery) {
+        throw new IllegalStateException("failed");
+      }
+    };
+
+    try {
+      new ParallelQueryExecutor(2).execute(queries.iterator(), dataManager,
+          new RecordingResultManager(), null);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests that an Error thrown by a request is passed to the caller instead
+   * of leaving it waiting for the feed.
+   */
+  public void testExecute_propagatesThrowables() {
+    DataManager dataManager = new DataManager(asMock) {
+      @Override
+      public DataFeed getFeed(DataQuery dataQuery) {
+        throw new AssertionError("failed");
+      }
+    };
+
+    try {
+      new ParallelQueryExecutor(2).execute(queries.iterator(), dataManager,
+          new RecordingResultManager(), null);
+      fail();
+    } catch (AssertionError e) {
+      assertEquals("failed", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests that bad limits are rejected.
+   */
+  public void testConstructor_badLimits() {
+    try {
+      new ParallelQueryExecutor(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Returns a feed whose only dimension value is the filter of the query.
+   * Queries with smaller filters take longer so results arrive out of order.
+   */
+  private static class SlowDataManager extends DataManager {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    private final AnalyticsServiceMock asMock;
+
+    SlowDataManager(AnalyticsServiceMock asMock) {
+      super(asMock);
+      this.asMock = asMock;
+    }
+
+    @Override
+    public DataFeed getFeed(DataQuery dataQuery) {
+      int now = running.incrementAndGet();
+      synchronized (maxRunning) {
+        if (now > maxRunning.get()) {
+          maxRunning.set(now);
+        }
+      }
+      try {
+        String filter = dataQuery.getFilters();
+        Thread.sleep(NUM_QUERIES - Integer.parseInt(filter));
+        synchronized (asMock) {
+          return asMock.getDataFeed(new String[][] {{filter}}, new String[][] {{"1"}});
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Records the dimension value of each feed in the order it was added.
+   */
+  private static class RecordingResultManager implements ResultManager {
+    final List<String> order = new ArrayList<String>();
+
+    public void setResults(Results results) {}
+
+    public void addRows(DataFeed feed) {
+      addRows(null, feed);
+    }
+
+    public synchronized void addRows(Results results, DataFeed feed) {
+      order.add(feed.getEntries().get(0).getDimensions().get(0).getValue());
+    }
+  }
+}
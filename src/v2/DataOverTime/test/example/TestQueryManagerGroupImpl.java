@@ -69,6 +69,25 @@ public class TestQueryManagerGroupImpl extends TestCase {
   }
 
 
+  /**
+   * Tests that getFilteredQueries does not change the caller's query and
+   * does not depend on the bucket manager being initialized.
+   */
+  public void testGetFilteredQueries_doesNotChangeQuery() {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setFilters("ga:medium==cpc");
+    String expectedUrl = dataQuery.getUrl().toString();
+    List<String> dimensionValues = new ArrayList<String>();
+    dimensionValues.add("google");
+
+    FilteredQueries queries = queryManager.getFilteredQueries(dataQuery, dimensionValues);
+
+    assertEquals(expectedUrl, dataQuery.getUrl().toString());
+    assertNotSame(dataQuery, queries.getQuery());
+    assertEquals(1, queries.getFilterList().size());
+    assertEquals("ga:landingPagePath==google", queries.getFilterList().get(0));
+  }
+
   /**
    * Tests getting the new updated query.
    */
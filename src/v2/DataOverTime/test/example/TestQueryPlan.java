@@ -0,0 +1,119 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Test suite for QueryPlan. Extends TestCase.
+ */
+public class TestQueryPlan extends TestCase {
+
+  private DataQuery dataQuery;
+  private List<String> filterList;
+  private QueryPlan plan;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setFilters("ga:medium==cpc;");
+    filterList = TestUtil.toList(new String[] {"ga:source==a", "ga:source==b"});
+    plan = new QueryPlan(dataQuery, filterList);
+  }
+
+  /**
+   * Tests that each query has the original filter followed by its filter.
+   */
+  public void testGetQuery() {
+    assertEquals(2, plan.size());
+    assertEquals("ga:medium==cpc;ga:source==a", plan.getQuery(0).getFilters());
+    assertEquals("ga:medium==cpc;ga:source==b", plan.getQuery(1).getFilters());
+  }
+
+  /**
+   * Tests that each call returns a new query and that changing a returned
+   * query or the original query does not change the plan.
+   */
+  public void testGetQuery_isImmutable() {
+    DataQuery query = plan.getQuery(0);
+    assertNotSame(query, plan.getQuery(0));
+
+    query.setFilters("ga:source==c");
+    dataQuery.setFilters("ga:medium==organic;");
+    assertEquals("ga:medium==cpc;ga:source==a", plan.getQuery(0).getFilters());
+  }
+
+  /**
+   * Tests that the plan can be iterated more than once.
+   */
+  public void testIterator() {
+    for (int pass = 0; pass < 2; pass++) {
+      Iterator<DataQuery> iterator = plan.iterator();
+      assertTrue(iterator.hasNext());
+      assertEquals("ga:medium==cpc;ga:source==a", iterator.next().getFilters());
+      assertEquals("ga:medium==cpc;ga:source==b", iterator.next().getFilters());
+      assertFalse(iterator.hasNext());
+    }
+  }
+
+  /**
+   * Tests that the filter list can not be changed.
+   */
+  public void testGetFilterList_unmodifiable() {
+    try {
+      plan.getFilterList().add("ga:source==c");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Tests that queries without a filter only get the plan's filters.
+   */
+  public void testGetQuery_noOriginalFilter() {
+    dataQuery.setFilters(null);
+    QueryPlan noFilterPlan = new QueryPlan(dataQuery, filterList);
+    assertEquals("ga:source==a", noFilterPlan.getQuery(0).getFilters());
+  }
+
+  /**
+   * Tests that a combined plan has the queries of each part with the dates
+   * of that part.
+   */
+  public void testCombine() {
+    DataQuery laterQuery = TestUtil.getFilledDataQuery();
+    laterQuery.setStartDate("2010-01-10");
+    QueryPlan later = new QueryPlan(laterQuery,
+        TestUtil.toList(new String[] {"ga:source==c"}));
+    QueryPlan combined = QueryPlan.combine(dataQuery, Arrays.asList(plan, later));
+
+    assertEquals(3, combined.size());
+    assertEquals("ga:medium==cpc;ga:source==b", combined.getQuery(1).getFilters());
+    assertEquals("2010-01-01", combined.getQuery(1).getStartDate());
+    assertEquals("ga:source==c", combined.getQuery(2).getFilters());
+    assertEquals("2010-01-10", combined.getQuery(2).getStartDate());
+    assertEquals(later.getQuery(0).getUrl(), combined.getQuery(2).getUrl());
+    assertEquals("2010-01-01", combined.getBaseQuery().getStartDate());
+    assertNull(combined.getBucketReport());
+  }
+}
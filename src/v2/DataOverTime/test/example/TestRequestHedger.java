@@ -0,0 +1,167 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test suite for RequestHedger. Extends testCase.
+ */
+public class TestRequestHedger extends TestCase {
+
+  private static final long MILLIS = 1000000;
+
+  private RequestHedger hedger;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    hedger = new RequestHedger(0.9, 0.1, Executors.defaultThreadFactory());
+  }
+
+  /**
+   * Stops the hedger's threads.
+   */
+  public void tearDown() {
+    hedger.shutdown();
+  }
+
+  /**
+   * Tests the hedge delay is a percentile of recent latencies.
+   */
+  public void testGetHedgeDelayNanos() {
+    assertEquals(-1, hedger.getHedgeDelayNanos());
+    for (int i = 1; i <= RequestHedger.MIN_SAMPLES * 5; i++) {
+      hedger.addSample(i * MILLIS);
+    }
+    assertEquals(91 * MILLIS, hedger.getHedgeDelayNanos());
+  }
+
+  /**
+   * Tests a slow request is sent again and the faster copy is used.
+   */
+  public void testExecute_hedges() {
+    addSamples(10 * MILLIS);
+    SlowFirstRequest request = new SlowFirstRequest();
+    RequestHedger.Budget budget = hedger.newBudget(10);
+
+    assertEquals("second", hedger.execute(request, budget));
+    assertEquals(2, request.calls.get());
+    assertEquals(1, budget.getUsed());
+    assertEquals(1, hedger.getHedgeCount());
+    assertEquals(1, hedger.getHedgeWinCount());
+  }
+
+  /**
+   * Tests the time a hedged request waited is recorded, so slow requests
+   * raise the hedge delay even when the hedge answers first.
+   */
+  public void testExecute_recordsHedgedLatency() {
+    RequestHedger maxHedger = new RequestHedger(0.99, 0.1, Executors.defaultThreadFactory());
+    try {
+      for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+        maxHedger.addSample(10 * MILLIS);
+      }
+      assertEquals("second", maxHedger.execute(new SlowFirstRequest(), maxHedger.newBudget(10)));
+      assertEquals(1, maxHedger.getHedgeWinCount());
+      assertTrue(maxHedger.getHedgeDelayNanos() > 10 * MILLIS);
+    } finally {
+      maxHedger.shutdown();
+    }
+  }
+
+  /**
+   * Tests nothing is hedged before enough requests have completed, or once
+   * the budget is used up.
+   */
+  public void testExecute_notHedged() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    Callable<String> request = new Callable<String>() {
+      @Override
+      public String call() throws InterruptedException {
+        release.await(50, TimeUnit.MILLISECONDS);
+        return "only";
+      }
+    };
+    assertEquals("only", hedger.execute(request, hedger.newBudget(10)));
+
+    addSamples(MILLIS);
+    RequestHedger.Budget budget = new RequestHedger.Budget(0);
+    assertEquals("only", hedger.execute(request, budget));
+    assertEquals(0, budget.getUsed());
+    assertEquals(0, hedger.getHedgeCount());
+  }
+
+  /**
+   * Tests the error of a request is thrown when every copy fails.
+   */
+  public void testExecute_error() {
+    try {
+      hedger.execute(new Callable<String>() {
+        @Override
+        public String call() {
+          throw new IllegalStateException("failed");
+        }
+      }, hedger.newBudget(10));
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests the budget of a job allows a fraction of its queries, which may
+   * be 0.
+   */
+  public void testNewBudget() {
+    assertEquals(1, hedger.newBudget(1).getLimit());
+    assertEquals(10, hedger.newBudget(100).getLimit());
+    assertEquals(11, hedger.newBudget(101).getLimit());
+    RequestHedger noHedger = new RequestHedger(0.9, 0, Executors.defaultThreadFactory());
+    try {
+      assertEquals(0, noHedger.newBudget(100).getLimit());
+    } finally {
+      noHedger.shutdown();
+    }
+  }
+
+  private void addSamples(long latencyNanos) {
+    for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+      hedger.addSample(latencyNanos);
+    }
+  }
+
+  /**
+   * A request whose first call waits until it is cancelled.
+   */
+  private static class SlowFirstRequest implements Callable<String> {
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public String call() throws InterruptedException {
+      if (calls.incrementAndGet() == 1) {
+        new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+        return "first";
+      }
+      return "second";
+    }
+  }
+}
@@ -0,0 +1,202 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.util.ServiceException;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test suite for RequestScheduler. Extends testCase.
+ */
+public class TestRequestScheduler extends TestCase {
+
+  private static final String TABLE_ID = "ga:1234";
+
+  /**
+   * Tests a request is retried after a retryable error.
+   */
+  public void testExecute_retry() {
+    FakeClockScheduler scheduler = new FakeClockScheduler(100, 0, 3);
+    FailingRequest request = new FailingRequest(2, 503);
+    assertEquals("ok", scheduler.execute(TABLE_ID, request));
+
+    assertEquals(3, request.attempts);
+    assertEquals(3, scheduler.getRequestCount());
+    assertEquals(2, scheduler.getRetryCount());
+    // Backoff waits are 50-100 ms then 100-200 ms.
+    assertEquals(2, scheduler.sleeps.size());
+    assertTrue(scheduler.sleeps.get(0) >= 50 && scheduler.sleeps.get(0) <= 100);
+    assertTrue(scheduler.sleeps.get(1) >= 100 && scheduler.sleeps.get(1) <= 200);
+  }
+
+  /**
+   * Tests IOExceptions are retried and the last error is thrown once every
+   * retry has failed.
+   */
+  public void testExecute_tooManyFailures() {
+    FakeClockScheduler scheduler = new FakeClockScheduler(100, 0, 2);
+    FailingRequest request = new FailingRequest(10, 0);
+    try {
+      scheduler.execute(TABLE_ID, request);
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertEquals(3, request.attempts);
+  }
+
+  /**
+   * Tests errors which can not be retried are thrown at once.
+   */
+  public void testExecute_notRetryable() {
+    FakeClockScheduler scheduler = new FakeClockScheduler(100, 0, 3);
+    FailingRequest request = new FailingRequest(1, 400);
+    try {
+      scheduler.execute(TABLE_ID, request);
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof ServiceException);
+    }
+    assertEquals(1, request.attempts);
+    assertEquals(0, scheduler.getRetryCount());
+  }
+
+  /**
+   * Tests requests wait for the token bucket of their profile only.
+   */
+  public void testExecute_rateLimit() {
+    FakeClockScheduler scheduler = new FakeClockScheduler(2, 0, 0);
+    scheduler.execute(TABLE_ID, new FailingRequest(0, 0));
+    scheduler.execute(TABLE_ID, new FailingRequest(0, 0));
+    assertTrue(scheduler.sleeps.isEmpty());
+
+    scheduler.execute(TABLE_ID, new FailingRequest(0, 0));
+    assertEquals(1, scheduler.sleeps.size());
+    assertEquals(500, scheduler.sleeps.get(0).longValue());
+
+    scheduler.execute("ga:5678", new FailingRequest(0, 0));
+    assertEquals(1, scheduler.sleeps.size());
+  }
+
+  /**
+   * Tests the daily quota is counted for each profile and reset each day.
+   */
+  public void testExecute_dailyQuota() {
+    FakeClockScheduler scheduler = new FakeClockScheduler(100, 2, 0);
+    scheduler.execute(TABLE_ID, new FailingRequest(0, 0));
+    scheduler.execute(TABLE_ID, new FailingRequest(0, 0));
+    assertEquals(2, scheduler.getQuotaUsed(TABLE_ID));
+    assertEquals(0, scheduler.getQuotaRemaining(TABLE_ID));
+    assertEquals(2, scheduler.getQuotaRemaining("ga:5678"));
+
+    FailingRequest request = new FailingRequest(0, 0);
+    try {
+      scheduler.execute(TABLE_ID, request);
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    assertEquals(0, request.attempts);
+
+    scheduler.today++;
+    assertEquals(0, scheduler.getQuotaUsed(TABLE_ID));
+    scheduler.execute(TABLE_ID, request);
+    assertEquals(1, request.attempts);
+  }
+
+  /**
+   * Tests which service errors are retried.
+   */
+  public void testIsRetryable() {
+    assertTrue(RequestScheduler.isRetryable(newServiceException(503, "")));
+    assertTrue(RequestScheduler.isRetryable(newServiceException(500, "")));
+    assertTrue(RequestScheduler.isRetryable(newServiceException(403, "userRateLimitExceeded")));
+    assertFalse(RequestScheduler.isRetryable(newServiceException(403, "dailyLimitExceeded")));
+    assertFalse(RequestScheduler.isRetryable(newServiceException(400, "invalidParameter")));
+    assertFalse(RequestScheduler.isRetryable(newServiceException(401, "")));
+  }
+
+  private static ServiceException newServiceException(int code, String message) {
+    ServiceException e = new ServiceException(message);
+    e.setHttpErrorCodeOverride(code);
+    return e;
+  }
+
+  /**
+   * A request that fails a number of times before it succeeds.
+   */
+  private static class FailingRequest implements RequestScheduler.Request<String> {
+    private final int failures;
+    private final int code;
+    int attempts;
+
+    /**
+     * @param failures The number of times to fail.
+     * @param code The HTTP status code of each failure, or 0 to throw an
+     *     IOException.
+     */
+    FailingRequest(int failures, int code) {
+      this.failures = failures;
+      this.code = code;
+    }
+
+    @Override
+    public String send() throws IOException, ServiceException {
+      if (attempts++ < failures) {
+        if (code == 0) {
+          throw new IOException("Connection reset");
+        }
+        throw newServiceException(code, "Error " + code);
+      }
+      return "ok";
+    }
+  }
+
+  /**
+   * A scheduler whose clock only moves when it sleeps. Sleeps are recorded
+   * in milliseconds.
+   */
+  private static class FakeClockScheduler extends RequestScheduler {
+    final List<Long> sleeps = new ArrayList<Long>();
+    int today = 14610;
+    long nanos;
+
+    FakeClockScheduler(double requestsPerSecond, int dailyQuota, int maxRetries) {
+      super(requestsPerSecond, dailyQuota, maxRetries, 100, 1000);
+    }
+
+    @Override
+    protected int getToday() {
+      return today;
+    }
+
+    @Override
+    protected long nanoTime() {
+      return nanos;
+    }
+
+    @Override
+    protected void sleep(long nanos) {
+      if (nanos > 0) {
+        sleeps.add(nanos / 1000000);
+        this.nanos += nanos;
+      }
+    }
+  }
+}
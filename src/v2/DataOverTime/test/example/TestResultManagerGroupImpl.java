@@ -21,6 +21,7 @@ import com.google.gdata.data.analytics.DataFeed;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -86,6 +87,28 @@ public class TestResultManagerGroupImpl extends TestCase {
     }
   }
 
+  /**
+   * Tests that rows can be added to a Results object passed in without
+   * setting the results first.
+   */
+  public void testAddRows_withResults() {
+    results = new Results();
+    results.initTable(dataQuery, dimensionValues);
+
+    String[][] expectedDimensionValues = new String[][] {{"a", "b"},
+        {"20100101", "20100102"}};
+    String[][] expectedMetricValues = new String[][] {{"1", "2"}};
+
+    DataFeed feed = asMock.getDataFeed(dimensionNames, expectedDimensionValues,
+        expectedMetricValues);
+    new ResultManagerGroupImpl().addRows(results, feed);
+
+    table = results.getTable();
+    assertEquals(2, table.size());
+    assertEquals(3, table.get(0).size());
+    assertEquals(new Double(2), table.get(1).get(1));
+  }
+
   /**
    * Tests adding many rows.
    */
@@ -233,6 +256,33 @@ public class TestResultManagerGroupImpl extends TestCase {
     assertEquals(new Double(0), table.get(1).get(1));
   }
 
+  /**
+   * Tests gaps across a month boundary are filled, and that a row with
+   * values late in the date range does not leave values in the next row.
+   */
+  public void testAddRows_acrossMonthBoundary() {
+    dataQuery.setStartDate("2010-01-30");
+    dataQuery.setEndDate("2010-02-02");
+    results = new Results();
+    results.initTable(dataQuery, dimensionValues);
+
+    String[][] expectedDimensionValues = new String[][] {{"a", "a", "b"},
+        {"20100130", "20100202", "20100131"}};
+    String[][] expectedMetricValues = new String[][] {{"1", "2", "3"}};
+    DataFeed feed = asMock.getDataFeed(dimensionNames, expectedDimensionValues,
+        expectedMetricValues);
+    resultManager.addRows(results, feed);
+
+    assertTrue(Arrays.equals(new double[] {1, 0, 0, 2}, getRow(results, 0)));
+    assertTrue(Arrays.equals(new double[] {0, 3, 0, 0}, getRow(results, 1)));
+  }
+
+  private static double[] getRow(Results results, int row) {
+    double[] values = new double[results.getNumCols()];
+    results.getCellMatrix().getRow(row, values);
+    return values;
+  }
+
   /**
    * Test 0's are added if the last date in the first row is less than
    * the last day in the date range.
@@ -304,6 +354,29 @@ public class TestResultManagerGroupImpl extends TestCase {
     assertTrue(results.getIsSampled());
   }
 
+  /**
+   * Tests row names are the dimension value objects the table was
+   * initialized with, and that values missing from them are added to the
+   * dimension dictionary.
+   */
+  public void testAddRows_dictionary() {
+    String a = new String("a");
+    dimensionValues.add(a);
+    results = new Results();
+    results.initTable(dataQuery, dimensionValues);
+
+    String[][] expectedDimensionValues = new String[][] {{"a", "a", "c"},
+        {"20100101", "20100102", "20100101"}};
+    String[][] expectedMetricValues = new String[][] {{"1", "2", "3"}};
+    DataFeed feed = asMock.getDataFeed(dimensionNames, expectedDimensionValues,
+        expectedMetricValues);
+    resultManager.addRows(results, feed);
+
+    assertEquals(TestUtil.toList(new String[] {"a", "c"}), results.getRowNames());
+    assertSame(a, results.getRowNames().get(0));
+    assertEquals(1, results.getDimensionDictionary().findId("c"));
+  }
+
   /**
    * Tests that 0 values will be added between two dates.
    */
@@ -70,10 +70,13 @@ public class TestResultManagerIndividualImpl extends TestCase {
     resultManager.addRows(testFeed);
 
     List<List<Double>> table = results.getTable();
-    for (int i = 0; i < table.get(0).size(); i++) {
+    for (int i = 0; i < testMetrics[0].length; i++) {
       Double value = new Double(testMetrics[0][i]);
       assertEquals(value, table.get(0).get(i));
     }
+    // Rows are padded with 0 to the number of days.
+    assertEquals(results.getNumCols(), table.get(0).size());
+    assertEquals(0.0, table.get(0).get(testMetrics[0].length));
   }
 
   /**
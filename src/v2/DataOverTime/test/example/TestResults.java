@@ -19,7 +19,10 @@ import com.google.gdata.client.analytics.DataQuery;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -61,4 +64,93 @@ public class TestResults extends TestCase {
       assertEquals(expected, result);
     }
   }
+
+  /**
+   * Tests rows added as arrays and lists are stored in the matrix.
+   */
+  public void testAddRow() {
+    Results results = getResults(3);
+    double[] row = {1, 2, 3};
+    results.addRow("/foo", row);
+    row[0] = 10;  // The array is copied.
+    results.addRow("/bar", Arrays.asList(4.0, 5.0));
+
+    assertEquals(2, results.getNumTableRows());
+    assertEquals(1.0, results.getValue(0, 0));
+    assertEquals(Arrays.asList(4.0, 5.0, 0.0), results.getRow(1));
+    assertEquals(TestUtil.toList(new String[] {"/foo", "/bar"}), results.getRowNames());
+    assertTrue(results.getCellMatrix().isIntegral());
+
+    try {
+      results.addRow("/baz", new double[] {1, 2});
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Tests row, column and table views write through to the matrix.
+   */
+  public void testViews() {
+    Results results = getResults(3);
+    results.addRow("/foo", new double[] {1, 2, 3});
+    results.addRow("/bar", new double[] {4, 5, 6});
+
+    assertEquals(Arrays.asList(2.0, 5.0), results.getColumn(1));
+    List<List<Double>> table = results.getTable();
+    assertEquals(2, table.size());
+    assertEquals(Arrays.asList(4.0, 5.0, 6.0), table.get(1));
+
+    table.get(1).set(0, 7.5);
+    assertEquals(7.5, results.getValue(1, 0));
+    assertEquals(7.5, results.getColumn(0).get(1));
+    assertFalse(results.getCellMatrix().isIntegral());
+
+    results.getColumn(2).set(0, 9.0);
+    assertEquals(9.0, results.getRow(0).get(2));
+  }
+
+  /**
+   * Tests setTable copies the rows, even if they are views of the table.
+   */
+  public void testSetTable() {
+    Results results = getResults(2);
+    results.addRow("/foo", new double[] {1, 2});
+    results.addRow("/bar", new double[] {3, 4});
+
+    List<List<Double>> table = new ArrayList<List<Double>>();
+    table.add(results.getRow(1));
+    table.add(results.getRow(0));
+    results.setRowNames(TestUtil.toList(new String[] {"/bar", "/foo"}));
+    results.setTable(table);
+
+    assertEquals(Arrays.asList(3.0, 4.0), results.getRow(0));
+    assertEquals(Arrays.asList(1.0, 2.0), results.getRow(1));
+  }
+
+  /**
+   * Tests the CSV output of the matrix.
+   */
+  public void testOutputCsv() {
+    Results results = getResults(2);
+    results.addRow("/foo", new double[] {1, 2.5});
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    results.outputCsv(new PrintStream(bytes));
+
+    String expected = "ga:landingPagePath,2010-01-01,2010-01-02,Total\n/foo,1.0,2.5,3.5\n";
+    assertEquals(expected, bytes.toString());
+  }
+
+  /**
+   * Returns an empty Results object with the first numDays of the filled
+   * query.
+   */
+  private Results getResults(int numDays) {
+    DataQuery dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setEndDate(EpochDay.toQueryDate(EpochDay.parse("2010-01-01") + numDays - 1));
+    Results results = new Results();
+    results.initTable(dataQuery, new ArrayList<String>());
+    return results;
+  }
 }
@@ -0,0 +1,239 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Test suite for ResultsSnapshot and incremental runs of DataOverTime.
+ * Extends TestCase.
+ */
+public class TestResultsSnapshot extends TestCase {
+
+  private File file;
+  private RangeDataManager dataManager;
+  private DataOverTime dataOverTime;
+  private DataQuery dataQuery;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() throws IOException {
+    file = File.createTempFile("results", ".snapshot");
+    file.delete();
+    dataManager = new RangeDataManager(TestUtil.toList(new String[] {"a", "b"}));
+    dataOverTime = new DataOverTime(dataManager, new QueryManagerGroupImpl(new BucketManager()),
+        new ResultManagerGroupImpl());
+    dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setDimensions("ga:source");
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-10");
+  }
+
+  /**
+   * Removes the snapshot file.
+   */
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Tests a snapshot is read back with the same contents.
+   */
+  public void testWriteAndRead() throws IOException {
+    Results results = dataOverTime.getData(dataQuery);
+    results.setIsSampled(true);
+    new ResultsSnapshot("key", results).write(file);
+
+    ResultsSnapshot snapshot = ResultsSnapshot.read(file);
+    assertEquals("key", snapshot.getSeriesKey());
+    assertResultsEqual(results, snapshot.getResults());
+    assertTrue(snapshot.getResults().getIsSampled());
+    assertEquals(results.getOriginalDimensionValues(),
+        snapshot.getResults().getOriginalDimensionValues());
+  }
+
+  /**
+   * Tests a refresh only requests the new dates for previous values and
+   * every date for new values, and matches a full run.
+   */
+  public void testRefresh() throws IOException {
+    dataOverTime.refresh(new DataOverTimeJob(dataQuery), file);
+    assertEquals(2 * 10, dataManager.requestedDays);
+
+    dataQuery.setStartDate("2010-01-03");
+    dataQuery.setEndDate("2010-01-12");
+    dataManager.setDimensionValues(TestUtil.toList(new String[] {"c", "a"}));
+    dataManager.requestedDays = 0;
+    DataOverTimeJob job = new DataOverTimeJob(dataQuery);
+    dataOverTime.refresh(job, file);
+    assertEquals(2 * 2 + 10, dataManager.requestedDays);
+
+    Results results = job.getResults();
+    assertEquals(TestUtil.toList(new String[] {"a", "b", "c"}), results.getRowNames());
+    assertEquals(10, results.getNumCols());
+    assertEquals("2010-01-03", results.getColNames().get(0));
+    List<String> rowNames = results.getRowNames();
+    for (int row = 0; row < rowNames.size(); row++) {
+      for (int col = 0; col < 10; col++) {
+        assertEquals(RangeDataManager.getValue(rowNames.get(row),
+            EpochDay.parse("2010-01-03") + col), results.getTable().get(row).get(col));
+      }
+    }
+    assertResultsEqual(results, ResultsSnapshot.read(file).getResults());
+  }
+
+  /**
+   * Tests a snapshot from a different query is not used.
+   */
+  public void testRefresh_differentQuery() throws IOException {
+    dataOverTime.refresh(new DataOverTimeJob(dataQuery), file);
+    dataQuery.setMetrics("ga:visits");
+    dataManager.requestedDays = 0;
+    dataOverTime.refresh(new DataOverTimeJob(dataQuery), file);
+    assertEquals(2 * 10, dataManager.requestedDays);
+  }
+
+  /**
+   * Tests the rows of a snapshot are mapped read only, and that strings
+   * which are not ASCII and values which are not whole numbers are kept.
+   */
+  public void testRead_mapped() throws IOException {
+    Results results = new Results();
+    results.initTable(dataQuery, TestUtil.toList(new String[] {"/caf\u00e9", "\ud83d\ude00", "x"}));
+    double[] row = new double[results.getNumCols()];
+    row[2] = 1.5;
+    results.addRow("/caf\u00e9", row);
+    row[9] = -3;
+    results.addRow("\ud83d\ude00", row);
+    new ResultsSnapshot("key", results).write(file);
+
+    Results actual = ResultsSnapshot.read(file).getResults();
+    assertResultsEqual(results, actual);
+    assertEquals(results.getOriginalDimensionValues(), actual.getOriginalDimensionValues());
+    assertFalse(actual.getCellMatrix().isIntegral());
+    assertEquals(-3.0, actual.getValue(1, 9));
+    try {
+      actual.addRow("y", row);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+    try {
+      actual.setValue(0, 0, 1.0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+
+    // The table can be copied to change it.
+    actual.setTable(new ArrayList<List<Double>>(actual.getTable()));
+    actual.setValue(0, 0, 1.0);
+    assertEquals(1.0, actual.getValue(0, 0));
+  }
+
+  /**
+   * Tests a compressed snapshot is read back with the same contents.
+   */
+  public void testWriteCompressed() throws IOException {
+    Results results = dataOverTime.getData(dataQuery);
+    results.setIsSampled(true);
+    results.setValue(1, 3, 2.75);
+    new ResultsSnapshot("key", results).writeCompressed(file);
+
+    ResultsSnapshot snapshot = ResultsSnapshot.read(file);
+    assertEquals("key", snapshot.getSeriesKey());
+    assertResultsEqual(results, snapshot.getResults());
+    assertTrue(snapshot.getResults().getIsSampled());
+    assertEquals(results.getOriginalDimensionValues(),
+        snapshot.getResults().getOriginalDimensionValues());
+  }
+
+  /**
+   * Tests a snapshot with no rows.
+   */
+  public void testWriteAndRead_empty() throws IOException {
+    Results results = new Results();
+    results.initTable(dataQuery, new ArrayList<String>());
+    new ResultsSnapshot("key", results).write(file);
+
+    Results actual = ResultsSnapshot.read(file).getResults();
+    assertResultsEqual(results, actual);
+    assertEquals(0, actual.getNumTableRows());
+  }
+
+  /**
+   * Tests a snapshot in the gzip format of version 1 can still be read.
+   */
+  public void testRead_version1() throws IOException {
+    DataOutputStream output = new DataOutputStream(
+        new GZIPOutputStream(new FileOutputStream(file)));
+    output.writeInt(1);
+    output.writeUTF("key");
+    output.writeUTF("ga:source");
+    output.writeBoolean(true);
+    output.writeInt(2);
+    output.writeUTF("2010-01-01");
+    output.writeUTF("2010-01-02");
+    output.writeInt(1);
+    output.writeUTF("a");
+    output.writeInt(1);
+    output.writeUTF("a");
+    output.writeDouble(4);
+    output.writeDouble(5);
+    output.close();
+
+    ResultsSnapshot snapshot = ResultsSnapshot.read(file);
+    assertEquals("key", snapshot.getSeriesKey());
+    Results results = snapshot.getResults();
+    assertTrue(results.getIsSampled());
+    assertEquals(TestUtil.toList(new String[] {"2010-01-01", "2010-01-02"}),
+        results.getColNames());
+    assertEquals(5.0, results.getValue(0, 1));
+  }
+
+  /**
+   * Tests a file that is cut short is rejected.
+   */
+  public void testRead_truncated() throws IOException {
+    new ResultsSnapshot("key", dataOverTime.getData(dataQuery)).write(file);
+    RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+    truncated.setLength(truncated.length() - 8);
+    truncated.close();
+    try {
+      ResultsSnapshot.read(file);
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  private static void assertResultsEqual(Results expected, Results actual) {
+    assertEquals(expected.getDimensionName(), actual.getDimensionName());
+    assertEquals(expected.getColNames(), actual.getColNames());
+    assertEquals(expected.getRowNames(), actual.getRowNames());
+    assertEquals(expected.getTable(), actual.getTable());
+  }
+}
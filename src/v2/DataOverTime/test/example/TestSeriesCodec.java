@@ -0,0 +1,123 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test suite for SeriesCodec, BitOutput and BitInput. Extends testCase.
+ */
+public class TestSeriesCodec extends TestCase {
+
+  /**
+   * Tests values of every length are read back.
+   */
+  public void testBits() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BitOutput output = new BitOutput(bytes);
+    output.write(-1L, 0);
+    for (int length = 1; length <= 64; length++) {
+      output.write(-1L >>> (64 - length) & 0x5555555555555555L, length);
+    }
+    output.writeBit(true);
+    output.align();
+
+    BitInput input = new BitInput(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(0, input.read(0));
+    for (int length = 1; length <= 64; length++) {
+      assertEquals(-1L >>> (64 - length) & 0x5555555555555555L, input.read(length));
+    }
+    assertTrue(input.readBit());
+  }
+
+  /**
+   * Tests rows of whole numbers, including large and negative numbers.
+   */
+  public void testIntegral() throws IOException {
+    assertRoundTrip(new double[] {0, 0, 0, 0, 0});
+    assertRoundTrip(new double[] {10, 12, 11, 11, 15, 0, 3});
+    assertRoundTrip(new double[] {-5, 1e15, -1e15, 4503599627370495.0, 7});
+    assertRoundTrip(new double[] {});
+  }
+
+  /**
+   * Tests rows with values that are not whole numbers.
+   */
+  public void testXor() throws IOException {
+    assertRoundTrip(new double[] {0.5, 0.5, 0.75, 0, 12.25, 12.5});
+    assertRoundTrip(new double[] {-0.0, 1, 2});
+    assertRoundTrip(new double[] {1e300, Double.NaN, Double.POSITIVE_INFINITY,
+        Double.NEGATIVE_INFINITY, Double.MIN_VALUE, 4503599627370496.0});
+  }
+
+  /**
+   * Tests random rows, which use both encodings.
+   */
+  public void testRandom() throws IOException {
+    Random random = new Random(17);
+    for (int i = 0; i < 200; i++) {
+      double[] row = new double[random.nextInt(400)];
+      boolean isIntegral = random.nextBoolean();
+      for (int col = 0; col < row.length; col++) {
+        if (random.nextInt(3) > 0) {
+          row[col] = isIntegral ? random.nextInt(1000) : random.nextDouble() * 1000;
+        }
+      }
+      assertRoundTrip(row);
+    }
+  }
+
+  /**
+   * Tests a slowly changing series of whole numbers is much smaller than
+   * its doubles.
+   */
+  public void testSize() throws IOException {
+    double[] row = new double[365];
+    for (int col = 0; col < row.length; col++) {
+      row[col] = 1000 + col * 3 + col % 7;
+    }
+    assertTrue(assertRoundTrip(row) * 10 < row.length * 8);
+  }
+
+  /**
+   * Encodes and decodes a row followed by a second row, and checks both
+   * are read back with the same bits.
+   * @return The number of bytes of the encoded row.
+   */
+  private static int assertRoundTrip(double[] row) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BitOutput output = new BitOutput(bytes);
+    SeriesCodec.encode(row, row.length, output);
+    int size = bytes.size();
+    double[] next = {1, 2.5};
+    SeriesCodec.encode(next, next.length, output);
+
+    BitInput input = new BitInput(new ByteArrayInputStream(bytes.toByteArray()));
+    double[] actual = new double[row.length];
+    SeriesCodec.decode(input, actual, row.length);
+    for (int i = 0; i < row.length; i++) {
+      assertEquals(Double.doubleToRawLongBits(row[i]), Double.doubleToRawLongBits(actual[i]));
+    }
+    double[] actualNext = new double[next.length];
+    SeriesCodec.decode(input, actualNext, next.length);
+    assertTrue(Arrays.equals(next, actualNext));
+    return size;
+  }
+}
@@ -0,0 +1,116 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test suite for SingleFlight. Extends testCase.
+ */
+public class TestSingleFlight extends TestCase {
+
+  private static final int NUM_CALLERS = 8;
+
+  /**
+   * Tests callers for the same key share one call.
+   */
+  public void testExecute_shared() throws InterruptedException {
+    final SingleFlight<String> singleFlight = new SingleFlight<String>();
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Callable<String> call = new Callable<String>() {
+      @Override
+      public String call() throws InterruptedException {
+        calls.incrementAndGet();
+        release.await(10, TimeUnit.SECONDS);
+        return "feed";
+      }
+    };
+
+    final List<String> values = new ArrayList<String>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < NUM_CALLERS; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          String value = singleFlight.execute("key", call);
+          synchronized (values) {
+            values.add(value);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    while (singleFlight.getSharedCount() < NUM_CALLERS - 1) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join(10000);
+    }
+
+    assertEquals(1, calls.get());
+    assertEquals(NUM_CALLERS, values.size());
+    for (String value : values) {
+      assertEquals("feed", value);
+    }
+    assertEquals(0, singleFlight.getInFlightCount());
+  }
+
+  /**
+   * Tests a key is called again once its call has completed, and that
+   * different keys are not shared.
+   */
+  public void testExecute_sequential() {
+    SingleFlight<Integer> singleFlight = new SingleFlight<Integer>();
+    final AtomicInteger calls = new AtomicInteger();
+    Callable<Integer> call = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return calls.incrementAndGet();
+      }
+    };
+    assertEquals(1, singleFlight.execute("a", call).intValue());
+    assertEquals(2, singleFlight.execute("a", call).intValue());
+    assertEquals(3, singleFlight.execute("b", call).intValue());
+    assertEquals(0, singleFlight.getSharedCount());
+  }
+
+  /**
+   * Tests the exception of a call is thrown to the caller.
+   */
+  public void testExecute_error() {
+    SingleFlight<String> singleFlight = new SingleFlight<String>();
+    try {
+      singleFlight.execute("key", new Callable<String>() {
+        @Override
+        public String call() {
+          throw new IllegalStateException("failed");
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+    }
+    assertEquals(0, singleFlight.getInFlightCount());
+  }
+}
@@ -0,0 +1,162 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example;
+
+import com.google.gdata.client.analytics.DataQuery;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test suite for StreamingFeedParser and ResultsRowSink. Extends testCase.
+ */
+public class TestStreamingFeedParser extends TestCase {
+
+  static final String FEED_START = "<?xml version='1.0' encoding='UTF-8'?>"
+      + "<feed xmlns='http://www.w3.org/2005/Atom'"
+      + " xmlns:dxp='http://schemas.google.com/analytics/2009'>"
+      + "<title>Google Analytics Data for Profile 1234</title>"
+      + "<dxp:aggregates><dxp:metric confidenceInterval='0.0' name='ga:visits'"
+      + " type='integer' value='999'/></dxp:aggregates>";
+  static final String FEED_END = "</feed>";
+
+  private DataQuery dataQuery;
+  private Results results;
+  private StreamingFeedParser parser;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    dataQuery = TestUtil.getFilledDataQuery();
+    dataQuery.setStartDate("2010-01-01");
+    dataQuery.setEndDate("2010-01-03");
+    results = new Results();
+    results.initTable(dataQuery, TestUtil.toList(new String[] {"/a", "/b"}));
+    parser = new StreamingFeedParser();
+  }
+
+  /**
+   * Tests entries are parsed into rows, with missing days left as 0.
+   */
+  public void testParse() throws IOException {
+    String feed = FEED_START
+        + getEntry("/a", "20100101", "1", "0.0")
+        + getEntry("/a", "20100103", "3", "0.0")
+        + getEntry("/b", "20100102", "5", "0.0")
+        + FEED_END;
+
+    int numEntries = parser.parse(toStream(feed), results.getDimensionDictionary(),
+        new ResultsRowSink(results));
+
+    assertEquals(3, numEntries);
+    assertEquals(TestUtil.toList(new String[] {"/a", "/b"}), results.getRowNames());
+    assertEquals(Arrays.asList(1.0, 0.0, 3.0), results.getTable().get(0));
+    assertEquals(Arrays.asList(0.0, 5.0, 0.0), results.getTable().get(1));
+    assertFalse(results.getIsSampled());
+  }
+
+  /**
+   * Tests sampled data and values missing from the dictionary.
+   */
+  public void testParse_sampledNewValue() throws IOException {
+    String feed = FEED_START + getEntry("/c", "20100102", "7", "2.5") + FEED_END;
+
+    parser.parse(toStream(feed), results.getDimensionDictionary(), new ResultsRowSink(results));
+
+    assertEquals(TestUtil.toList(new String[] {"/c"}), results.getRowNames());
+    assertEquals(2, results.getDimensionDictionary().findId("/c"));
+    assertTrue(results.getIsSampled());
+  }
+
+  /**
+   * Tests a feed whose only dimension is ga:date is added as the row of the
+   * next original dimension value.
+   */
+  public void testParse_dateOnly() throws IOException {
+    String feed = FEED_START
+        + "<entry><dxp:dimension name='ga:date' value='20100102'/>"
+        + "<dxp:metric confidenceInterval='0.0' name='ga:visits' type='integer' value='4'/>"
+        + "</entry>" + FEED_END;
+
+    parser.parse(toStream(feed), results.getDimensionDictionary(), new ResultsRowSink(results));
+
+    assertEquals(TestUtil.toList(new String[] {"/a"}), results.getRowNames());
+    assertEquals(Arrays.asList(0.0, 4.0, 0.0), results.getTable().get(0));
+  }
+
+  /**
+   * Tests an empty feed of a single dimension value still adds its row, so
+   * the rows after it keep their names.
+   */
+  public void testParse_emptySingleValue() throws IOException {
+    parser.parse(toStream(FEED_START + FEED_END), results.getDimensionDictionary(),
+        new ResultsRowSink(results, true));
+    String feed = FEED_START
+        + "<entry><dxp:dimension name='ga:date' value='20100103'/>"
+        + "<dxp:metric confidenceInterval='0.0' name='ga:visits' type='integer' value='6'/>"
+        + "</entry>" + FEED_END;
+    parser.parse(toStream(feed), results.getDimensionDictionary(),
+        new ResultsRowSink(results, true));
+
+    assertEquals(TestUtil.toList(new String[] {"/a", "/b"}), results.getRowNames());
+    assertEquals(Arrays.asList(0.0, 0.0, 0.0), results.getTable().get(0));
+    assertEquals(Arrays.asList(0.0, 0.0, 6.0), results.getTable().get(1));
+  }
+
+  /**
+   * Tests feeds that can not be parsed are rejected.
+   */
+  public void testParse_invalid() throws IOException {
+    List<String> feeds = TestUtil.toList(new String[] {
+        FEED_START + "<entry>",
+        FEED_START + "<entry><dxp:metric name='ga:visits' value='1'/></entry>" + FEED_END,
+        FEED_START + getEntry("/a", "20100101", "many", "0.0") + FEED_END});
+    for (String feed : feeds) {
+      try {
+        parser.parse(toStream(feed), results.getDimensionDictionary(),
+            new ResultsRowSink(results));
+        fail(feed);
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+  }
+
+  /**
+   * Returns the XML of one entry of a feed of ga:pagePath and ga:date.
+   */
+  static String getEntry(String pagePath, String date, String visits,
+      String confidenceInterval) {
+    return "<entry><id>http://www.google.com/analytics/feeds/data?ids=ga:1234</id>"
+        + "<dxp:dimension name='ga:pagePath' value='" + pagePath + "'/>"
+        + "<dxp:dimension name='ga:date' value='" + date + "'/>"
+        + "<dxp:metric confidenceInterval='" + confidenceInterval
+        + "' name='ga:visits' type='integer' value='" + visits + "'/></entry>";
+  }
+
+  static InputStream toStream(String feed) {
+    try {
+      return new ByteArrayInputStream(feed.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
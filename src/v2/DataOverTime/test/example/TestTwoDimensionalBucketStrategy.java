@@ -0,0 +1,119 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package example;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Test suite for TwoDimensionalBucketStrategy. Extends TestCase.
+ */
+public class TestTwoDimensionalBucketStrategy extends TestCase {
+
+  private static final String DIMENSION_NAME = "ga:source";
+
+  private BucketManager bucketManager;
+  private List<String> dimensionValues;
+
+  /**
+   * Sets up the test.
+   */
+  public void setUp() {
+    bucketManager = new BucketManager(new TwoDimensionalBucketStrategy());
+    Random random = new Random(7);
+    dimensionValues = new ArrayList<String>();
+    for (int i = 0; i < 3000; i++) {
+      StringBuilder value = new StringBuilder();
+      int length = 1 + random.nextInt(random.nextBoolean() ? 8 : 80);
+      for (int j = 0; j < length; j++) {
+        value.append((char) ('a' + random.nextInt(26)));
+      }
+      dimensionValues.add(value.toString() + i);
+    }
+  }
+
+  /**
+   * Tests that empty input returns no buckets.
+   */
+  public void testGetBuckets_empty() {
+    List<Bucket> buckets = new TwoDimensionalBucketStrategy().getBuckets(
+        new FilterTable(DIMENSION_NAME, new ArrayList<String>(), 100), 100, 10);
+    assertEquals(0, buckets.size());
+  }
+
+  /**
+   * Tests that every filter is placed once and no bucket breaks a limit.
+   */
+  public void testGetBuckets_respectsLimits() {
+    int filterMaxCharLength = 1000;
+    int filterMaxListSize = 20;
+    List<Bucket> buckets = bucketManager.getBucketsOfFilters(DIMENSION_NAME,
+        dimensionValues, filterMaxCharLength, filterMaxListSize);
+
+    Set<Filter> seen = new HashSet<Filter>();
+    for (Bucket bucket : buckets) {
+      int size = bucket.getFilterList().size();
+      assertTrue(size > 0);
+      assertTrue(size <= filterMaxListSize);
+      assertTrue(bucket.getCharLength() + (size - 1) * Filter.getOperatorSize()
+          <= filterMaxCharLength);
+      seen.addAll(bucket.getFilterList());
+    }
+    assertEquals(dimensionValues.size(), seen.size());
+  }
+
+  /**
+   * Tests that when both limits matter, no more buckets are used than with
+   * first fit decreasing.
+   */
+  public void testGetBuckets_noWorseThanFirstFit() {
+    int filterMaxCharLength = 1000;
+    int filterMaxListSize = 20;
+    List<Bucket> buckets = bucketManager.getBucketsOfFilters(DIMENSION_NAME,
+        dimensionValues, filterMaxCharLength, filterMaxListSize);
+    List<Bucket> firstFitBuckets = new BucketManager().getBucketsOfFilters(DIMENSION_NAME,
+        dimensionValues, filterMaxCharLength, filterMaxListSize);
+
+    assertTrue(buckets.size() <= firstFitBuckets.size());
+  }
+
+  /**
+   * Tests that small filters are mixed with large ones so each bucket
+   * fills its slots. Four 40 char and four 20 char filters with room for
+   * two filters and 60 chars in each bucket fit in four buckets.
+   */
+  public void testGetBuckets_mixesSizes() {
+    List<String> values = TestUtil.toList(new String[] {
+        "01234567890123456789012", "01234567890123456789013",
+        "01234567890123456789014", "01234567890123456789015",
+        "012", "013", "014", "015"});
+    Filter large = new Filter();
+    large.setEqualityFilterExpression(DIMENSION_NAME, values.get(0));
+    Filter small = new Filter();
+    small.setEqualityFilterExpression(DIMENSION_NAME, values.get(4));
+    int filterMaxCharLength = large.getEncodedSize() + small.getEncodedSize()
+        + Filter.getOperatorSize();
+
+    List<Bucket> buckets = bucketManager.getBucketsOfFilters(DIMENSION_NAME, values,
+        filterMaxCharLength, 2);
+    assertEquals(4, buckets.size());
+    for (Bucket bucket : buckets) {
+      assertEquals(2, bucket.getFilterList().size());
+    }
+  }
+}